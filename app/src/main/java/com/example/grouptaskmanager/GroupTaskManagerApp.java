@@ -0,0 +1,52 @@
+package com.example.grouptaskmanager;
+
+import android.app.Application;
+
+import com.example.grouptaskmanager.repository.ChatNotificationDispatcher;
+import com.example.grouptaskmanager.repository.LocalStore;
+import com.example.grouptaskmanager.repository.UserCache;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.PersistentCacheSettings;
+
+/**
+ * Application của ứng dụng: nơi giữ các cache dùng chung cho toàn tiến trình
+ */
+public class GroupTaskManagerApp extends Application {
+
+    // Dung lượng cache Firestore trên đĩa; đủ cho nhóm, nhiệm vụ và lịch sử chat gần đây
+    private static final long FIRESTORE_CACHE_SIZE_BYTES = 200L * 1024 * 1024;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        configureFirestore();
+        LocalStore.init(this);
+    }
+
+    /**
+     * Cấu hình Firestore trước mọi lần sử dụng: cache bền vững với dung lượng xác định
+     * và tự tạo index cho các truy vấn đọc từ cache (Source.CACHE)
+     */
+    private void configureFirestore() {
+        FirebaseFirestore firestore = FirebaseFirestore.getInstance();
+        firestore.setFirestoreSettings(new FirebaseFirestoreSettings.Builder()
+                .setLocalCacheSettings(PersistentCacheSettings.newBuilder()
+                        .setSizeBytes(FIRESTORE_CACHE_SIZE_BYTES)
+                        .build())
+                .build());
+        if (firestore.getPersistentCacheIndexManager() != null) {
+            firestore.getPersistentCacheIndexManager().enableIndexAutoCreation();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        UserCache.getInstance().trimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // Ứng dụng vào nền: tiến trình có thể bị dừng bất cứ lúc nào, gửi ngay các thông báo đang chờ gộp
+            ChatNotificationDispatcher.getInstance().flushAll();
+        }
+    }
+}
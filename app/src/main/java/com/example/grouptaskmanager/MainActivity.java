@@ -1,15 +1,20 @@
 package com.example.grouptaskmanager;
 
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.MenuItem;
 import android.view.View;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Lifecycle;
+import androidx.preference.PreferenceManager;
 
 import com.example.grouptaskmanager.auth.LoginActivity;
 import com.example.grouptaskmanager.chat.ChatFragment;
@@ -21,20 +26,39 @@ import com.example.grouptaskmanager.statistics.StatisticsFragment;
 import com.example.grouptaskmanager.task.TasksFragment;
 import com.example.grouptaskmanager.utils.NotificationPermissionHelper;
 import com.example.grouptaskmanager.repository.ChatRepository;
+import com.example.grouptaskmanager.repository.CommentRepository;
+import com.example.grouptaskmanager.repository.GroupRepository;
+import com.example.grouptaskmanager.repository.TaskRepository;
+import com.google.android.gms.tasks.Task;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.badge.BadgeDrawable;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.ListenerRegistration;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
 public class MainActivity extends AppCompatActivity {
 
+    private static final String PREF_TASK_GROUP_IDS_BACKFILLED = "task_group_ids_backfilled_";
+    private static final String PREF_COMMENTS_MIGRATED = "comments_migrated_";
+    private static final String TAB_TAG_PREFIX = "tab_";
+
     private ActivityMainBinding binding;
     private FirebaseAuth auth;
     private NotificationPermissionHelper notificationPermissionHelper;
     private ChatNotificationHelper chatNotificationHelper;
     private ChatRepository chatRepository;
     private ListenerRegistration totalUnreadListener;
+    private int pendingTotalUnread;
+    private boolean badgeUpdateScheduled = false;
+    private final Choreographer.FrameCallback badgeFrameCallback = frameTimeNanos -> {
+        badgeUpdateScheduled = false;
+        updateChatBadge(pendingTotalUnread);
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -57,6 +81,21 @@ public class MainActivity extends AppCompatActivity {
         
         // Initialize FCM token for current user
         com.example.grouptaskmanager.notification.NotificationHelper.updateCurrentToken();
+        
+        // Bổ sung groupId cho nhiệm vụ cũ để truy vấn collectionGroup tìm thấy chúng
+        runOncePerUser(PREF_TASK_GROUP_IDS_BACKFILLED,
+                groupIds -> new TaskRepository().backfillTaskGroupIds(groupIds));
+        // Chuyển bình luận cũ vào subcollection của nhiệm vụ rồi mới tính commentsCount,
+        // để số đếm không được tính trên subcollection còn trống
+        runOncePerUser(PREF_COMMENTS_MIGRATED, groupIds -> {
+            CommentRepository commentRepository = new CommentRepository();
+            return commentRepository.migrateCommentsToTaskSubcollections(groupIds)
+                    .onSuccessTask(result -> commentRepository.backfillCommentCounts(groupIds));
+        });
+
+        // Hoàn tất các lần xóa nhóm bị gián đoạn trước đó
+        new GroupRepository().resumePendingGroupDeletions()
+                .addOnFailureListener(e -> Log.e("MainActivity", "Error resuming group deletions", e));
 
         // Ẩn FAB mặc định (không cần thiết vì đã có các FAB trong GroupsFragment)
         binding.fab.setVisibility(View.GONE);
@@ -64,9 +103,9 @@ public class MainActivity extends AppCompatActivity {
         // Thiết lập bottom navigation
         setupBottomNavigation();
         
-        // Hiển thị GroupsFragment khi khởi động
+        // Hiển thị GroupsFragment khi khởi động; khi tạo lại activity, FragmentManager khôi phục các tab
         if (savedInstanceState == null) {
-            loadFragment(new GroupsFragment());
+            showTab(R.id.navigation_groups);
         }
 
         // Request notification permission after a short delay
@@ -120,52 +159,94 @@ public class MainActivity extends AppCompatActivity {
     }
     
     private boolean onNavigationItemSelected(@NonNull MenuItem item) {
-        int itemId = item.getItemId();
-        
+        return showTab(item.getItemId());
+    }
+
+    private Fragment createTab(int itemId) {
         if (itemId == R.id.navigation_groups) {
-            loadFragment(new GroupsFragment());
-            return true;
+            return new GroupsFragment();
         } else if (itemId == R.id.navigation_tasks) {
-            loadFragment(new TasksFragment());
-            return true;
+            return new TasksFragment();
         } else if (itemId == R.id.navigation_statistics) {
-            loadFragment(new StatisticsFragment());
-            return true;
+            return new StatisticsFragment();
         } else if (itemId == R.id.navigation_chat) {
-            loadFragment(new ChatFragment());
-            return true;
+            return new ChatFragment();
         } else if (itemId == R.id.navigation_profile) {
-            loadFragment(new ProfileFragment());
-            return true;
+            return new ProfileFragment();
         }
-        
-        return false;
+        return null;
     }
 
-    private void loadFragment(Fragment fragment) {
-        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
-        transaction.replace(R.id.nav_host_fragment_content_main, fragment);
+    /**
+     * Hiển thị tab: fragment của mỗi tab chỉ được tạo một lần rồi ẩn/hiện, nên không mất
+     * dữ liệu đã tải khi đổi tab. Tab bị ẩn được giới hạn ở STARTED để onPause/onResume
+     * vẫn chạy khi rời và quay lại tab
+     */
+    private boolean showTab(int itemId) {
+        FragmentManager fragmentManager = getSupportFragmentManager();
+        String tag = TAB_TAG_PREFIX + itemId;
+        Fragment target = fragmentManager.findFragmentByTag(tag);
+        if (target == null) {
+            target = createTab(itemId);
+            if (target == null) {
+                return false;
+            }
+        }
+
+        FragmentTransaction transaction = fragmentManager.beginTransaction();
+        transaction.setReorderingAllowed(true);
+        for (Fragment fragment : fragmentManager.getFragments()) {
+            if (fragment != target && fragment.getTag() != null
+                    && fragment.getTag().startsWith(TAB_TAG_PREFIX) && !fragment.isHidden()) {
+                transaction.hide(fragment);
+                transaction.setMaxLifecycle(fragment, Lifecycle.State.STARTED);
+            }
+        }
+        if (target.isAdded()) {
+            transaction.show(target);
+        } else {
+            transaction.add(R.id.nav_host_fragment_content_main, target, tag);
+        }
+        transaction.setMaxLifecycle(target, Lifecycle.State.RESUMED);
+        // Sử dụng commitAllowingStateLoss để tránh IllegalStateException
         transaction.commitAllowingStateLoss();
+        return true;
     }
 
     public void navigateToGroupsTab() {
         BottomNavigationView bottomNav = findViewById(R.id.bottom_navigation);
+        // Listener của bottom navigation hiển thị tab đã giữ lại
         bottomNav.setSelectedItemId(R.id.navigation_groups);
-        
-        // Sử dụng commitAllowingStateLoss để tránh IllegalStateException
-        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
-        transaction.replace(R.id.nav_host_fragment_content_main, new GroupsFragment());
-        transaction.commitAllowingStateLoss();
     }
 
     public void navigateToTasksTab() {
         BottomNavigationView bottomNav = findViewById(R.id.bottom_navigation);
+        // Listener của bottom navigation hiển thị tab đã giữ lại
         bottomNav.setSelectedItemId(R.id.navigation_tasks);
+    }
+
+    /**
+     * Chạy một lần cho mỗi người dùng một tác vụ bổ sung dữ liệu cũ
+     * trên những nhóm mà người dùng tham gia
+     */
+    private void runOncePerUser(String prefKeyPrefix, Function<List<String>, Task<Void>> migration) {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser == null) return;
         
-        // Sử dụng commitAllowingStateLoss để tránh IllegalStateException
-        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
-        transaction.replace(R.id.nav_host_fragment_content_main, new TasksFragment());
-        transaction.commitAllowingStateLoss();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String prefKey = prefKeyPrefix + currentUser.getUid();
+        if (prefs.getBoolean(prefKey, false)) return;
+        
+        new GroupRepository().getUserGroups()
+                .continueWithTask(task -> {
+                    List<String> groupIds = new ArrayList<>();
+                    for (DocumentSnapshot document : task.getResult().getDocuments()) {
+                        groupIds.add(document.getId());
+                    }
+                    return migration.apply(groupIds);
+                })
+                .addOnSuccessListener(aVoid -> prefs.edit().putBoolean(prefKey, true).apply())
+                .addOnFailureListener(e -> Log.e("MainActivity", "Error running migration " + prefKeyPrefix, e));
     }
 
     /**
@@ -235,17 +316,21 @@ public class MainActivity extends AppCompatActivity {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser == null || chatRepository == null) return;
         
-        // Listen for changes in groups and messages to update badge
+        // Only groups whose counters changed are reported; the badge is redrawn at most once per frame
         totalUnreadListener = chatRepository.listenForUnreadUpdates(
-            currentUser.getUid(), 
-            (groupId, unreadCount) -> {
-                // When any group's unread count changes, update the total badge
-                updateChatBadge();
+            currentUser.getUid(),
+            new ChatRepository.OnUnreadUpdateListener() {
+                @Override
+                public void onUnreadUpdate(String groupId, int unreadCount) {
+                    // Per-group counts are not needed for the badge
+                }
+
+                @Override
+                public void onTotalUnreadChanged(int totalUnread) {
+                    scheduleChatBadgeUpdate(totalUnread);
+                }
             }
         );
-        
-        // Initial update
-        updateChatBadge();
     }
     
     private void stopListeningForTotalUnreadCount() {
@@ -253,30 +338,31 @@ public class MainActivity extends AppCompatActivity {
             totalUnreadListener.remove();
             totalUnreadListener = null;
         }
+        if (badgeUpdateScheduled) {
+            Choreographer.getInstance().removeFrameCallback(badgeFrameCallback);
+            badgeUpdateScheduled = false;
+        }
     }
     
-    private void updateChatBadge() {
-        FirebaseUser currentUser = auth.getCurrentUser();
-        if (currentUser == null) return;
+    private void scheduleChatBadgeUpdate(int totalUnread) {
+        pendingTotalUnread = totalUnread;
+        if (badgeUpdateScheduled) return;
         
-        // Calculate total unread messages across all groups
-        chatRepository.getTotalUnreadMessagesCount(currentUser.getUid())
-                .addOnSuccessListener(totalUnread -> {
-                    runOnUiThread(() -> {
-                        BottomNavigationView bottomNav = findViewById(R.id.bottom_navigation);
-                        BadgeDrawable badge = bottomNav.getOrCreateBadge(R.id.navigation_chat);
-                        
-                        if (totalUnread > 0) {
-                            badge.setVisible(true);
-                            badge.setNumber(totalUnread);
-                            badge.setMaxCharacterCount(2); // Show 99+ for numbers > 99
-                        } else {
-                            badge.setVisible(false);
-                        }
-                    });
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("MainActivity", "Error updating chat badge", e);
-                });
+        badgeUpdateScheduled = true;
+        Choreographer.getInstance().postFrameCallback(badgeFrameCallback);
+    }
+    
+    private void updateChatBadge(int totalUnread) {
+        // Chạy trong badgeFrameCallback, vốn đã ở luồng chính
+        BottomNavigationView bottomNav = findViewById(R.id.bottom_navigation);
+        BadgeDrawable badge = bottomNav.getOrCreateBadge(R.id.navigation_chat);
+        
+        if (totalUnread > 0) {
+            badge.setVisible(true);
+            badge.setNumber(totalUnread);
+            badge.setMaxCharacterCount(3); // Show 99+ for numbers > 99
+        } else {
+            badge.setVisible(false);
+        }
     }
 }
\ No newline at end of file
@@ -6,22 +6,58 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.model.Comment;
+import com.example.grouptaskmanager.utils.DateFormats;
+import com.example.grouptaskmanager.utils.MinuteTicker;
+import com.example.grouptaskmanager.utils.StableIds;
 import com.google.firebase.auth.FirebaseAuth;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.TimeUnit;
+import java.util.Objects;
 
-public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.CommentViewHolder> {
+public class CommentsAdapter extends ListAdapter<Comment, CommentsAdapter.CommentViewHolder> {
 
-    private List<Comment> comments;
+    // Payload khi chỉ nội dung bình luận thay đổi (sửa bình luận)
+    private static final Object PAYLOAD_CONTENT = new Object();
+    // Payload mỗi phút từ MinuteTicker: chỉ cập nhật nhãn "x phút trước"
+    private static final Object PAYLOAD_TIME = new Object();
+
+    private static final DiffUtil.ItemCallback<Comment> DIFF_CALLBACK = new DiffUtil.ItemCallback<Comment>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Comment oldItem, @NonNull Comment newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Comment oldItem, @NonNull Comment newItem) {
+            // Comment.equals chỉ so sánh id nên so sánh từng trường hiển thị
+            return Objects.equals(oldItem.getContent(), newItem.getContent()) && !hasOtherChanges(oldItem, newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Comment oldItem, @NonNull Comment newItem) {
+            return hasOtherChanges(oldItem, newItem) ? null : PAYLOAD_CONTENT;
+        }
+
+        private boolean hasOtherChanges(Comment oldItem, Comment newItem) {
+            return !Objects.equals(oldItem.getAuthorId(), newItem.getAuthorId())
+                    || !Objects.equals(oldItem.getAuthorName(), newItem.getAuthorName())
+                    || !Objects.equals(oldItem.getCreatedAt(), newItem.getCreatedAt())
+                    || !Objects.equals(oldItem.getReplyToAuthorName(), newItem.getReplyToAuthorName())
+                    || oldItem.isReply() != newItem.isReply();
+        }
+    };
+
+    // Danh sách hiện tại; mỗi thay đổi gửi một bản sao cho submitList
+    private final List<Comment> comments;
+    private final StableIds stableIds = new StableIds();
+    private final Runnable timeTick = () -> notifyItemRangeChanged(0, getItemCount(), PAYLOAD_TIME);
     private OnCommentActionListener listener;
     private String currentUserId;
 
@@ -32,10 +68,12 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
     }
 
     public CommentsAdapter(OnCommentActionListener listener) {
+        super(DIFF_CALLBACK);
         this.comments = new ArrayList<>();
         this.listener = listener;
         this.currentUserId = FirebaseAuth.getInstance().getCurrentUser() != null ?
                 FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -48,31 +86,84 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
 
     @Override
     public void onBindViewHolder(@NonNull CommentViewHolder holder, int position) {
-        Comment comment = comments.get(position);
+        Comment comment = getItem(position);
         holder.bind(comment);
     }
 
     @Override
-    public int getItemCount() {
+    public void onBindViewHolder(@NonNull CommentViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        Comment comment = getItem(position);
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_CONTENT) {
+                holder.tvCommentContent.setText(comment.getContent());
+            } else if (payload == PAYLOAD_TIME) {
+                holder.bindTime(comment);
+            }
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        MinuteTicker.getInstance().addListener(timeTick);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        MinuteTicker.getInstance().removeListener(timeTick);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idOf(getItem(position).getId());
+    }
+
+    /**
+     * Số bình luận đã tải; cập nhật ngay, không chờ DiffUtil như getItemCount
+     */
+    public int getCommentCount() {
         return comments.size();
     }
 
     public void updateComments(List<Comment> newComments) {
         this.comments.clear();
         this.comments.addAll(newComments);
-        notifyDataSetChanged();
+        publish();
     }
 
     public void addComment(Comment comment) {
         comments.add(comment);
-        notifyItemInserted(comments.size() - 1);
+        publish();
+    }
+
+    /**
+     * Thêm trang bình luận cũ hơn (đã sắp xếp cũ trước) vào đầu danh sách
+     */
+    public void addOlderComments(List<Comment> olderComments) {
+        if (olderComments.isEmpty()) return;
+        comments.addAll(0, olderComments);
+        publish();
+    }
+
+    public boolean containsComment(String commentId) {
+        for (Comment comment : comments) {
+            if (comment.getId().equals(commentId)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public void updateComment(Comment updatedComment) {
         for (int i = 0; i < comments.size(); i++) {
             if (comments.get(i).getId().equals(updatedComment.getId())) {
                 comments.set(i, updatedComment);
-                notifyItemChanged(i);
+                publish();
                 break;
             }
         }
@@ -82,12 +173,16 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
         for (int i = 0; i < comments.size(); i++) {
             if (comments.get(i).getId().equals(commentId)) {
                 comments.remove(i);
-                notifyItemRemoved(i);
+                publish();
                 break;
             }
         }
     }
 
+    private void publish() {
+        submitList(new ArrayList<>(comments));
+    }
+
     class CommentViewHolder extends RecyclerView.ViewHolder {
         private View replyIndicator;
         private TextView tvReplyTo;
@@ -108,6 +203,28 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
             btnReply = itemView.findViewById(R.id.btn_reply);
             btnEdit = itemView.findViewById(R.id.btn_edit);
             btnDelete = itemView.findViewById(R.id.btn_delete);
+
+            // Listener đọc bình luận theo vị trí hiện tại, vẫn đúng khi chỉ bind lại nội dung
+            btnReply.setOnClickListener(v -> {
+                int position = getAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onReplyClick(getItem(position));
+                }
+            });
+
+            btnEdit.setOnClickListener(v -> {
+                int position = getAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onEditClick(getItem(position));
+                }
+            });
+
+            btnDelete.setOnClickListener(v -> {
+                int position = getAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onDeleteClick(getItem(position));
+                }
+            });
         }
 
         public void bind(Comment comment) {
@@ -118,11 +235,7 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
             // Set comment content
             tvCommentContent.setText(comment.getContent());
 
-            // Set creation time
-            if (comment.getCreatedAt() != null) {
-                String timeAgo = getTimeAgo(comment.getCreatedAt().toDate());
-                tvCommentTime.setText(timeAgo);
-            }
+            bindTime(comment);
 
             // Handle reply display
             if (comment.isReply() && comment.getReplyToAuthorName() != null) {
@@ -140,47 +253,13 @@ public class CommentsAdapter extends RecyclerView.Adapter<CommentsAdapter.Commen
             
             btnEdit.setVisibility(isOwnComment ? View.VISIBLE : View.GONE);
             btnDelete.setVisibility(isOwnComment ? View.VISIBLE : View.GONE);
-
-            // Set click listeners
-            btnReply.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onReplyClick(comment);
-                }
-            });
-
-            btnEdit.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onEditClick(comment);
-                }
-            });
-
-            btnDelete.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onDeleteClick(comment);
-                }
-            });
         }
 
-        private String getTimeAgo(Date date) {
-            if (date == null) return "";
-
-            long now = System.currentTimeMillis();
-            long diff = now - date.getTime();
-
-            if (diff < TimeUnit.MINUTES.toMillis(1)) {
-                return "Vừa xong";
-            } else if (diff < TimeUnit.HOURS.toMillis(1)) {
-                long minutes = TimeUnit.MILLISECONDS.toMinutes(diff);
-                return minutes + " phút trước";
-            } else if (diff < TimeUnit.DAYS.toMillis(1)) {
-                long hours = TimeUnit.MILLISECONDS.toHours(diff);
-                return hours + " giờ trước";
-            } else if (diff < TimeUnit.DAYS.toMillis(7)) {
-                long days = TimeUnit.MILLISECONDS.toDays(diff);
-                return days + " ngày trước";
-            } else {
-                SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-                return sdf.format(date);
+        void bindTime(Comment comment) {
+            // Set creation time
+            if (comment.getCreatedAt() != null) {
+                tvCommentTime.setText(DateFormats.formatTimeAgo(comment.getCreatedAt().toDate(),
+                        System.currentTimeMillis()));
             }
         }
     }
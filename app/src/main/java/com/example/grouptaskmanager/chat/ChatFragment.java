@@ -10,24 +10,18 @@ import android.view.ViewGroup;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grouptaskmanager.R;
-import com.example.grouptaskmanager.model.ChatMessage;
 import com.example.grouptaskmanager.model.Group;
-import com.example.grouptaskmanager.model.GroupWithUnread;
 import com.example.grouptaskmanager.repository.ChatRepository;
-import com.example.grouptaskmanager.repository.GroupRepository;
 import com.google.android.material.progressindicator.CircularProgressIndicator;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class ChatFragment extends Fragment implements GroupChatAdapter.OnGroupChatClickListener {
 
@@ -37,19 +31,17 @@ public class ChatFragment extends Fragment implements GroupChatAdapter.OnGroupCh
     private CircularProgressIndicator progressBar;
     private View layoutEmptyChat;
     
-    private GroupRepository groupRepository;
     private ChatRepository chatRepository;
+    private ChatViewModel chatViewModel;
     private GroupChatAdapter groupAdapter;
-    private List<GroupWithUnread> groupList;
     private String currentUserId;
     private ListenerRegistration unreadCountListener;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        groupRepository = new GroupRepository();
         chatRepository = new ChatRepository();
-        groupList = new ArrayList<>();
+        chatViewModel = new ViewModelProvider(this).get(ChatViewModel.class);
         
         FirebaseAuth auth = FirebaseAuth.getInstance();
         currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
@@ -67,14 +59,14 @@ public class ChatFragment extends Fragment implements GroupChatAdapter.OnGroupCh
         
         initViews(view);
         setupRecyclerView();
-        loadGroupsWithUnreadCounts();
+        observeGroups();
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        // Refresh data when returning from chat activities
-        loadGroupsWithUnreadCounts();
+        // Danh sách được giữ trong ViewModel; chỉ tải lại khi đã cũ, số chưa đọc cập nhật realtime
+        chatViewModel.refreshIfStale();
         startListeningForUnreadUpdates();
     }
     
@@ -97,116 +89,26 @@ public class ChatFragment extends Fragment implements GroupChatAdapter.OnGroupCh
     }
 
     private void setupRecyclerView() {
-        groupAdapter = new GroupChatAdapter(requireContext(), groupList, this);
+        groupAdapter = new GroupChatAdapter(requireContext(), this);
         rvGroups.setLayoutManager(new LinearLayoutManager(requireContext()));
         rvGroups.setAdapter(groupAdapter);
     }
 
-    private void loadGroupsWithUnreadCounts() {
-        if (currentUserId == null) {
-            showEmptyState(true);
-            return;
-        }
-        
-        showLoading(true);
-        
-        groupRepository.getUserGroups()
-                .addOnSuccessListener(querySnapshot -> {
-                    groupList.clear();
-                    
-                    if (querySnapshot.getDocuments().isEmpty()) {
-                        groupAdapter.notifyDataSetChanged();
-                        showEmptyState(true);
-                        showLoading(false);
-                        return;
-                    }
-                    
-                    AtomicInteger pendingRequests = new AtomicInteger(querySnapshot.size() * 2); // 2 requests per group
-                    
-                    for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-                        Group group = document.toObject(Group.class);
-                        if (group != null) {
-                            group.setId(document.getId());
-                            
-                            GroupWithUnread groupWithUnread = new GroupWithUnread();
-                            groupWithUnread.setGroup(group);
-                            groupWithUnread.setUnreadCount(0);
-                            groupWithUnread.setLastMessage(null);
-                            
-                            groupList.add(groupWithUnread);
-                            
-                            // Load unread count
-                            loadUnreadCount(group.getId(), groupWithUnread, pendingRequests);
-                            
-                            // Load last message
-                            loadLastMessage(group.getId(), groupWithUnread, pendingRequests);
-                        } else {
-                            // Decrease counter if group is null
-                            if (pendingRequests.addAndGet(-2) <= 0) {
-                                finishLoading();
-                            }
-                        }
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading groups", e);
-                    showEmptyState(true);
-                    showLoading(false);
-                });
-    }
-
-    private void loadUnreadCount(String groupId, GroupWithUnread groupWithUnread, AtomicInteger pendingRequests) {
-        chatRepository.getUnreadMessagesCount(groupId, currentUserId)
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        int unreadCount = task.getResult().size();
-                        groupWithUnread.setUnreadCount(unreadCount);
-                    }
-                    
-                    if (pendingRequests.decrementAndGet() <= 0) {
-                        finishLoading();
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading unread count for group: " + groupId, e);
-                    if (pendingRequests.decrementAndGet() <= 0) {
-                        finishLoading();
-                    }
-                });
-    }
-
-    private void loadLastMessage(String groupId, GroupWithUnread groupWithUnread, AtomicInteger pendingRequests) {
-        chatRepository.getLastMessage(groupId)
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null && !task.getResult().isEmpty()) {
-                        DocumentSnapshot messageDoc = task.getResult().getDocuments().get(0);
-                        ChatMessage lastMessage = messageDoc.toObject(ChatMessage.class);
-                        if (lastMessage != null) {
-                            lastMessage.setId(messageDoc.getId());
-                            groupWithUnread.setLastMessage(lastMessage);
-                        }
-                    }
-                    
-                    if (pendingRequests.decrementAndGet() <= 0) {
-                        finishLoading();
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading last message for group: " + groupId, e);
-                    if (pendingRequests.decrementAndGet() <= 0) {
-                        finishLoading();
-                    }
-                });
-    }
-
-    private void finishLoading() {
-        if (getActivity() != null) {
-            getActivity().runOnUiThread(() -> {
-                groupAdapter.notifyDataSetChanged();
-                showEmptyState(groupList.isEmpty());
-                showLoading(false);
-            });
+    private void observeGroups() {
+        if (!chatViewModel.hasData()) {
+            showLoading(true);
         }
+        chatViewModel.getData().observe(getViewLifecycleOwner(), groups -> {
+            groupAdapter.submitList(new ArrayList<>(groups));
+            showEmptyState(groups.isEmpty());
+            showLoading(false);
+        });
+        chatViewModel.getError().observe(getViewLifecycleOwner(), e -> {
+            if (e == null) return;
+            Log.e(TAG, "Error loading groups", e);
+            showEmptyState(groupAdapter.getItemCount() == 0);
+            showLoading(false);
+        });
     }
 
     private void showEmptyState(boolean isEmpty) {
@@ -232,7 +134,7 @@ public class ChatFragment extends Fragment implements GroupChatAdapter.OnGroupCh
     private void startListeningForUnreadUpdates() {
         if (currentUserId == null) return;
         
-        // Listen for changes in all groups that user is a member of
+        // Only groups whose unread count changed are reported
         unreadCountListener = chatRepository.listenForUnreadUpdates(currentUserId, this::onUnreadUpdate);
     }
 
@@ -245,30 +147,14 @@ public class ChatFragment extends Fragment implements GroupChatAdapter.OnGroupCh
 
     private void onUnreadUpdate(String groupId, int unreadCount) {
         if (getActivity() != null) {
-            getActivity().runOnUiThread(() -> {
-                // Find the group in our list and update its unread count
-                boolean found = false;
-                for (GroupWithUnread groupWithUnread : groupList) {
-                    if (groupWithUnread.getGroup().getId().equals(groupId)) {
-                        groupWithUnread.setUnreadCount(unreadCount);
-                        found = true;
-                        break;
-                    }
-                }
-                
-                // If group not found in current list, reload the entire list
-                if (!found) {
-                    loadGroupsWithUnreadCounts();
-                } else {
-                    // Update the adapter
-                    groupAdapter.notifyDataSetChanged();
-                }
-            });
+            getActivity().runOnUiThread(() -> chatViewModel.updateUnreadCount(groupId, unreadCount));
         }
     }
 
     @Override
     public void onGroupChatClick(Group group) {
+        // Tin nhắn cuối sẽ thay đổi sau khi chat: tải lại khi quay về
+        chatViewModel.invalidate();
         // Navigate to group chat activity
         Intent intent = new Intent(requireContext(), GroupChatActivity.class);
         intent.putExtra("GROUP_ID", group.getId());
@@ -7,30 +7,31 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.model.ChatMessage;
 
-import java.text.SimpleDateFormat;
-import java.util.List;
-import java.util.Locale;
-
 public class ChatMessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     private static final int VIEW_TYPE_SENT = 1;
     private static final int VIEW_TYPE_RECEIVED = 2;
 
     private Context context;
-    private List<ChatMessage> messageList;
+    // Mọi thay đổi của buffer được báo thẳng cho adapter theo đúng vị trí
+    private final MessageBuffer messageList = new MessageBuffer(new AdapterListUpdateCallback(this));
     private String currentUserId;
 
-    public ChatMessageAdapter(Context context, List<ChatMessage> messageList, String currentUserId) {
+    public ChatMessageAdapter(Context context, String currentUserId) {
         this.context = context;
-        this.messageList = messageList;
         this.currentUserId = currentUserId;
     }
 
+    public MessageBuffer getMessages() {
+        return messageList;
+    }
+
     @Override
     public int getItemViewType(int position) {
         ChatMessage message = messageList.get(position);
@@ -83,12 +84,7 @@ public class ChatMessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
         public void bind(ChatMessage message) {
             tvMessage.setText(message.getMessage());
             
-            if (message.getTimestamp() != null) {
-                SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-                tvTime.setText(timeFormat.format(message.getTimestamp().toDate()));
-            } else {
-                tvTime.setText("");
-            }
+            tvTime.setText(message.getTimeText());
         }
     }
 
@@ -111,12 +107,7 @@ public class ChatMessageAdapter extends RecyclerView.Adapter<RecyclerView.ViewHo
                                message.getSenderName() : "Không rõ");
             tvMessage.setText(message.getMessage());
             
-            if (message.getTimestamp() != null) {
-                SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-                tvTime.setText(timeFormat.format(message.getTimestamp().toDate()));
-            } else {
-                tvTime.setText("");
-            }
+            tvTime.setText(message.getTimeText());
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,138 @@
+package com.example.grouptaskmanager.chat;
+
+import android.util.Log;
+
+import com.example.grouptaskmanager.model.ChatMessage;
+import com.example.grouptaskmanager.model.Group;
+import com.example.grouptaskmanager.model.GroupWithUnread;
+import com.example.grouptaskmanager.repository.ChatRepository;
+import com.example.grouptaskmanager.repository.GroupRepository;
+import com.example.grouptaskmanager.utils.RefreshingViewModel;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Danh sách nhóm kèm số tin chưa đọc và tin nhắn cuối của tab Chat
+ */
+public class ChatViewModel extends RefreshingViewModel<List<GroupWithUnread>> {
+
+    private static final String TAG = "ChatViewModel";
+
+    private final GroupRepository groupRepository = new GroupRepository();
+    private final ChatRepository chatRepository = new ChatRepository();
+
+    @Override
+    protected void load(OnLoadedListener<List<GroupWithUnread>> listener) {
+        FirebaseAuth auth = FirebaseAuth.getInstance();
+        Task<QuerySnapshot> groupsTask = groupRepository.getUserGroups();
+        if (auth.getCurrentUser() == null || groupsTask == null) {
+            listener.onLoaded(new ArrayList<>());
+            return;
+        }
+        String currentUserId = auth.getCurrentUser().getUid();
+
+        groupsTask
+                .addOnSuccessListener(querySnapshot -> {
+                    List<GroupWithUnread> groupList = new ArrayList<>();
+                    // Groups being deleted are hidden
+                    List<Group> groups = GroupRepository.toGroups(querySnapshot);
+
+                    if (groups.isEmpty()) {
+                        listener.onLoaded(groupList);
+                        return;
+                    }
+
+                    // 1 request for the unread counters document + 1 last message request per group
+                    AtomicInteger pendingRequests = new AtomicInteger(groups.size() + 1);
+                    Runnable finishLoading = () -> {
+                        if (pendingRequests.decrementAndGet() <= 0) {
+                            listener.onLoaded(groupList);
+                        }
+                    };
+
+                    for (Group group : groups) {
+                        GroupWithUnread groupWithUnread = new GroupWithUnread();
+                        groupWithUnread.setGroup(group);
+                        groupWithUnread.setUnreadCount(0);
+                        groupWithUnread.setLastMessage(null);
+
+                        groupList.add(groupWithUnread);
+
+                        if (group.getLastMessage() != null) {
+                            // Preview written together with the message, no query needed
+                            groupWithUnread.setLastMessage(group.getLastMessage());
+                            finishLoading.run();
+                        } else {
+                            // Groups without a preview yet (older messages only)
+                            loadLastMessage(group.getId(), groupWithUnread, finishLoading);
+                        }
+                    }
+
+                    // Unread counts for all groups come from a single document
+                    chatRepository.getUnreadCounts(currentUserId)
+                            .addOnCompleteListener(task -> {
+                                if (task.isSuccessful() && task.getResult() != null) {
+                                    applyUnreadCounts(groupList, task.getResult());
+                                } else {
+                                    Log.e(TAG, "Error loading unread counts", task.getException());
+                                }
+                                finishLoading.run();
+                            });
+                })
+                .addOnFailureListener(listener::onError);
+    }
+
+    /**
+     * Cập nhật số tin chưa đọc của một nhóm từ listener realtime, không tải lại danh sách
+     */
+    public void updateUnreadCount(String groupId, int unreadCount) {
+        List<GroupWithUnread> groupList = getData().getValue();
+        if (groupList == null) return;
+
+        for (int i = 0; i < groupList.size(); i++) {
+            GroupWithUnread groupWithUnread = groupList.get(i);
+            if (groupWithUnread.getGroup().getId().equals(groupId)) {
+                if (groupWithUnread.getUnreadCount() != unreadCount) {
+                    // Thay bằng đối tượng mới để DiffUtil thấy thay đổi và chỉ bind lại badge
+                    List<GroupWithUnread> updated = new ArrayList<>(groupList);
+                    updated.set(i, new GroupWithUnread(groupWithUnread.getGroup(), unreadCount,
+                            groupWithUnread.getLastMessage()));
+                    setData(updated);
+                }
+                return;
+            }
+        }
+        // Group not loaded yet (e.g. just joined) - it will appear on the next reload
+    }
+
+    private static void applyUnreadCounts(List<GroupWithUnread> groupList, Map<String, Integer> unreadCounts) {
+        for (GroupWithUnread groupWithUnread : groupList) {
+            Integer unreadCount = unreadCounts.get(groupWithUnread.getGroup().getId());
+            groupWithUnread.setUnreadCount(unreadCount != null ? unreadCount : 0);
+        }
+    }
+
+    private void loadLastMessage(String groupId, GroupWithUnread groupWithUnread, Runnable finishLoading) {
+        chatRepository.getLastMessage(groupId)
+                .addOnCompleteListener(task -> {
+                    if (task.isSuccessful() && task.getResult() != null && !task.getResult().isEmpty()) {
+                        DocumentSnapshot messageDoc = task.getResult().getDocuments().get(0);
+                        ChatMessage lastMessage = messageDoc.toObject(ChatMessage.class);
+                        if (lastMessage != null) {
+                            lastMessage.setId(messageDoc.getId());
+                            groupWithUnread.setLastMessage(lastMessage);
+                        }
+                    } else if (task.getException() != null) {
+                        Log.e(TAG, "Error loading last message for group: " + groupId, task.getException());
+                    }
+                    finishLoading.run();
+                });
+    }
+}
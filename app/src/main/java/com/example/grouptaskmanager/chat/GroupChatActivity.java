@@ -10,12 +10,15 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grouptaskmanager.databinding.ActivityGroupChatBinding;
 import com.example.grouptaskmanager.model.ChatMessage;
+import com.example.grouptaskmanager.repository.ChatNotificationDispatcher;
 import com.example.grouptaskmanager.repository.ChatRepository;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.QuerySnapshot;
 
@@ -25,16 +28,23 @@ import java.util.List;
 public class GroupChatActivity extends AppCompatActivity implements ChatRepository.OnMessagesChangedListener {
 
     private static final String TAG = "GroupChatActivity";
+    private static final int LOAD_MORE_THRESHOLD = 5;
     
     private ActivityGroupChatBinding binding;
     private ChatRepository chatRepository;
     private ChatMessageAdapter messageAdapter;
-    private List<ChatMessage> messageList;
+    private MessageBuffer messageList;
     private String groupId;
     private String groupName;
     private String currentUserId;
     private ListenerRegistration messagesListener;
     private boolean isFirstLoad = true;
+    // Tin nhắn cũ nhất đã tải, dùng làm con trỏ cho trang lịch sử tiếp theo
+    private DocumentSnapshot oldestMessageSnapshot;
+    private boolean isLoadingOlder = false;
+    private boolean hasMoreHistory = true;
+    // Cửa sổ realtime đã được server xác nhận; ảnh chụp từ cache có thể chỉ chứa một phần
+    private boolean isWindowFromServer = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -56,7 +66,6 @@ public class GroupChatActivity extends AppCompatActivity implements ChatReposito
                        FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
         
         chatRepository = new ChatRepository();
-        messageList = new ArrayList<>();
         
         setupToolbar();
         setupRecyclerView();
@@ -71,6 +80,13 @@ public class GroupChatActivity extends AppCompatActivity implements ChatReposito
         markGroupAsRead();
     }
 
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Gửi ngay các thông báo đang chờ gộp khi rời màn hình chat
+        ChatNotificationDispatcher.getInstance().flushAll();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
@@ -90,13 +106,41 @@ public class GroupChatActivity extends AppCompatActivity implements ChatReposito
     }
 
     private void setupRecyclerView() {
-        messageAdapter = new ChatMessageAdapter(this, messageList, currentUserId);
+        messageAdapter = new ChatMessageAdapter(this, currentUserId);
+        messageList = messageAdapter.getMessages();
         
-        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this) {
+            @Override
+            public void onLayoutCompleted(RecyclerView.State state) {
+                super.onLayoutCompleted(state);
+                // Trang vừa tải chưa đẩy danh sách ra khỏi vùng gần đầu (ví dụ trang ngắn hoặc
+                // người dùng đang dừng ở đầu): tải tiếp mà không cần chờ thêm một lần cuộn
+                if (!isFirstLoad) {
+                    loadOlderMessagesIfNearTop(this);
+                }
+            }
+        };
         layoutManager.setStackFromEnd(true); // Start from bottom
         
         binding.rvMessages.setLayoutManager(layoutManager);
         binding.rvMessages.setAdapter(messageAdapter);
+
+        // Tải lịch sử cũ hơn khi người dùng cuộn gần lên đầu danh sách
+        binding.rvMessages.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy < 0) {
+                    loadOlderMessagesIfNearTop(layoutManager);
+                }
+            }
+        });
+    }
+
+    private void loadOlderMessagesIfNearTop(LinearLayoutManager layoutManager) {
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        if (firstVisible != RecyclerView.NO_POSITION && firstVisible <= LOAD_MORE_THRESHOLD) {
+            loadOlderMessages();
+        }
     }
 
     private void setupListeners() {
@@ -110,8 +154,47 @@ public class GroupChatActivity extends AppCompatActivity implements ChatReposito
 
     private void loadMessages() {
         showLoading(true);
-        // Setup realtime listener
-        messagesListener = chatRepository.getMessagesRealtime(groupId, this);
+        // Chỉ lắng nghe realtime các tin nhắn mới nhất; lịch sử được tải theo trang khi cuộn lên
+        messagesListener = chatRepository.getRecentMessagesRealtime(
+                groupId, ChatRepository.MESSAGE_WINDOW_SIZE, this);
+    }
+
+    private void loadOlderMessages() {
+        if (!isWindowFromServer || isLoadingOlder || !hasMoreHistory || oldestMessageSnapshot == null) {
+            return;
+        }
+        isLoadingOlder = true;
+
+        chatRepository.getMessagesPaginated(groupId, oldestMessageSnapshot, ChatRepository.MESSAGE_PAGE_SIZE)
+                .addOnSuccessListener(querySnapshot -> {
+                    isLoadingOlder = false;
+                    List<DocumentSnapshot> documents = querySnapshot.getDocuments();
+                    if (documents.size() < ChatRepository.MESSAGE_PAGE_SIZE) {
+                        hasMoreHistory = false;
+                    }
+                    if (documents.isEmpty()) {
+                        return;
+                    }
+                    // Trang trả về mới nhất trước: phần tử cuối là tin cũ nhất
+                    oldestMessageSnapshot = documents.get(documents.size() - 1);
+
+                    List<ChatMessage> olderMessages = new ArrayList<>();
+                    for (int i = documents.size() - 1; i >= 0; i--) {
+                        DocumentSnapshot document = documents.get(i);
+                        if (!messageList.containsId(document.getId())) {
+                            ChatMessage message = document.toObject(ChatMessage.class);
+                            if (message != null) {
+                                message.setId(document.getId());
+                                olderMessages.add(message);
+                            }
+                        }
+                    }
+                    messageList.putAll(olderMessages);
+                })
+                .addOnFailureListener(e -> {
+                    isLoadingOlder = false;
+                    Log.e(TAG, "Error loading older messages", e);
+                });
     }
 
     private void sendMessage() {
@@ -171,16 +254,16 @@ public class GroupChatActivity extends AppCompatActivity implements ChatReposito
     public void onMessagesChanged(QuerySnapshot snapshot) {
         if (snapshot != null) {
             if (isFirstLoad) {
-                // First load - add all messages
-                messageList.clear();
-                for (DocumentChange dc : snapshot.getDocumentChanges()) {
-                    if (dc.getType() == DocumentChange.Type.ADDED) {
-                        ChatMessage message = dc.getDocument().toObject(ChatMessage.class);
-                        message.setId(dc.getDocument().getId());
-                        messageList.add(message);
+                // First load - add the newest window of messages
+                List<ChatMessage> windowMessages = new ArrayList<>();
+                for (DocumentSnapshot document : snapshot.getDocuments()) {
+                    ChatMessage message = document.toObject(ChatMessage.class);
+                    if (message != null) {
+                        message.setId(document.getId());
+                        windowMessages.add(message);
                     }
                 }
-                messageAdapter.notifyDataSetChanged();
+                messageList.reset(windowMessages);
                 
                 // Scroll to bottom
                 if (!messageList.isEmpty()) {
@@ -190,36 +273,42 @@ public class GroupChatActivity extends AppCompatActivity implements ChatReposito
                 showLoading(false);
                 isFirstLoad = false;
             } else {
-                // Subsequent updates
+                // Subsequent updates: the buffer places each message by timestamp
+                // and notifies the adapter of the exact position that changed
                 for (DocumentChange dc : snapshot.getDocumentChanges()) {
                     ChatMessage message = dc.getDocument().toObject(ChatMessage.class);
                     message.setId(dc.getDocument().getId());
+                    boolean isShown = messageList.containsId(message.getId());
                     
                     switch (dc.getType()) {
                         case ADDED:
-                            // Add new message
-                            messageList.add(message);
-                            messageAdapter.notifyItemInserted(messageList.size() - 1);
-                            // Scroll to bottom for new messages
-                            binding.rvMessages.scrollToPosition(messageList.size() - 1);
-                            
-                            // Mark as read when receiving new messages while active
-                            markGroupAsRead();
+                            // Already shown messages (loaded as history or slid back into the window) are updated in place
+                            int position = messageList.put(message);
+                            if (isShown) {
+                                break;
+                            }
+                            if (dc.getNewIndex() == 0 && snapshot.size() > 1 && position == 0) {
+                                // An older message re-entered the window after a deletion
+                                oldestMessageSnapshot = dc.getDocument();
+                            } else if (position == messageList.size() - 1) {
+                                // Scroll to bottom for new messages
+                                binding.rvMessages.scrollToPosition(position);
+                                
+                                // Mark as read when receiving new messages while active
+                                markGroupAsRead();
+                            }
                             break;
                         case MODIFIED:
                             // Update existing message
-                            for (int i = 0; i < messageList.size(); i++) {
-                                if (messageList.get(i).getId().equals(message.getId())) {
-                                    messageList.set(i, message);
-                                    messageAdapter.notifyItemChanged(i);
-                                    break;
-                                }
+                            if (isShown) {
+                                messageList.put(message);
                             }
                             break;
                         case REMOVED:
-                            // Remove message
-                            messageList.removeIf(msg -> msg.getId().equals(message.getId()));
-                            messageAdapter.notifyDataSetChanged();
+                            // Messages sliding out of the realtime window stay in the list as history
+                            if (!ChatRepository.isSlidOutOfWindow(dc, snapshot)) {
+                                messageList.removeById(message.getId());
+                            }
                             break;
                     }
                 }
@@ -227,6 +316,18 @@ public class GroupChatActivity extends AppCompatActivity implements ChatReposito
                 // Update empty state
                 showLoading(false);
             }
+
+            if (!isWindowFromServer) {
+                // Tính lại con trỏ lịch sử cho đến khi có ảnh chụp từ server;
+                // cửa sổ chưa đầy trong ảnh chụp đó nghĩa là không còn lịch sử cũ hơn
+                oldestMessageSnapshot = snapshot.isEmpty() ? null : snapshot.getDocuments().get(0);
+                hasMoreHistory = snapshot.size() >= ChatRepository.MESSAGE_WINDOW_SIZE;
+                isWindowFromServer = !snapshot.getMetadata().isFromCache();
+                if (isWindowFromServer) {
+                    // Ảnh chụp chỉ đổi metadata không gây layout lại: tự kiểm tra vị trí cuộn
+                    loadOlderMessagesIfNearTop((LinearLayoutManager) binding.rvMessages.getLayoutManager());
+                }
+            }
         }
     }
 
@@ -8,26 +8,54 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grouptaskmanager.R;
+import com.example.grouptaskmanager.model.ChatMessage;
+import com.example.grouptaskmanager.model.Group;
 import com.example.grouptaskmanager.model.GroupWithUnread;
+import com.example.grouptaskmanager.repository.ChatRepository;
+import com.example.grouptaskmanager.utils.DateFormats;
+import com.example.grouptaskmanager.utils.StableIds;
 
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
 
-public class GroupChatAdapter extends RecyclerView.Adapter<GroupChatAdapter.GroupChatViewHolder> {
+public class GroupChatAdapter extends ListAdapter<GroupWithUnread, GroupChatAdapter.GroupChatViewHolder> {
+
+    // Payload khi chỉ số tin chưa đọc hoặc tin nhắn cuối thay đổi
+    private static final int PAYLOAD_UNREAD = 1;
+    private static final int PAYLOAD_LAST_MESSAGE = 1 << 1;
+
+    private static final DiffUtil.ItemCallback<GroupWithUnread> DIFF_CALLBACK = new DiffUtil.ItemCallback<GroupWithUnread>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull GroupWithUnread oldItem, @NonNull GroupWithUnread newItem) {
+            return Objects.equals(oldItem.getGroup().getId(), newItem.getGroup().getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull GroupWithUnread oldItem, @NonNull GroupWithUnread newItem) {
+            return changedParts(oldItem, newItem) == 0 && !hasGroupChanges(oldItem, newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull GroupWithUnread oldItem, @NonNull GroupWithUnread newItem) {
+            return hasGroupChanges(oldItem, newItem) ? null : changedParts(oldItem, newItem);
+        }
+    };
 
     private Context context;
-    private List<GroupWithUnread> groupList;
     private OnGroupChatClickListener listener;
+    private final StableIds stableIds = new StableIds();
 
-    public GroupChatAdapter(Context context, List<GroupWithUnread> groupList, OnGroupChatClickListener listener) {
+    public GroupChatAdapter(Context context, OnGroupChatClickListener listener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.groupList = groupList;
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -39,13 +67,62 @@ public class GroupChatAdapter extends RecyclerView.Adapter<GroupChatAdapter.Grou
 
     @Override
     public void onBindViewHolder(@NonNull GroupChatViewHolder holder, int position) {
-        GroupWithUnread groupWithUnread = groupList.get(position);
+        GroupWithUnread groupWithUnread = getItem(position);
         holder.bind(groupWithUnread);
     }
 
     @Override
-    public int getItemCount() {
-        return groupList.size();
+    public void onBindViewHolder(@NonNull GroupChatViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        int parts = 0;
+        for (Object payload : payloads) {
+            parts |= (Integer) payload;
+        }
+        GroupWithUnread groupWithUnread = getItem(position);
+        if ((parts & PAYLOAD_LAST_MESSAGE) != 0) {
+            holder.bindLastMessage(groupWithUnread);
+        }
+        if ((parts & PAYLOAD_UNREAD) != 0) {
+            holder.bindUnread(groupWithUnread);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idOf(getItem(position).getGroup().getId());
+    }
+
+    private static int changedParts(GroupWithUnread oldItem, GroupWithUnread newItem) {
+        int parts = 0;
+        if (oldItem.getUnreadCount() != newItem.getUnreadCount()) {
+            parts |= PAYLOAD_UNREAD;
+        }
+        if (!isSameMessage(oldItem.getLastMessage(), newItem.getLastMessage())) {
+            parts |= PAYLOAD_LAST_MESSAGE;
+        }
+        return parts;
+    }
+
+    private static boolean isSameMessage(ChatMessage oldMessage, ChatMessage newMessage) {
+        if (oldMessage == null || newMessage == null) {
+            return oldMessage == newMessage;
+        }
+        return Objects.equals(oldMessage.getId(), newMessage.getId())
+                && Objects.equals(oldMessage.getMessage(), newMessage.getMessage())
+                && Objects.equals(oldMessage.getSenderName(), newMessage.getSenderName())
+                && Objects.equals(oldMessage.getTimestamp(), newMessage.getTimestamp());
+    }
+
+    private static boolean hasGroupChanges(GroupWithUnread oldItem, GroupWithUnread newItem) {
+        Group oldGroup = oldItem.getGroup();
+        Group newGroup = newItem.getGroup();
+        return !Objects.equals(oldGroup.getName(), newGroup.getName())
+                || !Objects.equals(oldGroup.getMembers(), newGroup.getMembers())
+                || !Objects.equals(oldGroup.getUpdatedAt(), newGroup.getUpdatedAt())
+                || oldGroup.isPrivate() != newGroup.isPrivate();
     }
 
     public class GroupChatViewHolder extends RecyclerView.ViewHolder {
@@ -68,8 +145,9 @@ public class GroupChatAdapter extends RecyclerView.Adapter<GroupChatAdapter.Grou
             viewOnlineIndicator = itemView.findViewById(R.id.view_online_indicator);
 
             itemView.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onGroupChatClick(groupList.get(getAdapterPosition()).getGroup());
+                int position = getAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onGroupChatClick(getItem(position).getGroup());
                 }
             });
         }
@@ -90,6 +168,14 @@ public class GroupChatAdapter extends RecyclerView.Adapter<GroupChatAdapter.Grou
                 ivGroupIcon.setImageResource(R.drawable.ic_group_public);
             }
 
+            bindLastMessage(groupWithUnread);
+            bindUnread(groupWithUnread);
+
+            // Online indicator (can be enhanced later with real online status)
+            viewOnlineIndicator.setVisibility(View.GONE);
+        }
+
+        void bindLastMessage(GroupWithUnread groupWithUnread) {
             // Set last message
             if (groupWithUnread.getLastMessage() != null) {
                 String lastMessageText = groupWithUnread.getLastMessage().getMessage();
@@ -119,16 +205,13 @@ public class GroupChatAdapter extends RecyclerView.Adapter<GroupChatAdapter.Grou
                     tvLastMessageTime.setText("");
                 }
             }
+        }
 
+        void bindUnread(GroupWithUnread groupWithUnread) {
             // Set unread badge
             if (groupWithUnread.hasUnreadMessages()) {
                 tvUnreadBadge.setVisibility(View.VISIBLE);
-                int unreadCount = groupWithUnread.getUnreadCount();
-                if (unreadCount > 99) {
-                    tvUnreadBadge.setText("99+");
-                } else {
-                    tvUnreadBadge.setText(String.valueOf(unreadCount));
-                }
+                tvUnreadBadge.setText(ChatRepository.formatUnreadCount(groupWithUnread.getUnreadCount()));
                 
                 // Make group name bold if has unread messages
                 tvGroupName.setTextColor(context.getColor(R.color.text_primary));
@@ -140,28 +223,11 @@ public class GroupChatAdapter extends RecyclerView.Adapter<GroupChatAdapter.Grou
                 tvGroupName.setTextColor(context.getColor(R.color.text_primary));
                 tvLastMessage.setTextColor(context.getColor(R.color.text_secondary));
             }
-
-            // Online indicator (can be enhanced later with real online status)
-            viewOnlineIndicator.setVisibility(View.GONE);
         }
 
         private void setFormattedTime(Date date) {
-            SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM", Locale.getDefault());
-            
-            Date now = new Date();
-            
             // If today, show time; if not today, show date
-            if (isSameDay(now, date)) {
-                tvLastMessageTime.setText(timeFormat.format(date));
-            } else {
-                tvLastMessageTime.setText(dateFormat.format(date));
-            }
-        }
-
-        private boolean isSameDay(Date date1, Date date2) {
-            SimpleDateFormat fmt = new SimpleDateFormat("yyyyMMdd", Locale.getDefault());
-            return fmt.format(date1).equals(fmt.format(date2));
+            tvLastMessageTime.setText(DateFormats.formatTimeOrDay(date));
         }
     }
 
@@ -0,0 +1,167 @@
+package com.example.grouptaskmanager.chat;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.example.grouptaskmanager.model.ChatMessage;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Danh sách tin nhắn của màn hình chat, luôn sắp theo (timestamp, id) tăng dần.
+ * - Tra cứu theo id là O(1) (map id -> tin nhắn đang hiển thị)
+ * - Vị trí được tìm bằng tìm kiếm nhị phân theo khóa sắp xếp: O(log n)
+ * - Mỗi thay đổi báo đúng vị trí cho ListUpdateCallback (inserted/changed/moved/removed)
+ * Tin nhắn chưa có timestamp (đang chờ server) xếp cuối. Chỉ dùng trên luồng chính.
+ */
+public class MessageBuffer extends AbstractList<ChatMessage> {
+
+    /**
+     * Cũ trước, mới sau; cùng timestamp thì theo id để thứ tự ổn định
+     */
+    private static final Comparator<ChatMessage> ORDER = (first, second) -> {
+        if (first.getTimestamp() == null) {
+            if (second.getTimestamp() != null) return 1;
+        } else if (second.getTimestamp() == null) {
+            return -1;
+        } else {
+            int byTime = first.getTimestamp().compareTo(second.getTimestamp());
+            if (byTime != 0) return byTime;
+        }
+        return first.getId().compareTo(second.getId());
+    };
+
+    private final List<ChatMessage> messages = new ArrayList<>();
+    private final Map<String, ChatMessage> byId = new HashMap<>();
+    private final ListUpdateCallback callback;
+
+    public MessageBuffer(ListUpdateCallback callback) {
+        this.callback = callback;
+    }
+
+    @Override
+    public ChatMessage get(int position) {
+        return messages.get(position);
+    }
+
+    @Override
+    public int size() {
+        return messages.size();
+    }
+
+    public boolean containsId(String messageId) {
+        return byId.containsKey(messageId);
+    }
+
+    /**
+     * Vị trí hiện tại của tin nhắn, -1 nếu không có
+     */
+    public int positionOf(String messageId) {
+        ChatMessage message = byId.get(messageId);
+        return message != null ? search(message) : -1;
+    }
+
+    /**
+     * Thêm hoặc cập nhật một tin nhắn; trả về vị trí của nó sau khi thay đổi
+     */
+    public int put(ChatMessage message) {
+        ChatMessage old = byId.get(message.getId());
+        if (old == null) {
+            int position = insertionPoint(message);
+            messages.add(position, message);
+            byId.put(message.getId(), message);
+            callback.onInserted(position, 1);
+            return position;
+        }
+
+        int oldPosition = search(old);
+        byId.put(message.getId(), message);
+        if (ORDER.compare(old, message) == 0) {
+            messages.set(oldPosition, message);
+            callback.onChanged(oldPosition, 1, null);
+            return oldPosition;
+        }
+        // Khóa sắp xếp thay đổi (ví dụ server gán timestamp): chuyển sang vị trí mới
+        messages.remove(oldPosition);
+        int newPosition = insertionPoint(message);
+        messages.add(newPosition, message);
+        if (newPosition != oldPosition) {
+            callback.onMoved(oldPosition, newPosition);
+        }
+        callback.onChanged(newPosition, 1, null);
+        return newPosition;
+    }
+
+    /**
+     * Thêm nhiều tin nhắn (ví dụ một trang lịch sử). Nếu tất cả đều mới và cũ hơn tin đầu tiên
+     * đang hiển thị thì chèn một lần ở đầu danh sách; ngược lại thêm từng tin
+     */
+    public void putAll(List<ChatMessage> batch) {
+        List<ChatMessage> sorted = new ArrayList<>(batch);
+        Collections.sort(sorted, ORDER);
+        boolean prepend = !sorted.isEmpty();
+        for (ChatMessage message : sorted) {
+            if (byId.containsKey(message.getId())) {
+                prepend = false;
+                break;
+            }
+        }
+        if (prepend && !messages.isEmpty()
+                && ORDER.compare(sorted.get(sorted.size() - 1), messages.get(0)) >= 0) {
+            prepend = false;
+        }
+
+        if (!prepend) {
+            for (ChatMessage message : sorted) {
+                put(message);
+            }
+            return;
+        }
+        messages.addAll(0, sorted);
+        for (ChatMessage message : sorted) {
+            byId.put(message.getId(), message);
+        }
+        callback.onInserted(0, sorted.size());
+    }
+
+    /**
+     * Thay toàn bộ nội dung (lần tải đầu tiên)
+     */
+    public void reset(List<ChatMessage> batch) {
+        int oldSize = messages.size();
+        messages.clear();
+        byId.clear();
+        if (oldSize > 0) {
+            callback.onRemoved(0, oldSize);
+        }
+        putAll(batch);
+    }
+
+    /**
+     * Xóa tin nhắn theo id; trả về vị trí đã xóa, -1 nếu không có
+     */
+    public int removeById(String messageId) {
+        ChatMessage old = byId.remove(messageId);
+        if (old == null) {
+            return -1;
+        }
+        int position = search(old);
+        messages.remove(position);
+        callback.onRemoved(position, 1);
+        return position;
+    }
+
+    private int search(ChatMessage message) {
+        return Collections.binarySearch(messages, message, ORDER);
+    }
+
+    private int insertionPoint(ChatMessage message) {
+        int index = search(message);
+        return index >= 0 ? index : -(index + 1);
+    }
+}
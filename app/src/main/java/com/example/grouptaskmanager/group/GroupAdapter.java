@@ -8,37 +8,56 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.model.Group;
-import com.example.grouptaskmanager.repository.TaskRepository;
-import com.google.firebase.Timestamp;
+import com.example.grouptaskmanager.repository.TaskStore;
+import com.example.grouptaskmanager.utils.StableIds;
 import com.google.firebase.auth.FirebaseAuth;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 
-public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHolder> {
+public class GroupAdapter extends ListAdapter<Group, GroupAdapter.GroupViewHolder> {
+
+    private static final int PAYLOAD_TASK_COUNT = 1;
+
+    private static final DiffUtil.ItemCallback<Group> DIFF_CALLBACK = new DiffUtil.ItemCallback<Group>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Group oldItem, @NonNull Group newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Group oldItem, @NonNull Group newItem) {
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription())
+                    && Objects.equals(oldItem.getMembers(), newItem.getMembers())
+                    && Objects.equals(oldItem.getCreatedBy(), newItem.getCreatedBy())
+                    && Objects.equals(oldItem.getCreatedAt(), newItem.getCreatedAt())
+                    && oldItem.isPrivate() == newItem.isPrivate();
+        }
+    };
 
-    private List<Group> groupList;
-    private List<Group> filteredGroupList;
     private final OnGroupClickListener listener;
-    private final TaskRepository taskRepository;
+    private final TaskStore taskStore;
     private final FirebaseAuth auth;
-    private final Map<String, Integer> taskCountCache = new HashMap<>();
+    // Số nhiệm vụ đang hiển thị của mỗi nhóm, để chỉ bind lại dòng có số thay đổi
+    private final Map<String, Integer> shownTaskCounts = new HashMap<>();
+    private final StableIds stableIds = new StableIds();
 
-    public GroupAdapter(List<Group> groupList, OnGroupClickListener listener) {
-        this.groupList = groupList;
-        this.filteredGroupList = new ArrayList<>(groupList);
+    public GroupAdapter(OnGroupClickListener listener) {
+        super(DIFF_CALLBACK);
         this.listener = listener;
-        this.taskRepository = new TaskRepository();
+        this.taskStore = TaskStore.getInstance();
         this.auth = FirebaseAuth.getInstance();
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -50,79 +69,60 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHol
 
     @Override
     public void onBindViewHolder(@NonNull GroupViewHolder holder, int position) {
-        Group group = filteredGroupList.get(position);
+        Group group = getItem(position);
         holder.bind(group);
     }
 
     @Override
-    public int getItemCount() {
-        return filteredGroupList.size();
+    public void onBindViewHolder(@NonNull GroupViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        bindTaskCount(getItem(position).getId(), holder);
     }
 
-    public void updateList(List<Group> newList) {
-        this.groupList = new ArrayList<>(newList);
-        this.filteredGroupList = new ArrayList<>(newList);
-        notifyDataSetChanged();
+    @Override
+    public long getItemId(int position) {
+        return stableIds.idOf(getItem(position).getId());
     }
 
-    public void filter(String query) {
-        filteredGroupList.clear();
-
-        if (query.isEmpty()) {
-            filteredGroupList.addAll(groupList);
-        } else {
-            String lowerCaseQuery = query.toLowerCase();
-            for (Group group : groupList) {
-                if (group.getName().toLowerCase().contains(lowerCaseQuery) ||
-                        (group.getDescription() != null && group.getDescription().toLowerCase().contains(lowerCaseQuery))) {
-                    filteredGroupList.add(group);
-                }
-            }
-        }
-
-        notifyDataSetChanged();
+    /**
+     * Hiển thị danh sách nhóm đã lọc (lọc theo loại và từ khóa do GroupsFragment thực hiện);
+     * DiffUtil tính thay đổi trên luồng nền
+     */
+    public void updateList(List<Group> newList) {
+        submitList(new ArrayList<>(newList));
     }
 
-    public void filterByType(String filterType, String currentUserId) {
-        filteredGroupList.clear();
-
-        if (filterType.equals("all")) {
-            filteredGroupList.addAll(groupList);
-        } else if (filterType.equals("owned") && currentUserId != null) {
-            for (Group group : groupList) {
-                if (currentUserId.equals(group.getCreatedBy())) {
-                    filteredGroupList.add(group);
-                }
-            }
-        } else if (filterType.equals("joined") && currentUserId != null) {
-            for (Group group : groupList) {
-                if (!currentUserId.equals(group.getCreatedBy())) {
-                    filteredGroupList.add(group);
-                }
+    /**
+     * Nhiệm vụ trong TaskStore thay đổi: chỉ bind lại số nhiệm vụ của các nhóm có số thay đổi
+     */
+    public void onTaskCountsChanged() {
+        List<Group> groups = getCurrentList();
+        for (int i = 0; i < groups.size(); i++) {
+            String groupId = groups.get(i).getId();
+            Integer shown = shownTaskCounts.get(groupId);
+            if (shown == null || shown != countTasks(groupId)) {
+                notifyItemChanged(i, PAYLOAD_TASK_COUNT);
             }
         }
-
-        notifyDataSetChanged();
     }
 
-    private void loadTaskCount(String groupId, GroupViewHolder holder) {
-        // Kiểm tra cache trước
-        if (taskCountCache.containsKey(groupId)) {
-            int count = taskCountCache.get(groupId);
-            holder.tvTaskCount.setText(count + " nhiệm vụ");
+    private void bindTaskCount(String groupId, GroupViewHolder holder) {
+        // Đếm từ chỉ mục của TaskStore dùng chung, không tải danh sách nhiệm vụ của nhóm
+        if (!taskStore.isLoaded()) {
+            shownTaskCounts.remove(groupId);
+            holder.tvTaskCount.setText("-- nhiệm vụ");
             return;
         }
+        int taskCount = countTasks(groupId);
+        shownTaskCounts.put(groupId, taskCount);
+        holder.tvTaskCount.setText(taskCount + " nhiệm vụ");
+    }
 
-        // Load từ Firebase
-        taskRepository.getGroupTasks(groupId)
-                .addOnSuccessListener(querySnapshot -> {
-                    int taskCount = querySnapshot.size();
-                    taskCountCache.put(groupId, taskCount);
-                    holder.tvTaskCount.setText(taskCount + " nhiệm vụ");
-                })
-                .addOnFailureListener(e -> {
-                    holder.tvTaskCount.setText("0 nhiệm vụ");
-                });
+    private int countTasks(String groupId) {
+        return taskStore.getIndex().getKeysByGroup(groupId).size();
     }
 
     public interface OnGroupClickListener {
@@ -155,7 +155,7 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHol
             itemView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION) {
-                    listener.onGroupClick(filteredGroupList.get(position));
+                    listener.onGroupClick(getItem(position));
                 }
             });
         }
@@ -182,8 +182,8 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHol
             int memberCount = group.getMembers() != null ? group.getMembers().size() : 0;
             tvMemberCount.setText(memberCount + " thành viên");
             
-            // Load và hiển thị số lượng nhiệm vụ
-            loadTaskCount(group.getId(), this);
+            // Hiển thị số lượng nhiệm vụ
+            bindTaskCount(group.getId(), this);
             
             // Hiển thị role badge
             String currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
@@ -199,11 +199,8 @@ public class GroupAdapter extends RecyclerView.Adapter<GroupAdapter.GroupViewHol
             ivPrivateBadge.setVisibility(group.isPrivate() ? View.VISIBLE : View.GONE);
             
             // Hiển thị ngày tạo nhóm (định dạng ngắn)
-            Timestamp createdAt = group.getCreatedAt();
-            if (createdAt != null) {
-                Date date = createdAt.toDate();
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-                tvCreatedDate.setText(dateFormat.format(date));
+            if (group.getCreatedAt() != null) {
+                tvCreatedDate.setText(group.getCreatedDateText());
             } else {
                 tvCreatedDate.setText("--/--/----");
             }
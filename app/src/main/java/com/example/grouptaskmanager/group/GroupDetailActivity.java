@@ -26,21 +26,17 @@ import com.example.grouptaskmanager.databinding.ActivityGroupDetailBinding;
 import com.example.grouptaskmanager.model.Group;
 import com.example.grouptaskmanager.model.Task;
 import com.example.grouptaskmanager.model.User;
+import com.example.grouptaskmanager.repository.GroupDeleter;
 import com.example.grouptaskmanager.repository.GroupRepository;
-import com.example.grouptaskmanager.repository.TaskRepository;
+import com.example.grouptaskmanager.repository.TaskStore;
 import com.example.grouptaskmanager.repository.UserRepository;
 import com.example.grouptaskmanager.task.TaskListActivity;
 import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
 public class GroupDetailActivity extends AppCompatActivity {
@@ -49,11 +45,10 @@ public class GroupDetailActivity extends AppCompatActivity {
     private ActivityGroupDetailBinding binding;
     private GroupRepository groupRepository;
     private UserRepository userRepository;
-    private TaskRepository taskRepository;
+    private TaskStore taskStore;
     private String groupId;
     private Group currentGroup;
     private boolean isGroupCreator = false;
-    private Map<String, User> userCache = new HashMap<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -63,7 +58,7 @@ public class GroupDetailActivity extends AppCompatActivity {
 
         groupRepository = new GroupRepository();
         userRepository = new UserRepository();
-        taskRepository = new TaskRepository();
+        taskStore = TaskStore.getInstance();
 
         // Lấy groupId từ intent
         groupId = getIntent().getStringExtra("GROUP_ID");
@@ -143,27 +138,23 @@ public class GroupDetailActivity extends AppCompatActivity {
     }
 
     private void loadTaskStats() {
-        taskRepository.getGroupTasks(groupId)
-            .addOnSuccessListener(this::processTaskStats)
-            .addOnFailureListener(e -> {
-                Log.e(TAG, "Error loading task statistics", e);
-            });
+        // Thống kê lấy từ TaskStore dùng chung, tự cập nhật khi nhiệm vụ thay đổi
+        taskStore.addListener(taskStoreListener);
     }
 
-    private void processTaskStats(QuerySnapshot querySnapshot) {
-        if (querySnapshot == null || querySnapshot.isEmpty()) {
-            updateTaskStats(0, 0, 0);
-            return;
+    private final TaskStore.OnTasksChangedListener taskStoreListener = new TaskStore.OnTasksChangedListener() {
+        @Override
+        public void onTasksChanged(TaskStore store) {
+            processTaskStats(store.getTasksByGroup(groupId));
         }
 
-        List<Task> tasks = new ArrayList<>();
-        for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-            Task task = doc.toObject(Task.class);
-            if (task != null) {
-                tasks.add(task);
-            }
+        @Override
+        public void onError(Exception e) {
+            Log.e(TAG, "Error loading task statistics", e);
         }
+    };
 
+    private void processTaskStats(List<Task> tasks) {
         int totalTasks = tasks.size();
         int completedTasks = 0;
         
@@ -175,7 +166,7 @@ public class GroupDetailActivity extends AppCompatActivity {
         
         int completionRate = totalTasks > 0 ? (completedTasks * 100) / totalTasks : 0;
         
-        updateTaskStats(totalTasks, tasks.size() - completedTasks, completionRate);
+        updateTaskStats(totalTasks, totalTasks - completedTasks, completionRate);
     }
 
     private void updateTaskStats(int totalTasks, int activeTasks, int completionRate) {
@@ -186,12 +177,18 @@ public class GroupDetailActivity extends AppCompatActivity {
     }
 
     private void processGroupDetails(DocumentSnapshot document) {
-        if (document.exists()) {
+        // Nhóm đang bị xóa được xem như không còn tồn tại
+        if (document.exists() && !GroupDeleter.isDeleting(document)) {
             currentGroup = document.toObject(Group.class);
             
             if (currentGroup != null) {
                 displayGroupInfo();
                 loadGroupMembers();
+                
+                // Cập nhật lại số thành viên trong phần thống kê
+                if (taskStore.isLoaded()) {
+                    processTaskStats(taskStore.getTasksByGroup(groupId));
+                }
             }
         } else {
             Toast.makeText(this, "Không tìm thấy thông tin nhóm", Toast.LENGTH_SHORT).show();
@@ -244,9 +241,7 @@ public class GroupDetailActivity extends AppCompatActivity {
                 // Thêm thông tin ngày tạo
                 Timestamp createdAt = currentGroup.getCreatedAt();
                 if (createdAt != null) {
-                    Date date = createdAt.toDate();
-                    SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-                    createdInfo += " • " + dateFormat.format(date);
+                    createdInfo += " • " + currentGroup.getCreatedDateText();
                 }
                 
                 binding.tvCreatedBy.setText(createdInfo);
@@ -255,9 +250,7 @@ public class GroupDetailActivity extends AppCompatActivity {
             // Nếu không có thông tin người tạo, chỉ hiển thị ngày tạo
             Timestamp createdAt = currentGroup.getCreatedAt();
             if (createdAt != null) {
-                Date date = createdAt.toDate();
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-                binding.tvCreatedBy.setText("Ngày tạo: " + dateFormat.format(date));
+                binding.tvCreatedBy.setText("Ngày tạo: " + currentGroup.getCreatedDateText());
             }
         }
     }
@@ -270,52 +263,29 @@ public class GroupDetailActivity extends AppCompatActivity {
         showLoading(true);
         
         List<String> memberIds = currentGroup.getMembers();
-        List<User> membersList = new ArrayList<>();
-        final int[] processedCount = {0};
         
+        // Đọc mọi thành viên trong một lần gọi; UserCache trả ngay user còn hạn
+        userRepository.getUsersByIds(memberIds)
+            .addOnSuccessListener(users -> {
+                displayMembersList(collectMembers(memberIds, users));
+                showLoading(false);
+            })
+            .addOnFailureListener(e -> {
+                Log.e(TAG, "Error loading group members", e);
+                displayMembersList(new ArrayList<>());
+                showLoading(false);
+            });
+    }
+
+    private List<User> collectMembers(List<String> memberIds, Map<String, User> users) {
+        List<User> membersList = new ArrayList<>();
         for (String userId : memberIds) {
-            // Kiểm tra xem đã có thông tin user trong cache chưa
-            if (userCache.containsKey(userId)) {
-                membersList.add(userCache.get(userId));
-                processedCount[0]++;
-                
-                // Nếu đã xử lý tất cả thành viên, hiển thị danh sách
-                if (processedCount[0] == memberIds.size()) {
-                    displayMembersList(membersList);
-                    showLoading(false);
-                }
-            } else {
-                // Nếu chưa có trong cache, lấy từ Firestore
-                userRepository.getUserById(userId)
-                    .addOnSuccessListener(documentSnapshot -> {
-                        User user = documentSnapshot.toObject(User.class);
-                        if (user != null) {
-                            // Đảm bảo ID được thiết lập
-                            user.setId(documentSnapshot.getId());
-                            userCache.put(userId, user);
-                            membersList.add(user);
-                        }
-                        
-                        processedCount[0]++;
-                        
-                        // Nếu đã xử lý tất cả thành viên, hiển thị danh sách
-                        if (processedCount[0] == memberIds.size()) {
-                            displayMembersList(membersList);
-                            showLoading(false);
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        processedCount[0]++;
-                        Log.e(TAG, "Error loading user data for " + userId, e);
-                        
-                        // Nếu đã xử lý tất cả thành viên, hiển thị danh sách
-                        if (processedCount[0] == memberIds.size()) {
-                            displayMembersList(membersList);
-                            showLoading(false);
-                        }
-                    });
+            User user = users.get(userId);
+            if (user != null) {
+                membersList.add(user);
             }
         }
+        return membersList;
     }
 
     private void displayMembersList(List<User> members) {
@@ -326,23 +296,9 @@ public class GroupDetailActivity extends AppCompatActivity {
     }
 
     private void loadUserDetails(String userId, OnUserLoadedListener listener) {
-        // Kiểm tra xem đã có thông tin user trong cache chưa
-        if (userCache.containsKey(userId)) {
-            listener.onUserLoaded(userCache.get(userId));
-            return;
-        }
-        
-        // Nếu chưa có trong cache, lấy từ Firestore
-        userRepository.getUserById(userId)
-            .addOnSuccessListener(documentSnapshot -> {
-                User user = documentSnapshot.toObject(User.class);
-                if (user != null) {
-                    // Đảm bảo ID được thiết lập
-                    user.setId(documentSnapshot.getId());
-                    userCache.put(userId, user);
-                }
-                listener.onUserLoaded(user);
-            })
+        // UserRepository trả ngay user còn hạn trong UserCache, nếu không thì tải từ Firestore
+        userRepository.getUser(userId)
+            .addOnSuccessListener(listener::onUserLoaded)
             .addOnFailureListener(e -> {
                 Log.e(TAG, "Error loading user details for " + userId, e);
                 listener.onUserLoaded(null);
@@ -397,7 +353,11 @@ public class GroupDetailActivity extends AppCompatActivity {
     private void deleteGroup() {
         showLoading(true);
         
-        groupRepository.deleteGroup(groupId)
+        groupRepository.deleteGroup(groupId, (step, deletedInStep, deletedTotal) -> {
+                    if (getSupportActionBar() != null) {
+                        getSupportActionBar().setSubtitle("Đang xóa... (" + deletedTotal + ")");
+                    }
+                })
                 .addOnSuccessListener(aVoid -> {
                     showLoading(false);
                     Toast.makeText(GroupDetailActivity.this, "Đã xóa nhóm", Toast.LENGTH_SHORT).show();
@@ -405,6 +365,9 @@ public class GroupDetailActivity extends AppCompatActivity {
                 })
                 .addOnFailureListener(e -> {
                     showLoading(false);
+                    if (getSupportActionBar() != null) {
+                        getSupportActionBar().setSubtitle(null);
+                    }
                     Log.e(TAG, "Error deleting group", e);
                     Toast.makeText(GroupDetailActivity.this, "Lỗi: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                 });
@@ -470,6 +433,14 @@ public class GroupDetailActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (taskStore != null) {
+            taskStore.removeListener(taskStoreListener);
+        }
+    }
+
     private void showLoading(boolean isLoading) {
         binding.progressBar.setVisibility(isLoading ? View.VISIBLE : View.GONE);
     }
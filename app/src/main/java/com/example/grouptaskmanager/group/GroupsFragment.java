@@ -13,28 +13,33 @@ import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.example.grouptaskmanager.databinding.FragmentGroupsBinding;
 import com.example.grouptaskmanager.model.Group;
-import com.example.grouptaskmanager.repository.GroupRepository;
+import com.example.grouptaskmanager.repository.TaskSearchIndex;
+import com.example.grouptaskmanager.repository.TaskStore;
+import com.example.grouptaskmanager.utils.FilterPipeline;
 import com.google.android.material.chip.Chip;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
-public class GroupsFragment extends Fragment implements GroupAdapter.OnGroupClickListener {
+public class GroupsFragment extends Fragment implements GroupAdapter.OnGroupClickListener,
+        TaskStore.OnTasksChangedListener {
 
     private static final String TAG = "GroupsFragment";
     private FragmentGroupsBinding binding;
-    private GroupRepository groupRepository;
+    private GroupsViewModel groupsViewModel;
     private GroupAdapter groupAdapter;
     private List<Group> groupList;
     private FirebaseAuth auth;
     private String currentFilter = "all";
+    private String searchQuery = "";
+    private FilterPipeline<Group> filterPipeline;
 
     // Activity Result Launchers
     private ActivityResultLauncher<Intent> joinGroupLauncher;
@@ -43,9 +48,11 @@ public class GroupsFragment extends Fragment implements GroupAdapter.OnGroupClic
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        groupRepository = new GroupRepository();
+        // Dùng chung với ProfileFragment: một lần tải cho cả hai tab
+        groupsViewModel = new ViewModelProvider(requireActivity()).get(GroupsViewModel.class);
         groupList = new ArrayList<>();
         auth = FirebaseAuth.getInstance();
+        filterPipeline = new FilterPipeline<>(this::showFilteredGroups);
         
         // Khởi tạo Activity Result Launchers
         setupActivityResultLaunchers();
@@ -60,7 +67,7 @@ public class GroupsFragment extends Fragment implements GroupAdapter.OnGroupClic
                             && result.getData() != null 
                             && result.getData().getBooleanExtra(JoinGroupActivity.EXTRA_GROUP_JOINED, false)) {
                         // Reload danh sách nhóm khi tham gia thành công
-                        loadGroups();
+                        groupsViewModel.refresh();
                     }
                 }
         );
@@ -71,7 +78,7 @@ public class GroupsFragment extends Fragment implements GroupAdapter.OnGroupClic
                 result -> {
                     if (result.getResultCode() == requireActivity().RESULT_OK) {
                         // Reload danh sách nhóm khi tạo nhóm thành công
-                        loadGroups();
+                        groupsViewModel.refresh();
                     }
                 }
         );
@@ -91,18 +98,20 @@ public class GroupsFragment extends Fragment implements GroupAdapter.OnGroupClic
         setupListeners();
         setupSearchView();
         setupFilterChips();
-        loadGroups();
+        observeGroups();
+        // Số nhiệm vụ của mỗi nhóm lấy từ TaskStore dùng chung
+        TaskStore.getInstance().addListener(this);
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        // Reload groups when returning to the fragment
-        loadGroups();
+        // Dữ liệu được giữ trong ViewModel; chỉ tải lại khi đã cũ
+        groupsViewModel.refreshIfStale();
     }
 
     private void setupRecyclerView() {
-        groupAdapter = new GroupAdapter(groupList, this);
+        groupAdapter = new GroupAdapter(this);
         binding.rvGroups.setLayoutManager(new LinearLayoutManager(requireContext()));
         binding.rvGroups.setAdapter(groupAdapter);
     }
@@ -135,13 +144,16 @@ public class GroupsFragment extends Fragment implements GroupAdapter.OnGroupClic
         binding.searchGroups.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
-                groupAdapter.filter(query);
+                searchQuery = query.trim();
+                applyFilters();
                 return true;
             }
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                groupAdapter.filter(newText);
+                searchQuery = newText.trim();
+                // Chỉ lọc khi người dùng ngừng gõ
+                filterPipeline.submitDebounced(createGroupFilter());
                 return true;
             }
         });
@@ -165,44 +177,66 @@ public class GroupsFragment extends Fragment implements GroupAdapter.OnGroupClic
     }
 
     private void applyFilters() {
-        String currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
-        groupAdapter.filterByType(currentFilter, currentUserId);
+        filterPipeline.submit(createGroupFilter());
     }
 
-    private void loadGroups() {
-        showLoading(true);
-        groupRepository.getUserGroups()
-                .addOnSuccessListener(this::processGroupData)
-                .addOnFailureListener(e -> {
-                    if (binding == null) return;
-                    showLoading(false);
-                    Log.e(TAG, "Error loading groups", e);
-                    showEmptyState(true);
-                });
+    /**
+     * Tạo bộ lọc theo loại nhóm và từ khóa (tên, mô tả; không phân biệt dấu);
+     * chạy trên luồng nền của FilterPipeline
+     */
+    private Callable<List<Group>> createGroupFilter() {
+        String filterType = currentFilter;
+        String query = TaskSearchIndex.fold(searchQuery);
+        String currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
+        List<Group> groups = new ArrayList<>(groupList);
+
+        return () -> {
+            List<Group> result = new ArrayList<>();
+            for (Group group : groups) {
+                boolean owned = currentUserId != null && currentUserId.equals(group.getCreatedBy());
+                if (("owned".equals(filterType) && (currentUserId == null || !owned))
+                        || ("joined".equals(filterType) && (currentUserId == null || owned))) {
+                    continue;
+                }
+                if (query.isEmpty()
+                        || TaskSearchIndex.fold(group.getName()).contains(query)
+                        || TaskSearchIndex.fold(group.getDescription()).contains(query)) {
+                    result.add(group);
+                }
+            }
+            return result;
+        };
     }
 
-    private void processGroupData(QuerySnapshot querySnapshot) {
+    private void showFilteredGroups(List<Group> groups) {
         if (binding == null) return;
-        
+        groupAdapter.updateList(groups);
+    }
+
+    private void observeGroups() {
+        if (!groupsViewModel.hasData()) {
+            showLoading(true);
+        }
+        groupsViewModel.getData().observe(getViewLifecycleOwner(), this::showGroups);
+        groupsViewModel.getError().observe(getViewLifecycleOwner(), e -> {
+            if (e == null) return;
+            showLoading(false);
+            Log.e(TAG, "Error loading groups", e);
+            showEmptyState(groupList.isEmpty());
+        });
+    }
+
+    private void showGroups(List<Group> groups) {
         groupList.clear();
+        groupList.addAll(groups);
         
-        if (querySnapshot.isEmpty()) {
+        if (groupList.isEmpty()) {
             showEmptyState(true);
             showLoading(false);
             updateStatistics(0, 0, 0);
             return;
         }
         
-        for (DocumentSnapshot document : querySnapshot.getDocuments()) {
-            Group group = document.toObject(Group.class);
-            if (group != null) {
-                // Ensure ID is set (might be redundant if model has correct structure)
-                group.setId(document.getId());
-                groupList.add(group);
-            }
-        }
-        
-        groupAdapter.updateList(groupList);
         applyFilters();
         showEmptyState(groupList.isEmpty());
         showLoading(false);
@@ -267,18 +301,33 @@ public class GroupsFragment extends Fragment implements GroupAdapter.OnGroupClic
         } else {
             binding.progressBar.setVisibility(View.GONE);
             // Không set visibility cho rvGroups, layoutEmptyGroups và FABs ở đây
-            // Để processGroupData() và showEmptyState() quyết định hiển thị cái nào
+            // Để showGroups() và showEmptyState() quyết định hiển thị cái nào
         }
     }
 
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        TaskStore.getInstance().removeListener(this);
+        filterPipeline.cancel();
         binding = null;
     }
 
+    @Override
+    public void onTasksChanged(TaskStore store) {
+        if (binding == null) return;
+        groupAdapter.onTaskCountsChanged();
+    }
+
+    @Override
+    public void onError(Exception e) {
+        Log.e(TAG, "Error loading tasks", e);
+    }
+
     @Override
     public void onGroupClick(Group group) {
+        // Nhóm có thể bị sửa, rời hoặc xóa trong màn hình chi tiết: tải lại khi quay về
+        groupsViewModel.invalidate();
         Intent intent = new Intent(requireContext(), GroupDetailActivity.class);
         intent.putExtra("GROUP_ID", group.getId());
         startActivity(intent);
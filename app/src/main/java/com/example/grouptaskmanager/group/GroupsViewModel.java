@@ -0,0 +1,33 @@
+package com.example.grouptaskmanager.group;
+
+import com.example.grouptaskmanager.model.Group;
+import com.example.grouptaskmanager.repository.GroupRepository;
+import com.example.grouptaskmanager.repository.ReadPolicy;
+import com.example.grouptaskmanager.utils.RefreshingViewModel;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.List;
+
+/**
+ * Danh sách nhóm của người dùng, dùng chung (theo MainActivity) cho tab Nhóm và tab Cá nhân
+ */
+public class GroupsViewModel extends RefreshingViewModel<List<Group>> {
+
+    private final GroupRepository groupRepository = new GroupRepository();
+
+    @Override
+    protected void load(OnLoadedListener<List<Group>> listener) {
+        // Hiển thị ngay từ cache của Firestore, sau đó cập nhật bằng kết quả từ server
+        groupRepository.getUserGroups(ReadPolicy.CACHE_THEN_SERVER, new ReadPolicy.OnReadListener<QuerySnapshot>() {
+            @Override
+            public void onRead(QuerySnapshot snapshot, boolean fromCache) {
+                listener.onLoaded(GroupRepository.toGroups(snapshot));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                listener.onError(e);
+            }
+        });
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.grouptaskmanager.model;
 
+import com.example.grouptaskmanager.utils.DateFormats;
 import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Exclude;
 
 public class ChatMessage {
     private String id;
@@ -13,6 +15,8 @@ public class ChatMessage {
     private Timestamp timestamp;
     private boolean isEdited;
     private Timestamp editedAt;
+    // Chuỗi hiển thị, tính một lần cho mỗi đối tượng (không lưu vào Firestore)
+    private String timeText;
 
     // Empty constructor for Firestore
     public ChatMessage() {}
@@ -91,6 +95,21 @@ public class ChatMessage {
 
     public void setTimestamp(Timestamp timestamp) {
         this.timestamp = timestamp;
+        this.timeText = null;
+    }
+
+    /**
+     * Giờ gửi dạng HH:mm, chuỗi rỗng nếu chưa có thời gian
+     */
+    @Exclude
+    public String getTimeText() {
+        if (timeText == null) {
+            if (timestamp == null) {
+                return "";
+            }
+            timeText = DateFormats.formatTime(timestamp.toDate());
+        }
+        return timeText;
     }
 
     public boolean isEdited() {
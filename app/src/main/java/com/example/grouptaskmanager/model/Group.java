@@ -1,6 +1,8 @@
 package com.example.grouptaskmanager.model;
 
+import com.example.grouptaskmanager.utils.DateFormats;
 import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Exclude;
 import com.google.firebase.firestore.PropertyName;
 
 import java.util.ArrayList;
@@ -17,6 +19,10 @@ public class Group {
     private String inviteCode;
     @PropertyName("isPrivate")
     private boolean isPrivate;
+    private Timestamp lastMessageAt;
+    private ChatMessage lastMessage; // Bản xem trước tin nhắn cuối, ghi cùng batch với tin nhắn
+    // Chuỗi hiển thị, tính một lần cho mỗi đối tượng (không lưu vào Firestore)
+    private String createdDateText;
 
     // Cần constructor rỗng cho Firestore
     public Group() {
@@ -84,6 +90,18 @@ public class Group {
 
     public void setCreatedAt(Timestamp createdAt) {
         this.createdAt = createdAt;
+        this.createdDateText = null;
+    }
+
+    /**
+     * Ngày tạo dạng dd/MM/yyyy, null nếu chưa có
+     */
+    @Exclude
+    public String getCreatedDateText() {
+        if (createdDateText == null && createdAt != null) {
+            createdDateText = DateFormats.formatDate(createdAt.toDate());
+        }
+        return createdDateText;
     }
 
     public Timestamp getUpdatedAt() {
@@ -111,4 +129,20 @@ public class Group {
     public void setPrivate(boolean isPrivate) {
         this.isPrivate = isPrivate;
     }
-} 
\ No newline at end of file
+
+    public Timestamp getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(Timestamp lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+
+    public ChatMessage getLastMessage() {
+        return lastMessage;
+    }
+
+    public void setLastMessage(ChatMessage lastMessage) {
+        this.lastMessage = lastMessage;
+    }
+}
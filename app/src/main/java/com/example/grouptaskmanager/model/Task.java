@@ -1,6 +1,8 @@
 package com.example.grouptaskmanager.model;
 
+import com.example.grouptaskmanager.utils.DateFormats;
 import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.Exclude;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -22,6 +24,8 @@ public class Task {
     private List<String> tags;
     private int commentsCount;
     private List<Map<String, String>> attachments;
+    // Chuỗi hiển thị, tính một lần cho mỗi đối tượng (không lưu vào Firestore)
+    private String deadlineText;
 
     // Constants for status and priority
     public static final String STATUS_TODO = "todo";
@@ -141,6 +145,18 @@ public class Task {
 
     public void setDeadline(Timestamp deadline) {
         this.deadline = deadline;
+        this.deadlineText = null;
+    }
+
+    /**
+     * Hạn chót dạng dd/MM/yyyy, null nếu không có hạn chót
+     */
+    @Exclude
+    public String getDeadlineText() {
+        if (deadlineText == null && deadline != null) {
+            deadlineText = DateFormats.formatDate(deadline.toDate());
+        }
+        return deadlineText;
     }
 
     public Timestamp getCreatedAt() {
@@ -191,7 +207,7 @@ public class Task {
         this.attachments = attachments;
     }
 
-    // Transient field - not stored in Firestore
+    // Được lưu cùng nhiệm vụ để truy vấn collectionGroup; luôn được gán lại từ đường dẫn document
     public void setGroupId(String groupId) {
         this.groupId = groupId;
     }
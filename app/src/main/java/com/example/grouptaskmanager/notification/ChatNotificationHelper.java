@@ -120,6 +120,9 @@ public class ChatNotificationHelper {
         String senderName = (String) data.get("senderName");
         String message = (String) data.get("message");
         String senderId = (String) data.get("senderId");
+        // Số tin nhắn đã được gộp vào thông báo này (thông báo cũ không có trường này)
+        Object rawCount = data.get("messageCount");
+        int messageCount = rawCount instanceof Number ? ((Number) rawCount).intValue() : 1;
         
         Log.d(TAG, "Notification details - GroupId: " + groupId + ", GroupName: " + groupName + 
               ", SenderName: " + senderName + ", SenderId: " + senderId + ", Message: " + message);
@@ -134,14 +137,14 @@ public class ChatNotificationHelper {
         }
         
         Log.d(TAG, "Showing notification for message from: " + senderName);
-        showChatNotification(groupId, groupName, senderName, message, notificationId);
+        showChatNotification(groupId, groupName, senderName, message, messageCount, notificationId);
     }
     
     /**
      * Hiển thị thông báo chat
      */
     private void showChatNotification(String groupId, String groupName, String senderName, 
-                                    String message, String notificationId) {
+                                    String message, int messageCount, String notificationId) {
         Log.d(TAG, "Creating notification for group: " + groupName + " (ID: " + groupId + ")");
         
         Intent intent = new Intent(context, GroupChatActivity.class);
@@ -158,6 +161,9 @@ public class ChatNotificationHelper {
         
         String notificationTitle = groupName != null ? groupName : "Tin nhắn mới";
         String notificationText = senderName != null ? senderName + ": " + message : message;
+        if (messageCount > 1) {
+            notificationText = messageCount + " tin nhắn mới - " + notificationText;
+        }
         
         Log.d(TAG, "Notification content - Title: " + notificationTitle + ", Text: " + notificationText);
         
@@ -8,24 +8,44 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.model.Group;
+import com.example.grouptaskmanager.utils.StableIds;
 import com.google.android.material.chip.Chip;
 
-import java.util.List;
+import java.util.Objects;
 
-public class GroupSmallAdapter extends RecyclerView.Adapter<GroupSmallAdapter.GroupViewHolder> {
+public class GroupSmallAdapter extends ListAdapter<Group, GroupSmallAdapter.GroupViewHolder> {
+
+    private static final DiffUtil.ItemCallback<Group> DIFF_CALLBACK = new DiffUtil.ItemCallback<Group>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Group oldItem, @NonNull Group newItem) {
+            return Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Group oldItem, @NonNull Group newItem) {
+            int oldMembers = oldItem.getMembers() != null ? oldItem.getMembers().size() : 0;
+            int newMembers = newItem.getMembers() != null ? newItem.getMembers().size() : 0;
+            return Objects.equals(oldItem.getName(), newItem.getName())
+                    && oldMembers == newMembers
+                    && oldItem.isPrivate() == newItem.isPrivate();
+        }
+    };
 
-    private final List<Group> groupList;
     private final OnGroupClickListener listener;
     private final Context context;
+    private final StableIds stableIds = new StableIds();
 
-    public GroupSmallAdapter(Context context, List<Group> groupList, OnGroupClickListener listener) {
+    public GroupSmallAdapter(Context context, OnGroupClickListener listener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.groupList = groupList;
         this.listener = listener;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -37,13 +57,13 @@ public class GroupSmallAdapter extends RecyclerView.Adapter<GroupSmallAdapter.Gr
 
     @Override
     public void onBindViewHolder(@NonNull GroupViewHolder holder, int position) {
-        Group group = groupList.get(position);
+        Group group = getItem(position);
         holder.bind(group);
     }
 
     @Override
-    public int getItemCount() {
-        return groupList.size();
+    public long getItemId(int position) {
+        return stableIds.idOf(getItem(position).getId());
     }
 
     public interface OnGroupClickListener {
@@ -66,7 +86,7 @@ public class GroupSmallAdapter extends RecyclerView.Adapter<GroupSmallAdapter.Gr
             itemView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION) {
-                    listener.onGroupClick(groupList.get(position));
+                    listener.onGroupClick(getItem(position));
                 }
             });
         }
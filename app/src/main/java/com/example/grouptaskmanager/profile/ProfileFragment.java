@@ -18,6 +18,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.SwitchCompat;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -26,20 +27,21 @@ import com.example.grouptaskmanager.MainActivity;
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.auth.LoginActivity;
 import com.example.grouptaskmanager.group.CreateGroupActivity;
+import com.example.grouptaskmanager.group.GroupsViewModel;
 import com.example.grouptaskmanager.model.Group;
 import com.example.grouptaskmanager.profile.EditProfileActivity;
+import com.example.grouptaskmanager.repository.GroupCache;
+import com.example.grouptaskmanager.repository.LocalStore;
+import com.example.grouptaskmanager.repository.TaskStore;
+import com.example.grouptaskmanager.repository.UserCache;
+import com.example.grouptaskmanager.utils.DateFormats;
 import com.example.grouptaskmanager.utils.NotificationPermissionHelper;
 import com.google.android.material.progressindicator.CircularProgressIndicator;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
-import java.util.List;
-import java.util.Locale;
 
 import de.hdodenhof.circleimageview.CircleImageView;
 
@@ -57,9 +59,8 @@ public class ProfileFragment extends Fragment implements GroupSmallAdapter.OnGro
 
     // Firebase & data
     private FirebaseAuth auth;
-    private FirebaseFirestore db;
     private SharedPreferences sharedPreferences;
-    private List<Group> userGroups;
+    private GroupsViewModel groupsViewModel;
     private GroupSmallAdapter groupAdapter;
 
     // Activity result launcher for edit profile
@@ -76,16 +77,16 @@ public class ProfileFragment extends Fragment implements GroupSmallAdapter.OnGro
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         auth = FirebaseAuth.getInstance();
-        db = FirebaseFirestore.getInstance();
         sharedPreferences = PreferenceManager.getDefaultSharedPreferences(requireContext());
-        userGroups = new ArrayList<>();
+        // Cùng danh sách nhóm với tab Nhóm (ViewModel theo MainActivity)
+        groupsViewModel = new ViewModelProvider(requireActivity()).get(GroupsViewModel.class);
     }
 
     @Override
     public void onResume() {
         super.onResume();
-        // Reload user's groups when returning to the fragment
-        loadUserGroups();
+        // Danh sách nhóm được giữ trong ViewModel; chỉ tải lại khi đã cũ
+        groupsViewModel.refreshIfStale();
         // Update notification switch state when user returns from settings
         updateNotificationSwitch();
     }
@@ -132,7 +133,7 @@ public class ProfileFragment extends Fragment implements GroupSmallAdapter.OnGro
         
         // Load user info and groups
         loadUserInfo();
-        loadUserGroups();
+        observeUserGroups();
     }
 
     private void setupNotificationSwitch() {
@@ -174,7 +175,7 @@ public class ProfileFragment extends Fragment implements GroupSmallAdapter.OnGro
     }
 
     private void setupRecyclerView() {
-        groupAdapter = new GroupSmallAdapter(getContext(), userGroups, this);
+        groupAdapter = new GroupSmallAdapter(getContext(), this);
         rvGroups.setLayoutManager(new LinearLayoutManager(getContext()));
         rvGroups.setAdapter(groupAdapter);
     }
@@ -201,49 +202,40 @@ public class ProfileFragment extends Fragment implements GroupSmallAdapter.OnGro
             if (currentUser.getMetadata() != null) {
                 long creationTimestamp = currentUser.getMetadata().getCreationTimestamp();
                 Date joinDate = new Date(creationTimestamp);
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-                tvJoinedDate.setText(dateFormat.format(joinDate));
+                tvJoinedDate.setText(DateFormats.formatDate(joinDate));
             }
         }
     }
 
-    private void loadUserGroups() {
-        FirebaseUser currentUser = auth.getCurrentUser();
-        if (currentUser == null) return;
-
-        progressGroups.setVisibility(View.VISIBLE);
-        tvNoGroups.setVisibility(View.GONE);
+    private void observeUserGroups() {
+        if (auth.getCurrentUser() == null) return;
 
-        db.collection("groups")
-                .whereArrayContains("members", currentUser.getUid())
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    userGroups.clear();
-                    for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                        Group group = document.toObject(Group.class);
-                        group.setId(document.getId());
-                        userGroups.add(group);
-                    }
-                    
-                    progressGroups.setVisibility(View.GONE);
-                    if (userGroups.isEmpty()) {
-                        tvNoGroups.setVisibility(View.VISIBLE);
-                    } else {
-                        tvNoGroups.setVisibility(View.GONE);
-                    }
-                    
-                    groupAdapter.notifyDataSetChanged();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading user groups", e);
-                    progressGroups.setVisibility(View.GONE);
-                    tvNoGroups.setVisibility(View.VISIBLE);
-                    Toast.makeText(getContext(), "Lỗi khi tải danh sách nhóm", Toast.LENGTH_SHORT).show();
-                });
+        if (!groupsViewModel.hasData()) {
+            progressGroups.setVisibility(View.VISIBLE);
+            tvNoGroups.setVisibility(View.GONE);
+        }
+        groupsViewModel.getData().observe(getViewLifecycleOwner(), groups -> {
+            progressGroups.setVisibility(View.GONE);
+            tvNoGroups.setVisibility(groups.isEmpty() ? View.VISIBLE : View.GONE);
+            groupAdapter.submitList(new ArrayList<>(groups));
+        });
+        groupsViewModel.getError().observe(getViewLifecycleOwner(), e -> {
+            if (e == null) return;
+            Log.e(TAG, "Error loading user groups", e);
+            progressGroups.setVisibility(View.GONE);
+            if (!groupsViewModel.hasData()) {
+                tvNoGroups.setVisibility(View.VISIBLE);
+                Toast.makeText(getContext(), "Lỗi khi tải danh sách nhóm", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private void logout() {
         auth.signOut();
+        UserCache.getInstance().clear();
+        TaskStore.getInstance().stop();
+        LocalStore.getInstance().clear();
+        GroupCache.getInstance().clear();
         Intent intent = new Intent(getActivity(), LoginActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
         startActivity(intent);
@@ -0,0 +1,157 @@
+package com.example.grouptaskmanager.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.grouptaskmanager.model.User;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gửi thông báo tin nhắn chat đến các thành viên nhóm theo lô.
+ * - Gộp các tin nhắn liên tiếp trong cùng nhóm thành một thông báo cho mỗi người nhận
+ * - FCM token lấy qua UserRepository (đọc theo lô whereIn, có UserCache)
+ * - Ghi các document thông báo bằng WriteBatch, chia theo giới hạn 500 thao tác
+ * Hàng đợi chỉ nằm trong bộ nhớ: nó được gửi ngay khi rời màn hình chat hoặc khi ứng dụng
+ * vào nền (GroupTaskManagerApp.onTrimMemory). Tiến trình bị dừng khi đang ở foreground,
+ * trong cửa sổ COALESCE_WINDOW_MS, sẽ làm mất thông báo của lô đó; tin nhắn và bộ đếm
+ * chưa đọc không bị ảnh hưởng
+ */
+public class ChatNotificationDispatcher {
+
+    private static final String TAG = "ChatNotificationDispatcher";
+    private static final String COLLECTION_USERS = "users";
+    private static final String COLLECTION_NOTIFICATIONS = "notifications";
+    private static final String TYPE_CHAT_MESSAGE = "chat_message";
+    private static final long COALESCE_WINDOW_MS = 3000;
+    private static final int BATCH_WRITE_LIMIT = 500;
+
+    private static ChatNotificationDispatcher instance;
+
+    private final FirebaseFirestore db;
+    private final UserRepository userRepository;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Khóa: groupId
+    private final Map<String, PendingBurst> pendingBursts = new HashMap<>();
+
+    private ChatNotificationDispatcher() {
+        db = FirebaseFirestore.getInstance();
+        userRepository = new UserRepository();
+    }
+
+    public static synchronized ChatNotificationDispatcher getInstance() {
+        if (instance == null) {
+            instance = new ChatNotificationDispatcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Đưa một tin nhắn vào hàng đợi thông báo của nhóm.
+     * Tin nhắn đầu tiên mở cửa sổ gộp; khi cửa sổ đóng, mỗi người nhận có một thông báo
+     * chứa tin nhắn mới nhất và số tin nhắn đã gộp
+     */
+    public synchronized void enqueue(String groupId, String groupName, List<String> memberIds,
+                                     String senderId, String senderName, String message) {
+        PendingBurst burst = pendingBursts.get(groupId);
+        if (burst == null) {
+            burst = new PendingBurst();
+            pendingBursts.put(groupId, burst);
+            handler.postDelayed(() -> flush(groupId), COALESCE_WINDOW_MS);
+        }
+        burst.groupName = groupName;
+        burst.memberIds = new ArrayList<>(memberIds);
+        burst.senderId = senderId;
+        burst.senderName = senderName;
+        burst.lastMessage = message;
+        burst.messageCount++;
+    }
+
+    /**
+     * Gửi ngay mọi thông báo đang chờ (khi rời màn hình chat hoặc ứng dụng vào nền)
+     */
+    public synchronized void flushAll() {
+        for (String groupId : new ArrayList<>(pendingBursts.keySet())) {
+            flush(groupId);
+        }
+    }
+
+    private synchronized void flush(String groupId) {
+        PendingBurst burst = pendingBursts.remove(groupId);
+        if (burst == null) {
+            // Đã được gửi bởi flushAll
+            return;
+        }
+
+        List<String> recipientIds = new ArrayList<>();
+        for (String memberId : burst.memberIds) {
+            if (!memberId.equals(burst.senderId)) {
+                recipientIds.add(memberId);
+            }
+        }
+        if (recipientIds.isEmpty()) {
+            return;
+        }
+
+        userRepository.getUsersByIds(recipientIds)
+                .addOnSuccessListener(users -> writeNotifications(groupId, burst, users))
+                .addOnFailureListener(e -> Log.e(TAG, "Error loading recipients for group " + groupId, e));
+    }
+
+    private void writeNotifications(String groupId, PendingBurst burst, Map<String, User> users) {
+        Map<String, Object> notificationData = new HashMap<>();
+        notificationData.put("type", TYPE_CHAT_MESSAGE);
+        notificationData.put("groupId", groupId);
+        notificationData.put("groupName", burst.groupName);
+        notificationData.put("senderName", burst.senderName);
+        notificationData.put("message", burst.lastMessage);
+        notificationData.put("messageCount", burst.messageCount);
+        notificationData.put("senderId", burst.senderId);
+        notificationData.put("timestamp", System.currentTimeMillis());
+
+        WriteBatch batch = db.batch();
+        int operations = 0;
+        int notificationCount = 0;
+        for (User user : users.values()) {
+            // Chỉ người dùng đã đăng ký FCM token mới nhận thông báo
+            if (user.getFcmToken() == null || user.getFcmToken().isEmpty()) {
+                continue;
+            }
+            batch.set(db.collection(COLLECTION_USERS)
+                    .document(user.getId())
+                    .collection(COLLECTION_NOTIFICATIONS)
+                    .document(), notificationData);
+            notificationCount++;
+            if (++operations == BATCH_WRITE_LIMIT) {
+                commit(batch, groupId);
+                batch = db.batch();
+                operations = 0;
+            }
+        }
+        if (operations > 0) {
+            commit(batch, groupId);
+        }
+        Log.d(TAG, "Queued " + notificationCount + " notifications for " + burst.messageCount
+                + " message(s) in group " + groupId);
+    }
+
+    private void commit(WriteBatch batch, String groupId) {
+        batch.commit().addOnFailureListener(e ->
+                Log.e(TAG, "Error writing notifications for group " + groupId, e));
+    }
+
+    private static class PendingBurst {
+        String groupName;
+        List<String> memberIds;
+        String senderId;
+        String senderName;
+        String lastMessage;
+        int messageCount;
+    }
+}
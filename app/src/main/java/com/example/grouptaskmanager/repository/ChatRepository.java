@@ -5,29 +5,57 @@ import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
 import com.google.firebase.firestore.DocumentSnapshot;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.ArrayList;
 
 import android.util.Log;
 
 public class ChatRepository {
 
+    private static final String TAG = "ChatRepository";
+
     private static final String COLLECTION_GROUPS = "groups";
     private static final String COLLECTION_MESSAGES = "messages";
     private static final String COLLECTION_USER_READS = "userReads";
     private static final String FIELD_TIMESTAMP = "timestamp";
     private static final String FIELD_LAST_MESSAGE_AT = "lastMessageAt";
     private static final String FIELD_LAST_READ_AT = "lastReadAt";
+    private static final String FIELD_LAST_MESSAGE = "lastMessage";
+    private static final int LAST_MESSAGE_PREVIEW_LENGTH = 100;
+    private static final String COLLECTION_USERS = "users";
+    private static final String COLLECTION_CHAT_STATE = "chatState";
+    private static final String DOCUMENT_UNREAD = "unread";
+    private static final String FIELD_UNREAD_COUNTS = "unreadCounts";
+    private static final String FIELD_INITIALIZED = "initialized";
+    private static final int BATCH_WRITE_LIMIT = 500;
+
+    // Giao diện hiển thị tối đa "99+"
+    public static final int MAX_UNREAD_COUNT = 99;
+    // Số tin nhắn mới nhất được lắng nghe realtime và số tin nhắn mỗi trang lịch sử
+    public static final int MESSAGE_WINDOW_SIZE = 50;
+    public static final int MESSAGE_PAGE_SIZE = 30;
+
+    // Lần tính lại bộ đếm đang chạy theo user, dùng chung cho mọi ChatRepository
+    private static final Map<String, Task<Map<String, Integer>>> unreadRebuilds = new HashMap<>();
 
     private final FirebaseFirestore db;
     private final FirebaseAuth auth;
@@ -38,7 +66,12 @@ public class ChatRepository {
     }
 
     /**
-     * Gửi tin nhắn mới
+     * Gửi tin nhắn mới.
+     * Tin nhắn (ID tạo ở client), lastMessageAt/lastMessage của nhóm và bộ đếm chưa đọc
+     * của các thành viên khác được ghi trong cùng một WriteBatch, nên không có ghi nào bị mất
+     * nếu ứng dụng dừng giữa chừng. Batch chỉ được tạo sau khi đọc danh sách thành viên
+     * (thường từ cache, có thể phải chờ server); tin nhắn hiện trên giao diện từ lúc đó.
+     * Không đọc được nhóm thì gửi thất bại, để bộ đếm chưa đọc không bị lệch
      */
     public Task<DocumentReference> sendMessage(String groupId, String message) {
         FirebaseUser currentUser = auth.getCurrentUser();
@@ -46,12 +79,17 @@ public class ChatRepository {
             return Tasks.forException(new Exception("User not authenticated"));
         }
 
+        String senderId = currentUser.getUid();
+        String senderName = currentUser.getDisplayName() != null ?
+                currentUser.getDisplayName() : currentUser.getEmail();
+        DocumentReference groupRef = db.collection(COLLECTION_GROUPS).document(groupId);
+        DocumentReference messageRef = groupRef.collection(COLLECTION_MESSAGES).document();
+
         // Tạo dữ liệu tin nhắn
         Map<String, Object> messageData = new HashMap<>();
         messageData.put("groupId", groupId);
-        messageData.put("senderId", currentUser.getUid());
-        messageData.put("senderName", currentUser.getDisplayName() != null ? 
-                       currentUser.getDisplayName() : currentUser.getEmail());
+        messageData.put("senderId", senderId);
+        messageData.put("senderName", senderName);
         messageData.put("senderPhotoUrl", currentUser.getPhotoUrl() != null ? 
                        currentUser.getPhotoUrl().toString() : null);
         messageData.put("message", message);
@@ -59,17 +97,89 @@ public class ChatRepository {
         messageData.put("timestamp", FieldValue.serverTimestamp());
         messageData.put("isEdited", false);
 
-        // Thêm tin nhắn vào collection
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .collection(COLLECTION_MESSAGES)
-                .add(messageData)
-                .addOnSuccessListener(documentReference -> {
-                    // Cập nhật thời gian tin nhắn cuối của nhóm
-                    updateGroupLastMessageTime(groupId);
-                    // Gửi notification đến các thành viên khác
-                    sendNotificationToGroupMembers(groupId, message, currentUser.getUid());
-                });
+        // Bản xem trước hiển thị trong danh sách chat mà không cần query tin nhắn cuối
+        Map<String, Object> lastMessagePreview = new HashMap<>();
+        lastMessagePreview.put("id", messageRef.getId());
+        lastMessagePreview.put("groupId", groupId);
+        lastMessagePreview.put("senderId", senderId);
+        lastMessagePreview.put("senderName", senderName);
+        lastMessagePreview.put("message", message.length() > LAST_MESSAGE_PREVIEW_LENGTH
+                ? message.substring(0, LAST_MESSAGE_PREVIEW_LENGTH) + "…" : message);
+        lastMessagePreview.put("messageType", "text");
+        lastMessagePreview.put("timestamp", FieldValue.serverTimestamp());
+
+        Map<String, Object> groupUpdates = new HashMap<>();
+        groupUpdates.put(FIELD_LAST_MESSAGE_AT, FieldValue.serverTimestamp());
+        groupUpdates.put(FIELD_LAST_MESSAGE, lastMessagePreview);
+
+        return getGroupSnapshot(groupRef).continueWithTask(groupTask -> {
+            if (!groupTask.isSuccessful()) {
+                throw groupTask.getException();
+            }
+            DocumentSnapshot groupDoc = groupTask.getResult();
+            if (groupDoc == null || !groupDoc.exists()) {
+                return Tasks.forException(new IllegalStateException("Nhóm không tồn tại"));
+            }
+            if (GroupDeleter.isDeleting(groupDoc)) {
+                return Tasks.forException(new IllegalStateException("Nhóm đang bị xóa"));
+            }
+            List<String> memberIds = (List<String>) groupDoc.get("members");
+            if (memberIds == null) {
+                Log.w(TAG, "No member IDs found for group: " + groupId);
+                return Tasks.forException(new IllegalStateException("Nhóm không có thành viên"));
+            }
+
+            List<WriteBatch> batches = new ArrayList<>();
+            WriteBatch batch = db.batch();
+            batch.set(messageRef, messageData);
+            batch.update(groupRef, groupUpdates);
+            batches.add(batch);
+            int operations = 2;
+
+            // Tăng bộ đếm chưa đọc của các thành viên khác; nhóm rất lớn mới cần thêm batch
+            for (String memberId : memberIds) {
+                if (memberId.equals(senderId)) {
+                    continue;
+                }
+                if (operations == BATCH_WRITE_LIMIT) {
+                    batch = db.batch();
+                    batches.add(batch);
+                    operations = 0;
+                }
+                batch.set(getChatStateRef(memberId),
+                        unreadCounterUpdate(groupId, FieldValue.increment(1)), SetOptions.merge());
+                operations++;
+            }
+
+            String groupName = groupDoc.getString("name");
+            List<String> recipients = memberIds;
+            return batches.get(0).commit().continueWith(commitTask -> {
+                if (!commitTask.isSuccessful()) {
+                    throw commitTask.getException();
+                }
+                for (int i = 1; i < batches.size(); i++) {
+                    commitCounterBatch(batches.get(i), groupId);
+                }
+                // Thông báo được gộp theo nhóm và ghi theo lô
+                ChatNotificationDispatcher.getInstance().enqueue(groupId, groupName, recipients, senderId,
+                        currentUser.getDisplayName() != null ? currentUser.getDisplayName() : "Thành viên nhóm",
+                        message);
+                return messageRef;
+            });
+        });
+    }
+
+    /**
+     * Đọc nhóm từ cache cục bộ nếu có (nhóm thường đã được listener giữ sẵn),
+     * nếu không thì đọc từ server
+     */
+    private Task<DocumentSnapshot> getGroupSnapshot(DocumentReference groupRef) {
+        return groupRef.get(Source.CACHE).continueWithTask(task -> {
+            if (task.isSuccessful() && task.getResult() != null && task.getResult().exists()) {
+                return Tasks.forResult(task.getResult());
+            }
+            return groupRef.get();
+        });
     }
 
     /**
@@ -93,16 +203,69 @@ public class ChatRepository {
                 });
     }
 
+    /**
+     * Lắng nghe realtime chỉ N tin nhắn mới nhất (tăng dần theo thời gian).
+     * Khi có tin nhắn mới, tin cũ nhất trượt ra khỏi cửa sổ và được báo là REMOVED
+     * dù không bị xóa; xem isSlidOutOfWindow.
+     * Nhận cả thay đổi metadata để biết khi nào cửa sổ đã được server xác nhận, kể cả
+     * khi dữ liệu trong cache không đổi
+     */
+    public ListenerRegistration getRecentMessagesRealtime(String groupId, int windowSize,
+                                                          OnMessagesChangedListener listener) {
+        return db.collection(COLLECTION_GROUPS)
+                .document(groupId)
+                .collection(COLLECTION_MESSAGES)
+                .orderBy(FIELD_TIMESTAMP, Query.Direction.ASCENDING)
+                .limitToLast(windowSize)
+                .addSnapshotListener(MetadataChanges.INCLUDE, (queryDocumentSnapshots, e) -> {
+                    if (e != null) {
+                        listener.onError(e);
+                        return;
+                    }
+
+                    if (queryDocumentSnapshots != null) {
+                        listener.onMessagesChanged(queryDocumentSnapshots);
+                    }
+                });
+    }
+
+    /**
+     * Tin nhắn bị REMOVED khỏi cửa sổ realtime vì trượt ra ngoài (có tin mới ở cuối)
+     * chứ không phải bị xóa
+     */
+    public static boolean isSlidOutOfWindow(DocumentChange change, QuerySnapshot snapshot) {
+        if (change.getType() != DocumentChange.Type.REMOVED || change.getOldIndex() != 0) {
+            return false;
+        }
+        for (DocumentChange other : snapshot.getDocumentChanges()) {
+            if (other.getType() == DocumentChange.Type.ADDED
+                    && other.getNewIndex() == snapshot.size() - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Lấy tin nhắn với pagination (load more)
      */
     public Task<QuerySnapshot> getMessagesPaginated(String groupId, int limit) {
-        return db.collection(COLLECTION_GROUPS)
+        return getMessagesPaginated(groupId, null, limit);
+    }
+
+    /**
+     * Lấy trang tin nhắn cũ hơn con trỏ (mới nhất trước).
+     * startAfter là tin nhắn cũ nhất đã tải; null để lấy trang mới nhất
+     */
+    public Task<QuerySnapshot> getMessagesPaginated(String groupId, DocumentSnapshot startAfter, int limit) {
+        Query query = db.collection(COLLECTION_GROUPS)
                 .document(groupId)
                 .collection(COLLECTION_MESSAGES)
-                .orderBy(FIELD_TIMESTAMP, Query.Direction.DESCENDING)
-                .limit(limit)
-                .get();
+                .orderBy(FIELD_TIMESTAMP, Query.Direction.DESCENDING);
+        if (startAfter != null) {
+            query = query.startAfter(startAfter);
+        }
+        return query.limit(limit).get();
     }
 
     /**
@@ -118,54 +281,270 @@ public class ChatRepository {
     }
 
     /**
-     * Đếm số tin nhắn chưa đọc của user trong nhóm
+     * Đếm số tin nhắn chưa đọc của user trong nhóm bằng count aggregation phía server.
+     * Kết quả dừng ở MAX_UNREAD_COUNT + 1 vì giao diện chỉ hiển thị tối đa "99+", nên nhóm
+     * nhiều tin chưa đọc không phải trả cho một lần đếm không giới hạn. Bộ đếm được khởi tạo
+     * bằng giá trị này vẫn hiển thị "99+" khi tăng tiếp, và về 0 khi nhóm được đánh dấu đã đọc
      */
-    public Task<QuerySnapshot> getUnreadMessagesCount(String groupId, String userId) {
-        Log.d("ChatRepository", "Getting unread count for group: " + groupId + ", user: " + userId);
-        
+    public Task<Integer> getUnreadMessagesCount(String groupId, String userId) {
+        return getUnreadMessagesQuery(groupId, userId)
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+
+                    // Chỉ nhận về con số, không tải các document tin nhắn
+                    return task.getResult()
+                            .limit(MAX_UNREAD_COUNT + 1)
+                            .count()
+                            .get(AggregateSource.SERVER);
+                })
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.e(TAG, "Error getting unread count for group " + groupId, task.getException());
+                        throw task.getException();
+                    }
+                    AggregateQuerySnapshot snapshot = task.getResult();
+                    int unreadCount = (int) Math.min(snapshot.getCount(), Integer.MAX_VALUE);
+                    Log.d(TAG, "Unread count for group " + groupId + ": " + unreadCount);
+                    return unreadCount;
+                });
+    }
+
+    /**
+     * Tạo query các tin nhắn chưa đọc: tin nhắn của người khác sau thời gian đọc cuối
+     */
+    private Task<Query> getUnreadMessagesQuery(String groupId, String userId) {
         // Lấy thời gian đọc cuối của user
         return db.collection(COLLECTION_GROUPS)
                 .document(groupId)
                 .collection(COLLECTION_USER_READS)
                 .document(userId)
                 .get()
-                .continueWithTask(task -> {
+                .continueWith(task -> {
                     if (!task.isSuccessful()) {
                         throw task.getException();
                     }
-                    
+
                     Object lastReadAt = null;
                     if (task.getResult().exists()) {
                         lastReadAt = task.getResult().get(FIELD_LAST_READ_AT);
-                        Log.d("ChatRepository", "Last read at: " + lastReadAt);
-                    } else {
-                        Log.d("ChatRepository", "No read record found for user");
                     }
-                    
-                    // Query tin nhắn sau thời gian đọc cuối
+
                     Query messagesQuery = db.collection(COLLECTION_GROUPS)
                             .document(groupId)
                             .collection(COLLECTION_MESSAGES)
                             .whereNotEqualTo("senderId", userId); // Không tính tin nhắn của chính mình
-                    
+
                     if (lastReadAt != null) {
                         messagesQuery = messagesQuery.whereGreaterThan(FIELD_TIMESTAMP, lastReadAt);
-                        Log.d("ChatRepository", "Looking for messages after: " + lastReadAt);
-                    } else {
-                        Log.d("ChatRepository", "Looking for all messages not from user");
                     }
-                    
-                    return messagesQuery.get();
-                })
-                .addOnSuccessListener(querySnapshot -> {
-                    int unreadCount = querySnapshot != null ? querySnapshot.size() : 0;
-                    Log.d("ChatRepository", "Unread count for group " + groupId + ": " + unreadCount);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("ChatRepository", "Error getting unread count for group " + groupId, e);
+                    return messagesQuery;
+                });
+    }
+
+    /**
+     * Lấy bộ đếm chưa đọc của user theo từng nhóm từ document users/{uid}/chatState/unread.
+     * Tài khoản chưa có document này được khởi tạo một lần từ count aggregation
+     */
+    public Task<Map<String, Integer>> getUnreadCounts(String userId) {
+        return getChatStateRef(userId)
+                .get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    DocumentSnapshot stateDoc = task.getResult();
+                    if (!isUnreadStateInitialized(stateDoc)) {
+                        return rebuildUnreadCounts(userId);
+                    }
+                    return Tasks.forResult(parseUnreadCounts(stateDoc));
+                });
+    }
+
+    /**
+     * Lắng nghe realtime bộ đếm chưa đọc của user (một document duy nhất)
+     */
+    public ListenerRegistration addUnreadCountsListener(String userId, OnUnreadCountsListener listener) {
+        return getChatStateRef(userId)
+                .addSnapshotListener((stateDoc, e) -> {
+                    if (e != null) {
+                        Log.e(TAG, "Error listening for unread counts", e);
+                        return;
+                    }
+                    if (!isUnreadStateInitialized(stateDoc)) {
+                        // Khởi tạo từ snapshot của server; listener sẽ nhận lại dữ liệu sau khi ghi xong
+                        if (stateDoc != null && !stateDoc.getMetadata().isFromCache()
+                                && !stateDoc.getMetadata().hasPendingWrites()) {
+                            rebuildUnreadCounts(userId);
+                        }
+                        return;
+                    }
+                    listener.onUnreadCountsChanged(parseUnreadCounts(stateDoc));
                 });
     }
 
+    /**
+     * Tính lại bộ đếm chưa đọc của mọi nhóm bằng count aggregation và lưu vào chatState.
+     * Mỗi user chỉ có một lần tính lại chạy cùng lúc. Trong transaction chỉ ghi nhóm chưa có
+     * bộ đếm, nên lượt tăng của người gửi đến trong lúc đếm không bị ghi đè
+     */
+    public Task<Map<String, Integer>> rebuildUnreadCounts(String userId) {
+        synchronized (unreadRebuilds) {
+            Task<Map<String, Integer>> running = unreadRebuilds.get(userId);
+            if (running != null) {
+                return running;
+            }
+            Task<Map<String, Integer>> rebuild = countAllUnreadMessages(userId)
+                    .onSuccessTask(counts -> storeMissingUnreadCounts(userId, counts));
+            unreadRebuilds.put(userId, rebuild);
+            rebuild.addOnCompleteListener(task -> {
+                synchronized (unreadRebuilds) {
+                    unreadRebuilds.remove(userId);
+                }
+            });
+            return rebuild;
+        }
+    }
+
+    private Task<Map<String, Integer>> countAllUnreadMessages(String userId) {
+        return db.collection(COLLECTION_GROUPS)
+                .whereArrayContains("members", userId)
+                .get()
+                .continueWithTask(groupTask -> {
+                    if (!groupTask.isSuccessful()) {
+                        throw groupTask.getException();
+                    }
+
+                    List<String> groupIds = new ArrayList<>();
+                    List<Task<Integer>> countTasks = new ArrayList<>();
+                    for (DocumentSnapshot groupDoc : groupTask.getResult().getDocuments()) {
+                        groupIds.add(groupDoc.getId());
+                        countTasks.add(getUnreadMessagesCount(groupDoc.getId(), userId));
+                    }
+
+                    return Tasks.whenAllComplete(countTasks).continueWith(allTask -> {
+                        Map<String, Integer> counts = new HashMap<>();
+                        for (int i = 0; i < groupIds.size(); i++) {
+                            // Nhóm đếm lỗi không được ghi, bộ đếm của nó bắt đầu từ lượt tăng tiếp theo
+                            Task<Integer> countTask = countTasks.get(i);
+                            if (countTask.isSuccessful() && countTask.getResult() != null) {
+                                counts.put(groupIds.get(i), countTask.getResult());
+                            }
+                        }
+                        return counts;
+                    });
+                });
+    }
+
+    /**
+     * Ghi các bộ đếm còn thiếu và cờ initialized; trả về bộ đếm sau khi ghi
+     */
+    private Task<Map<String, Integer>> storeMissingUnreadCounts(String userId, Map<String, Integer> counts) {
+        DocumentReference stateRef = getChatStateRef(userId);
+        return db.runTransaction(transaction -> {
+            DocumentSnapshot stateDoc = transaction.get(stateRef);
+            Map<String, Integer> current = stateDoc.exists()
+                    ? parseUnreadCounts(stateDoc) : new HashMap<>();
+            if (isUnreadStateInitialized(stateDoc)) {
+                // Lần tính lại khác (ví dụ trên thiết bị khác) đã ghi xong
+                return current;
+            }
+
+            Map<String, Object> missing = new HashMap<>();
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                if (!current.containsKey(entry.getKey())) {
+                    missing.put(entry.getKey(), entry.getValue());
+                    current.put(entry.getKey(), entry.getValue());
+                }
+            }
+            Map<String, Object> stateData = new HashMap<>();
+            if (!missing.isEmpty()) {
+                // Map rỗng trong set(merge) sẽ thay cả trường unreadCounts
+                stateData.put(FIELD_UNREAD_COUNTS, missing);
+            }
+            stateData.put(FIELD_INITIALIZED, true);
+            transaction.set(stateRef, stateData, SetOptions.merge());
+            return current;
+        });
+    }
+
+    /**
+     * Xóa bộ đếm của nhóm khỏi chatState (ví dụ khi rời nhóm)
+     */
+    public Task<Void> clearUnreadCounter(String userId, String groupId) {
+        return getChatStateRef(userId).set(unreadCounterUpdate(groupId, FieldValue.delete()), SetOptions.merge());
+    }
+
+    /**
+     * Thêm thao tác xóa bộ đếm của nhóm vào một batch có sẵn
+     */
+    public void clearUnreadCounter(WriteBatch batch, String userId, String groupId) {
+        batch.set(getChatStateRef(userId), unreadCounterUpdate(groupId, FieldValue.delete()), SetOptions.merge());
+    }
+
+    /**
+     * Tổng số tin nhắn chưa đọc từ bộ đếm theo nhóm
+     */
+    public static int sumUnreadCounts(Map<String, Integer> unreadCounts) {
+        int total = 0;
+        for (Integer count : unreadCounts.values()) {
+            if (count != null && count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    private void commitCounterBatch(WriteBatch batch, String groupId) {
+        batch.commit().addOnFailureListener(e ->
+                Log.e(TAG, "Error incrementing unread counters for group " + groupId, e));
+    }
+
+    private DocumentReference getChatStateRef(String userId) {
+        return db.collection(COLLECTION_USERS)
+                .document(userId)
+                .collection(COLLECTION_CHAT_STATE)
+                .document(DOCUMENT_UNREAD);
+    }
+
+    private Map<String, Object> unreadCounterUpdate(String groupId, Object value) {
+        Map<String, Object> counts = new HashMap<>();
+        counts.put(groupId, value);
+        Map<String, Object> stateData = new HashMap<>();
+        stateData.put(FIELD_UNREAD_COUNTS, counts);
+        return stateData;
+    }
+
+    /**
+     * Document có thể đã được tạo bởi lượt tăng bộ đếm của người khác trước khi
+     * được khởi tạo đầy đủ, nên kiểm tra cờ thay vì chỉ kiểm tra exists()
+     */
+    private boolean isUnreadStateInitialized(DocumentSnapshot stateDoc) {
+        return stateDoc != null && stateDoc.exists()
+                && Boolean.TRUE.equals(stateDoc.getBoolean(FIELD_INITIALIZED));
+    }
+
+    private Map<String, Integer> parseUnreadCounts(DocumentSnapshot stateDoc) {
+        Map<String, Integer> counts = new HashMap<>();
+        Object raw = stateDoc.get(FIELD_UNREAD_COUNTS);
+        if (raw instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) raw).entrySet()) {
+                if (entry.getValue() instanceof Number) {
+                    counts.put(String.valueOf(entry.getKey()), ((Number) entry.getValue()).intValue());
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Chuỗi hiển thị số tin nhắn chưa đọc, ví dụ "5" hoặc "99+"
+     */
+    public static String formatUnreadCount(int unreadCount) {
+        return unreadCount > MAX_UNREAD_COUNT ? MAX_UNREAD_COUNT + "+" : String.valueOf(unreadCount);
+    }
+
     /**
      * Đánh dấu nhóm đã đọc cho user hiện tại
      */
@@ -179,12 +558,15 @@ public class ChatRepository {
         readData.put(FIELD_LAST_READ_AT, FieldValue.serverTimestamp());
         readData.put("userId", currentUser.getUid());
 
-        // Update read timestamp
-        Task<Void> updateReadTask = db.collection(COLLECTION_GROUPS)
+        // Ghi thời gian đọc và đặt lại bộ đếm chưa đọc trong cùng một batch
+        WriteBatch batch = db.batch();
+        batch.set(db.collection(COLLECTION_GROUPS)
                 .document(groupId)
                 .collection(COLLECTION_USER_READS)
-                .document(currentUser.getUid())
-                .set(readData);
+                .document(currentUser.getUid()), readData);
+        batch.set(getChatStateRef(currentUser.getUid()),
+                unreadCounterUpdate(groupId, 0), SetOptions.merge());
+        Task<Void> updateReadTask = batch.commit();
         
         // Also clean up notifications for this group
         Task<Void> cleanupNotificationsTask = cleanupNotificationsForGroup(currentUser.getUid(), groupId);
@@ -245,125 +627,6 @@ public class ChatRepository {
                 .update(updates);
     }
 
-    /**
-     * Cập nhật thời gian tin nhắn cuối của nhóm
-     */
-    private void updateGroupLastMessageTime(String groupId) {
-        db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .update(FIELD_LAST_MESSAGE_AT, FieldValue.serverTimestamp());
-    }
-
-    /**
-     * Gửi notification đến các thành viên khác trong nhóm
-     */
-    private void sendNotificationToGroupMembers(String groupId, String message, String senderId) {
-        Log.d("ChatRepository", "Sending notifications for group: " + groupId + ", message: " + message);
-        
-        // Get group info and members
-        db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .get()
-                .addOnSuccessListener(groupDoc -> {
-                    if (!groupDoc.exists()) {
-                        Log.w("ChatRepository", "Group not found: " + groupId);
-                        return;
-                    }
-                    
-                    String groupName = groupDoc.getString("name");
-                    List<String> memberIds = (List<String>) groupDoc.get("members");
-                    
-                    Log.d("ChatRepository", "Group name: " + groupName + ", Member count: " + 
-                          (memberIds != null ? memberIds.size() : 0));
-                    
-                    if (memberIds != null) {
-                        // Get sender info
-                        FirebaseUser currentUser = auth.getCurrentUser();
-                        String senderName = currentUser != null && currentUser.getDisplayName() != null ? 
-                                          currentUser.getDisplayName() : "Thành viên nhóm";
-                        
-                        Log.d("ChatRepository", "Sender name: " + senderName + ", Sender ID: " + senderId);
-                        
-                        // Send notification to each member (except sender)
-                        int notificationCount = 0;
-                        for (String memberId : memberIds) {
-                            if (!memberId.equals(senderId)) {
-                                Log.d("ChatRepository", "Sending notification to member: " + memberId);
-                                sendNotificationToUser(memberId, groupId, groupName, senderName, message, senderId);
-                                notificationCount++;
-                            } else {
-                                Log.d("ChatRepository", "Skipping notification for sender: " + memberId);
-                            }
-                        }
-                        
-                        Log.d("ChatRepository", "Total notifications sent: " + notificationCount);
-                    } else {
-                        Log.w("ChatRepository", "No member IDs found for group: " + groupId);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("ChatRepository", "Error getting group members for notification", e);
-                });
-    }
-    
-    /**
-     * Gửi notification đến một user cụ thể
-     */
-    private void sendNotificationToUser(String userId, String groupId, String groupName, 
-                                       String senderName, String message, String senderId) {
-        // Get user's FCM token
-        db.collection("users")
-                .document(userId)
-                .get()
-                .addOnSuccessListener(userDoc -> {
-                    if (!userDoc.exists()) return;
-                    
-                    String fcmToken = userDoc.getString("fcmToken");
-                    if (fcmToken != null && !fcmToken.isEmpty()) {
-                        // Create notification data
-                        Map<String, Object> notificationData = new HashMap<>();
-                        notificationData.put("type", "chat_message");
-                        notificationData.put("groupId", groupId);
-                        notificationData.put("groupName", groupName);
-                        notificationData.put("senderName", senderName);
-                        notificationData.put("message", message);
-                        notificationData.put("senderId", senderId);
-                        notificationData.put("timestamp", System.currentTimeMillis());
-                        
-                        // Save notification to user's notifications collection
-                        db.collection("users")
-                                .document(userId)
-                                .collection("notifications")
-                                .add(notificationData)
-                                .addOnSuccessListener(docRef -> {
-                                    Log.d("ChatRepository", "Notification saved for user: " + userId);
-                                    // Trigger local notification if user is online
-                                    triggerLocalNotification(userId, groupId, groupName, senderName, message);
-                                })
-                                .addOnFailureListener(e -> {
-                                    Log.e("ChatRepository", "Error saving notification", e);
-                                });
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("ChatRepository", "Error getting user FCM token", e);
-                });
-    }
-    
-    /**
-     * Trigger local notification nếu user đang online
-     */
-    private void triggerLocalNotification(String userId, String groupId, String groupName, 
-                                        String senderName, String message) {
-        // Check if current user is the recipient
-        FirebaseUser currentUser = auth.getCurrentUser();
-        if (currentUser != null && currentUser.getUid().equals(userId)) {
-            // User is currently logged in - show local notification
-            // This will be handled by the ChatNotificationService when app receives FCM message
-            Log.d("ChatRepository", "Would show local notification to current user");
-        }
-    }
-
     /**
      * Interface cho realtime listener
      */
@@ -372,84 +635,129 @@ public class ChatRepository {
         void onError(Exception e);
     }
     
+    /**
+     * Interface cho bộ đếm chưa đọc theo nhóm
+     */
+    public interface OnUnreadCountsListener {
+        void onUnreadCountsChanged(Map<String, Integer> unreadCounts);
+    }
+
     /**
      * Interface cho unread count updates
      */
     public interface OnUnreadUpdateListener {
         void onUnreadUpdate(String groupId, int unreadCount);
+
+        /**
+         * Gọi một lần sau mỗi lượt thay đổi, khi tổng số chưa đọc khác lần trước
+         */
+        default void onTotalUnreadChanged(int totalUnread) {
+        }
     }
     
     /**
-     * Listen for unread count updates across all groups for a user
+     * Listen for unread count updates across all groups for a user.
+     * Số chưa đọc lấy từ document chatState; listener chỉ được gọi cho các nhóm
+     * có số thay đổi, còn listener nhóm chỉ xử lý các nhóm xuất hiện trong DocumentChange
+     * (nhóm bị xóa hoặc người dùng rời nhóm thì về 0).
      */
     public ListenerRegistration listenForUnreadUpdates(String userId, OnUnreadUpdateListener listener) {
-        // Listen for new messages in all groups that user is a member of
-        return db.collection(COLLECTION_GROUPS)
+        // Trạng thái riêng của lượt đăng ký này; các callback Firestore chạy trên main thread
+        Map<String, Integer> groupCounts = new HashMap<>();
+        Map<String, Integer> counterValues = new HashMap<>();
+        Set<String> memberGroupIds = new HashSet<>();
+        int[] lastTotal = {-1};
+
+        Runnable publishTotal = () -> {
+            int total = 0;
+            for (int count : groupCounts.values()) {
+                total += count;
+            }
+            if (total != lastTotal[0]) {
+                lastTotal[0] = total;
+                listener.onTotalUnreadChanged(total);
+            }
+        };
+
+        ListenerRegistration groupsRegistration = db.collection(COLLECTION_GROUPS)
                 .whereArrayContains("members", userId)
                 .addSnapshotListener((queryDocumentSnapshots, e) -> {
                     if (e != null) {
-                        Log.e("ChatRepository", "Error listening for unread updates", e);
+                        Log.e(TAG, "Error listening for unread updates", e);
                         return;
                     }
-                    
-                    if (queryDocumentSnapshots != null) {
-                        // When any group changes, recalculate unread count for all groups
-                        for (DocumentSnapshot groupDoc : queryDocumentSnapshots.getDocuments()) {
-                            String groupId = groupDoc.getId();
-                            getUnreadMessagesCount(groupId, userId)
-                                    .addOnSuccessListener(querySnapshot -> {
-                                        int unreadCount = querySnapshot.size();
-                                        listener.onUnreadUpdate(groupId, unreadCount);
-                                    })
-                                    .addOnFailureListener(error -> {
-                                        Log.e("ChatRepository", "Error getting unread count for group: " + groupId, error);
-                                    });
+                    if (queryDocumentSnapshots == null) {
+                        return;
+                    }
+
+                    // Chỉ xử lý các nhóm thay đổi tư cách thành viên; sửa tên nhóm... không cần đếm lại
+                    for (DocumentChange change : queryDocumentSnapshots.getDocumentChanges()) {
+                        String groupId = change.getDocument().getId();
+                        if (change.getType() == DocumentChange.Type.ADDED) {
+                            memberGroupIds.add(groupId);
+                            updateGroupCount(groupId, counterValues.get(groupId), groupCounts, listener);
+                        } else if (change.getType() == DocumentChange.Type.REMOVED) {
+                            memberGroupIds.remove(groupId);
+                            if (groupCounts.remove(groupId) != null) {
+                                listener.onUnreadUpdate(groupId, 0);
+                            }
                         }
                     }
+                    publishTotal.run();
                 });
+
+        ListenerRegistration countersRegistration = addUnreadCountsListener(userId, unreadCounts -> {
+            Set<String> changedGroupIds = new HashSet<>();
+            for (Map.Entry<String, Integer> entry : unreadCounts.entrySet()) {
+                if (!entry.getValue().equals(counterValues.get(entry.getKey()))) {
+                    changedGroupIds.add(entry.getKey());
+                }
+            }
+            for (String groupId : counterValues.keySet()) {
+                if (!unreadCounts.containsKey(groupId)) {
+                    changedGroupIds.add(groupId);
+                }
+            }
+            counterValues.clear();
+            counterValues.putAll(unreadCounts);
+
+            for (String groupId : changedGroupIds) {
+                if (memberGroupIds.contains(groupId)) {
+                    updateGroupCount(groupId, counterValues.get(groupId), groupCounts, listener);
+                }
+            }
+            publishTotal.run();
+        });
+
+        return () -> {
+            groupsRegistration.remove();
+            countersRegistration.remove();
+        };
+    }
+
+    private void updateGroupCount(String groupId, Integer counterValue, Map<String, Integer> groupCounts,
+                                  OnUnreadUpdateListener listener) {
+        int unreadCount = counterValue != null ? Math.max(counterValue, 0) : 0;
+        Integer previous = groupCounts.put(groupId, unreadCount);
+        if (previous == null || previous != unreadCount) {
+            listener.onUnreadUpdate(groupId, unreadCount);
+        }
     }
 
     /**
      * Get total unread messages count across all groups for a user
      */
     public Task<Integer> getTotalUnreadMessagesCount(String userId) {
-        // Get all groups user is a member of
-        return db.collection(COLLECTION_GROUPS)
-                .whereArrayContains("members", userId)
-                .get()
-                .continueWithTask(groupTask -> {
-                    if (!groupTask.isSuccessful() || groupTask.getResult() == null) {
-                        return Tasks.forResult(0);
-                    }
-                    
-                    List<Task<QuerySnapshot>> unreadTasks = new ArrayList<>();
-                    
-                    // For each group, get unread count
-                    for (DocumentSnapshot groupDoc : groupTask.getResult().getDocuments()) {
-                        String groupId = groupDoc.getId();
-                        unreadTasks.add(getUnreadMessagesCount(groupId, userId));
-                    }
-                    
-                    if (unreadTasks.isEmpty()) {
-                        return Tasks.forResult(0);
+        // Đọc một document chatState thay vì đếm tin nhắn của từng nhóm
+        return getUnreadCounts(userId)
+                .continueWith(task -> {
+                    if (!task.isSuccessful() || task.getResult() == null) {
+                        Log.e(TAG, "Error getting unread counts", task.getException());
+                        return 0;
                     }
-                    
-                    // Wait for all unread count tasks to complete
-                    return Tasks.whenAllSuccess(unreadTasks)
-                            .continueWith(allUnreadTask -> {
-                                int totalUnread = 0;
-                                List<Object> results = allUnreadTask.getResult();
-                                if (results != null) {
-                                    for (Object result : results) {
-                                        if (result instanceof QuerySnapshot) {
-                                            QuerySnapshot querySnapshot = (QuerySnapshot) result;
-                                            totalUnread += querySnapshot.size();
-                                        }
-                                    }
-                                }
-                                Log.d("ChatRepository", "Total unread messages: " + totalUnread);
-                                return totalUnread;
-                            });
+                    int totalUnread = sumUnreadCounts(task.getResult());
+                    Log.d(TAG, "Total unread messages: " + totalUnread);
+                    return totalUnread;
                 });
     }
-} 
\ No newline at end of file
+}
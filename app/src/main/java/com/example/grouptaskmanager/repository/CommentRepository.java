@@ -1,37 +1,117 @@
 package com.example.grouptaskmanager.repository;
 
+import android.util.Log;
+
 import com.example.grouptaskmanager.model.Comment;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.MetadataChanges;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
 import com.google.firebase.Timestamp;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class CommentRepository {
     
+    private static final String TAG = "CommentRepository";
     private static final String COLLECTION_COMMENTS = "comments";
+    private static final String COLLECTION_GROUPS = "groups";
+    private static final String COLLECTION_TASKS = "tasks";
+    private static final String FIELD_COMMENTS_COUNT = "commentsCount";
+    private static final String FIELD_GROUP_ID = "groupId";
+    private static final String FIELD_TASK_ID = "taskId";
+    private static final String FIELD_CREATED_AT = "createdAt";
+    // Cờ trên document nhóm: bình luận của nhóm đã nằm hết trong subcollection của nhiệm vụ
+    private static final String FIELD_COMMENTS_MIGRATED = "commentsMigrated";
+    private static final int BATCH_WRITE_LIMIT = 500;
+    // Số bình luận mỗi trang (trang mới nhất được lắng nghe realtime)
+    public static final int COMMENT_PAGE_SIZE = 20;
+
     private final FirebaseFirestore db;
     private final FirebaseAuth auth;
+    // groupId -> cờ commentsMigrated đã đọc (true: groups/{g}/tasks/{t}/comments; false: collection "comments" cũ)
+    private final Map<String, Task<Boolean>> commentsMigrated = new HashMap<>();
 
     public CommentRepository() {
         this.db = FirebaseFirestore.getInstance();
         this.auth = FirebaseAuth.getInstance();
     }
 
+    /**
+     * Bình luận của nhóm đã được chuyển vào subcollection của nhiệm vụ chưa. Cờ chỉ được bật
+     * sau khi di chuyển xong, nên trước đó bình luận vẫn được đọc và ghi ở collection cũ.
+     * Đọc một lần cho mỗi nhóm; lần đọc lỗi sẽ được thử lại ở lần gọi sau
+     */
+    public Task<Boolean> isCommentsMigrated(String groupId) {
+        Task<Boolean> migrated = commentsMigrated.get(groupId);
+        if (migrated == null || (migrated.isComplete() && !migrated.isSuccessful())) {
+            migrated = readCommentsMigrated(groupId);
+        }
+        return migrated;
+    }
+
+    /**
+     * Cờ dùng cho các thao tác ghi. Cờ false đã lưu có thể đã cũ vì thành viên khác chuyển xong
+     * nhóm trong lúc đó, nên được đọc lại; cờ true không bao giờ bị tắt nên được dùng lại
+     */
+    private Task<Boolean> isCommentsMigratedForWrite(String groupId) {
+        Task<Boolean> migrated = commentsMigrated.get(groupId);
+        if (migrated != null && migrated.isSuccessful() && migrated.getResult()) {
+            return migrated;
+        }
+        return readCommentsMigrated(groupId);
+    }
+
+    private Task<Boolean> readCommentsMigrated(String groupId) {
+        Task<Boolean> migrated = db.collection(COLLECTION_GROUPS)
+                .document(groupId)
+                .get()
+                .continueWith(task -> Boolean.TRUE.equals(task.getResult().getBoolean(FIELD_COMMENTS_MIGRATED)));
+        commentsMigrated.put(groupId, migrated);
+        return migrated;
+    }
+
     /**
      * Get all comments for a specific task, ordered by creation time
      */
     public Task<QuerySnapshot> getTaskComments(String groupId, String taskId) {
-        return db.collection(COLLECTION_COMMENTS)
-                .whereEqualTo("groupId", groupId)
-                .whereEqualTo("taskId", taskId)
-                .orderBy("createdAt", Query.Direction.ASCENDING)
-                .get();
+        return isCommentsMigrated(groupId).continueWithTask(migrated ->
+                getTaskCommentsQuery(groupId, taskId, migrated.getResult())
+                        .orderBy(FIELD_CREATED_AT, Query.Direction.ASCENDING)
+                        .get());
+    }
+
+    /**
+     * Lấy một trang bình luận, mới nhất trước.
+     * startAfter là bình luận cũ nhất đã tải; null để lấy trang mới nhất
+     */
+    public Task<QuerySnapshot> getTaskCommentsPage(String groupId, String taskId,
+                                                   DocumentSnapshot startAfter, int limit) {
+        return isCommentsMigrated(groupId).continueWithTask(migrated -> {
+            Query query = getTaskCommentsQuery(groupId, taskId, migrated.getResult())
+                    .orderBy(FIELD_CREATED_AT, Query.Direction.DESCENDING);
+            if (startAfter != null) {
+                query = query.startAfter(startAfter);
+            }
+            return query.limit(limit).get();
+        });
     }
 
     /**
@@ -44,7 +124,7 @@ public class CommentRepository {
         }
 
         Comment comment = new Comment(taskId, groupId, content, currentUserId, authorName);
-        return db.collection(COLLECTION_COMMENTS).add(comment);
+        return addCommentWithCount(groupId, taskId, comment);
     }
 
     /**
@@ -59,43 +139,68 @@ public class CommentRepository {
 
         Comment reply = new Comment(taskId, groupId, content, currentUserId, authorName, 
                                    replyToCommentId, replyToAuthorName);
-        return db.collection(COLLECTION_COMMENTS).add(reply);
+        return addCommentWithCount(groupId, taskId, reply);
+    }
+
+    /**
+     * Ghi bình luận và tăng commentsCount của nhiệm vụ trong cùng một batch
+     */
+    private Task<DocumentReference> addCommentWithCount(String groupId, String taskId, Comment comment) {
+        return GroupDeleter.ensureNotDeleting(groupId)
+                .onSuccessTask(result -> isCommentsMigratedForWrite(groupId))
+                .onSuccessTask(migrated -> {
+                    DocumentReference commentRef = getCommentsCollection(groupId, taskId, migrated).document();
+                    WriteBatch batch = db.batch();
+                    batch.set(commentRef, comment);
+                    batch.update(getTaskRef(groupId, taskId), FIELD_COMMENTS_COUNT, FieldValue.increment(1));
+                    return batch.commit().continueWith(task -> {
+                        if (!task.isSuccessful()) {
+                            throw task.getException();
+                        }
+                        return commentRef;
+                    });
+                });
     }
 
     /**
      * Update an existing comment
      */
-    public Task<Void> updateComment(String commentId, String newContent) {
+    public Task<Void> updateComment(String groupId, String taskId, String commentId, String newContent) {
         Map<String, Object> updates = new HashMap<>();
         updates.put("content", newContent);
         updates.put("updatedAt", Timestamp.now());
         
-        return db.collection(COLLECTION_COMMENTS)
-                .document(commentId)
-                .update(updates);
+        return isCommentsMigratedForWrite(groupId).continueWithTask(migrated ->
+                getCommentsCollection(groupId, taskId, migrated.getResult())
+                        .document(commentId)
+                        .update(updates));
     }
 
     /**
-     * Delete a comment
+     * Delete a comment and decrement the task's commentsCount in the same batch
      */
-    public Task<Void> deleteComment(String commentId) {
-        return db.collection(COLLECTION_COMMENTS)
-                .document(commentId)
-                .delete();
+    public Task<Void> deleteComment(String groupId, String taskId, String commentId) {
+        return isCommentsMigratedForWrite(groupId).continueWithTask(migrated -> {
+            WriteBatch batch = db.batch();
+            batch.delete(getCommentsCollection(groupId, taskId, migrated.getResult()).document(commentId));
+            batch.update(getTaskRef(groupId, taskId), FIELD_COMMENTS_COUNT, FieldValue.increment(-1));
+            return batch.commit();
+        });
     }
 
     /**
      * Check if current user can modify a comment (only author can modify)
      */
-    public Task<Boolean> canModifyComment(String commentId) {
+    public Task<Boolean> canModifyComment(String groupId, String taskId, String commentId) {
         String currentUserId = getCurrentUserId();
         if (currentUserId == null) {
             return com.google.android.gms.tasks.Tasks.forResult(false);
         }
 
-        return db.collection(COLLECTION_COMMENTS)
-                .document(commentId)
-                .get()
+        return isCommentsMigrated(groupId)
+                .continueWithTask(migrated -> getCommentsCollection(groupId, taskId, migrated.getResult())
+                        .document(commentId)
+                        .get())
                 .continueWith(task -> {
                     if (task.isSuccessful() && task.getResult().exists()) {
                         String authorId = task.getResult().getString("authorId");
@@ -106,31 +211,218 @@ public class CommentRepository {
     }
 
     /**
-     * Get total comment count for a task
+     * Get total comment count for a task (read from the task's commentsCount field)
      */
     public Task<Integer> getCommentCount(String groupId, String taskId) {
-        return db.collection(COLLECTION_COMMENTS)
-                .whereEqualTo("groupId", groupId)
-                .whereEqualTo("taskId", taskId)
+        return getTaskRef(groupId, taskId)
                 .get()
                 .continueWith(task -> {
-                    if (task.isSuccessful()) {
-                        return task.getResult().size();
+                    if (task.isSuccessful() && task.getResult() != null) {
+                        Long count = task.getResult().getLong(FIELD_COMMENTS_COUNT);
+                        return count != null ? count.intValue() : 0;
                     }
                     return 0;
                 });
     }
 
     /**
-     * Listen for real-time comment updates
+     * Tính lại commentsCount cho tất cả nhiệm vụ của các nhóm bằng count aggregation
+     * (dùng cho nhiệm vụ tạo trước khi trường này được duy trì). Mỗi bình luận chỉ nằm ở một
+     * trong hai nơi nên số đếm là tổng của subcollection và collection cũ
+     */
+    public Task<Void> backfillCommentCounts(Collection<String> groupIds) {
+        List<Task<QuerySnapshot>> taskQueries = new ArrayList<>();
+        for (String groupId : groupIds) {
+            taskQueries.add(db.collection(COLLECTION_GROUPS)
+                    .document(groupId)
+                    .collection(COLLECTION_TASKS)
+                    .get());
+        }
+
+        return Tasks.whenAllSuccess(taskQueries).continueWithTask(allTasks -> {
+            List<DocumentSnapshot> taskDocs = new ArrayList<>();
+            for (Object result : allTasks.getResult()) {
+                taskDocs.addAll(((QuerySnapshot) result).getDocuments());
+            }
+
+            List<Task<AggregateQuerySnapshot>> countTasks = new ArrayList<>();
+            List<Task<AggregateQuerySnapshot>> legacyCountTasks = new ArrayList<>();
+            for (DocumentSnapshot taskDoc : taskDocs) {
+                String groupId = taskDoc.getReference().getParent().getParent().getId();
+                countTasks.add(getTaskCommentsQuery(groupId, taskDoc.getId(), true)
+                        .count()
+                        .get(AggregateSource.SERVER));
+                legacyCountTasks.add(getTaskCommentsQuery(groupId, taskDoc.getId(), false)
+                        .count()
+                        .get(AggregateSource.SERVER));
+            }
+            List<Task<AggregateQuerySnapshot>> allCountTasks = new ArrayList<>(countTasks);
+            allCountTasks.addAll(legacyCountTasks);
+
+            return Tasks.whenAllSuccess(allCountTasks).continueWithTask(allCounts -> {
+                List<Task<Void>> commits = new ArrayList<>();
+                WriteBatch batch = db.batch();
+                int operations = 0;
+                for (int i = 0; i < taskDocs.size(); i++) {
+                    DocumentSnapshot taskDoc = taskDocs.get(i);
+                    long count = countTasks.get(i).getResult().getCount()
+                            + legacyCountTasks.get(i).getResult().getCount();
+                    Long stored = taskDoc.getLong(FIELD_COMMENTS_COUNT);
+                    if (stored != null && stored == count) {
+                        continue;
+                    }
+                    batch.update(taskDoc.getReference(), FIELD_COMMENTS_COUNT, count);
+                    if (++operations == BATCH_WRITE_LIMIT) {
+                        commits.add(batch.commit());
+                        batch = db.batch();
+                        operations = 0;
+                    }
+                }
+                if (operations > 0) {
+                    commits.add(batch.commit());
+                }
+                Log.d(TAG, "Backfilled comment counts, batches: " + commits.size());
+                return Tasks.whenAll(commits);
+            });
+        });
+    }
+
+    private DocumentReference getTaskRef(String groupId, String taskId) {
+        return db.collection(COLLECTION_GROUPS)
+                .document(groupId)
+                .collection(COLLECTION_TASKS)
+                .document(taskId);
+    }
+
+    /**
+     * Listen for real-time comment updates on the newest page (newest first).
+     * commentsMigrated lấy từ isCommentsMigrated của nhóm.
+     * Khi có bình luận mới, bình luận cũ nhất trượt ra khỏi trang và được báo là REMOVED
+     * dù không bị xóa; xem isSlidOutOfWindow.
+     * Nhận cả thay đổi metadata để biết khi nào trang đã được server xác nhận
      */
-    public void addCommentsListener(String groupId, String taskId, 
+    public ListenerRegistration addCommentsListener(String groupId, String taskId, boolean commentsMigrated,
                                    com.google.firebase.firestore.EventListener<QuerySnapshot> listener) {
-        db.collection(COLLECTION_COMMENTS)
-                .whereEqualTo("groupId", groupId)
-                .whereEqualTo("taskId", taskId)
-                .orderBy("createdAt", Query.Direction.ASCENDING)
-                .addSnapshotListener(listener);
+        return getTaskCommentsQuery(groupId, taskId, commentsMigrated)
+                .orderBy(FIELD_CREATED_AT, Query.Direction.DESCENDING)
+                .limit(COMMENT_PAGE_SIZE)
+                .addSnapshotListener(MetadataChanges.INCLUDE, listener);
+    }
+
+    /**
+     * Bình luận bị REMOVED khỏi trang realtime vì trượt ra ngoài (có bình luận mới ở đầu)
+     * chứ không phải bị xóa
+     */
+    public static boolean isSlidOutOfWindow(DocumentChange change, QuerySnapshot snapshot) {
+        if (change.getType() != DocumentChange.Type.REMOVED
+                || change.getOldIndex() != COMMENT_PAGE_SIZE - 1
+                || snapshot.size() != COMMENT_PAGE_SIZE) {
+            return false;
+        }
+        for (DocumentChange other : snapshot.getDocumentChanges()) {
+            if (other.getType() == DocumentChange.Type.ADDED && other.getNewIndex() == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Chuyển bình luận từ collection "comments" chung sang groups/{g}/tasks/{t}/comments
+     * (giữ nguyên ID), từng nhóm một. Mỗi trang sao chép rồi xóa bản cũ trong cùng một batch
+     * nên có thể chạy lại an toàn nếu bị gián đoạn; bình luận thiếu groupId/taskId được giữ
+     * nguyên. Khi nhóm đã chuyển xong mới bật cờ commentsMigrated, từ đó bình luận của nhóm
+     * được đọc và ghi ở subcollection. Nhóm chuyển lỗi (ví dụ security rules từ chối) vẫn
+     * dùng collection cũ và được thử lại ở lần chạy sau.
+     * Sau khi bật cờ, collection cũ của nhóm được quét thêm một lần để chuyển nốt bình luận
+     * ghi vào đó trong lúc chuyển (client khác còn giữ cờ cũ, hoặc ID xếp trước con trỏ trang)
+     */
+    public Task<Void> migrateCommentsToTaskSubcollections(Collection<String> groupIds) {
+        List<Task<Void>> migrations = new ArrayList<>();
+        for (String groupId : groupIds) {
+            Task<Void> migration = isCommentsMigrated(groupId).continueWithTask(migrated -> {
+                if (migrated.getResult()) {
+                    return Tasks.forResult(null);
+                }
+                Query legacyQuery = db.collection(COLLECTION_COMMENTS)
+                        .whereEqualTo(FIELD_GROUP_ID, groupId)
+                        .orderBy(FieldPath.documentId());
+                return migrateLegacyCommentsPage(legacyQuery, null, 0)
+                        .onSuccessTask(result -> db.collection(COLLECTION_GROUPS)
+                                .document(groupId)
+                                .update(FIELD_COMMENTS_MIGRATED, true))
+                        .onSuccessTask(result -> {
+                            commentsMigrated.put(groupId, Tasks.forResult(true));
+                            return migrateLegacyCommentsPage(legacyQuery, null, 0);
+                        });
+            });
+            migration.addOnFailureListener(e -> Log.e(TAG, "Error migrating comments of group " + groupId, e));
+            migrations.add(migration);
+        }
+        return Tasks.whenAll(migrations);
+    }
+
+    /**
+     * startAfter là document cuối của trang trước; bình luận bị bỏ qua vẫn còn trong
+     * collection cũ nên cần con trỏ thay vì đọc lại từ đầu
+     */
+    private Task<Void> migrateLegacyCommentsPage(Query legacyQuery, DocumentSnapshot startAfter, int migrated) {
+        // 2 thao tác cho mỗi bình luận: ghi bản mới và xóa bản cũ
+        int pageSize = BATCH_WRITE_LIMIT / 2;
+        Query page = startAfter != null ? legacyQuery.startAfter(startAfter) : legacyQuery;
+        return page.limit(pageSize)
+                .get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    QuerySnapshot snapshot = task.getResult();
+                    if (snapshot.isEmpty()) {
+                        Log.d(TAG, "Migrated " + migrated + " comments to task subcollections");
+                        return Tasks.forResult(null);
+                    }
+
+                    WriteBatch batch = db.batch();
+                    int copied = 0;
+                    for (DocumentSnapshot document : snapshot.getDocuments()) {
+                        String groupId = document.getString(FIELD_GROUP_ID);
+                        String taskId = document.getString(FIELD_TASK_ID);
+                        if (groupId == null || taskId == null || document.getData() == null) {
+                            Log.w(TAG, "Skipping malformed legacy comment " + document.getId());
+                            continue;
+                        }
+                        batch.set(getTaskRef(groupId, taskId)
+                                .collection(COLLECTION_COMMENTS)
+                                .document(document.getId()), document.getData());
+                        batch.delete(document.getReference());
+                        copied++;
+                    }
+                    DocumentSnapshot last = snapshot.getDocuments().get(snapshot.size() - 1);
+                    int total = migrated + copied;
+                    Task<Void> commit = copied > 0 ? batch.commit() : Tasks.forResult(null);
+                    return commit.continueWithTask(commitTask -> {
+                        if (!commitTask.isSuccessful()) {
+                            throw commitTask.getException();
+                        }
+                        return migrateLegacyCommentsPage(legacyQuery, last, total);
+                    });
+                });
+    }
+
+    private CollectionReference getCommentsCollection(String groupId, String taskId, boolean commentsMigrated) {
+        if (commentsMigrated) {
+            return getTaskRef(groupId, taskId).collection(COLLECTION_COMMENTS);
+        }
+        return db.collection(COLLECTION_COMMENTS);
+    }
+
+    private Query getTaskCommentsQuery(String groupId, String taskId, boolean commentsMigrated) {
+        if (commentsMigrated) {
+            return getCommentsCollection(groupId, taskId, true);
+        }
+        return db.collection(COLLECTION_COMMENTS)
+                .whereEqualTo(FIELD_GROUP_ID, groupId)
+                .whereEqualTo(FIELD_TASK_ID, taskId);
     }
 
     private String getCurrentUserId() {
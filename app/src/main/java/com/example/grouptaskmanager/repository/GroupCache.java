@@ -0,0 +1,78 @@
+package com.example.grouptaskmanager.repository;
+
+import com.example.grouptaskmanager.model.Group;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache thông tin nhóm dùng chung, khóa là groupId.
+ * Được cập nhật bởi mọi truy vấn nhóm trong GroupRepository và bởi listener nhóm
+ * của TaskStore, nên các màn hình có thể lấy tên nhóm ngay mà không cần đọc mạng.
+ */
+public class GroupCache {
+
+    private static GroupCache instance;
+
+    private final Map<String, Group> groups = new HashMap<>();
+
+    private GroupCache() {
+    }
+
+    public static synchronized GroupCache getInstance() {
+        if (instance == null) {
+            instance = new GroupCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Lấy nhóm trong cache, trả về null nếu chưa có
+     */
+    public synchronized Group get(String groupId) {
+        return groupId != null ? groups.get(groupId) : null;
+    }
+
+    /**
+     * Lấy tên nhóm trong cache, trả về null nếu chưa có
+     */
+    public synchronized String getName(String groupId) {
+        Group group = get(groupId);
+        return group != null ? group.getName() : null;
+    }
+
+    public synchronized void put(Group group) {
+        if (group != null && group.getId() != null) {
+            groups.put(group.getId(), group);
+        }
+    }
+
+    public synchronized void putAll(Collection<Group> newGroups) {
+        for (Group group : newGroups) {
+            put(group);
+        }
+    }
+
+    /**
+     * Chỉ thêm các nhóm chưa có (dữ liệu cũ từ LocalStore không ghi đè dữ liệu mới)
+     */
+    public synchronized void putAllIfAbsent(Collection<Group> newGroups) {
+        for (Group group : newGroups) {
+            if (group.getId() != null && !groups.containsKey(group.getId())) {
+                groups.put(group.getId(), group);
+            }
+        }
+    }
+
+    public synchronized void remove(String groupId) {
+        groups.remove(groupId);
+    }
+
+    /**
+     * Xóa toàn bộ cache (ví dụ khi đăng xuất)
+     */
+    public synchronized void clear() {
+        groups.clear();
+    }
+}
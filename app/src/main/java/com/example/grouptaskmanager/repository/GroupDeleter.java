@@ -0,0 +1,206 @@
+package com.example.grouptaskmanager.repository;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Source;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Xóa nhóm cùng toàn bộ dữ liệu liên quan theo từng bước:
+ * bình luận, nhiệm vụ, tin nhắn, userReads, tham chiếu ở người dùng và cuối cùng là document nhóm.
+ * Mỗi bước đọc từng trang giới hạn và xóa bằng WriteBatch tối đa 500 thao tác.
+ * Nhóm được đánh dấu "deleting" trước khi xóa; các bước đều lặp lại được nên nếu bị gián đoạn
+ * chỉ cần chạy lại (xem GroupRepository.resumePendingGroupDeletions). Nhóm đang bị xóa bị ẩn khỏi
+ * danh sách nhóm và không nhận ghi mới (xem isDeleting, ensureNotDeleting).
+ * Truy vấn collectionGroup("comments").whereEqualTo("groupId") cần chỉ mục một trường phạm vi
+ * COLLECTION_GROUP cho comments.groupId (fieldOverrides trong firestore.indexes.json).
+ */
+public class GroupDeleter {
+
+    private static final String TAG = "GroupDeleter";
+    private static final String COLLECTION_GROUPS = "groups";
+    private static final String COLLECTION_USERS = "users";
+    private static final String COLLECTION_TASKS = "tasks";
+    private static final String COLLECTION_MESSAGES = "messages";
+    private static final String COLLECTION_USER_READS = "userReads";
+    private static final String COLLECTION_COMMENTS = "comments";
+    private static final String FIELD_GROUPS = "groups";
+    private static final String FIELD_GROUP_ID = "groupId";
+    public static final String FIELD_DELETING = "deleting";
+    private static final int BATCH_WRITE_LIMIT = 500;
+
+    public static final String STEP_COMMENTS = "comments";
+    public static final String STEP_TASKS = "tasks";
+    public static final String STEP_MESSAGES = "messages";
+    public static final String STEP_USER_READS = "userReads";
+    public static final String STEP_MEMBERS = "members";
+    public static final String STEP_GROUP = "group";
+
+    /**
+     * Interface báo tiến độ; được gọi trên main thread sau mỗi batch
+     */
+    public interface OnProgressListener {
+        void onProgress(String step, int deletedInStep, int deletedTotal);
+    }
+
+    /**
+     * Nhóm đã bắt đầu bị xóa (cờ "deleting") hay chưa
+     */
+    public static boolean isDeleting(DocumentSnapshot groupDocument) {
+        return Boolean.TRUE.equals(groupDocument.getBoolean(FIELD_DELETING));
+    }
+
+    /**
+     * Thất bại nếu nhóm đang bị xóa, dùng để chặn ghi mới vào nhóm.
+     * Đọc từ cache trước (listener danh sách nhóm giữ cache cập nhật), thiếu mới đọc server
+     */
+    public static Task<Void> ensureNotDeleting(String groupId) {
+        DocumentReference groupRef = FirebaseFirestore.getInstance()
+                .collection(COLLECTION_GROUPS).document(groupId);
+        return groupRef.get(Source.CACHE)
+                .continueWithTask(task -> task.isSuccessful() && task.getResult().exists()
+                        ? Tasks.forResult(task.getResult()) : groupRef.get())
+                .onSuccessTask(groupDocument -> {
+                    if (isDeleting(groupDocument)) {
+                        return Tasks.forException(new IllegalStateException("Nhóm đang bị xóa"));
+                    }
+                    return Tasks.forResult(null);
+                });
+    }
+
+    private final FirebaseFirestore db;
+    private final ChatRepository chatRepository;
+    private final String groupId;
+    private final OnProgressListener progressListener;
+    private final DocumentReference groupRef;
+    private int deletedTotal = 0;
+
+    public GroupDeleter(String groupId, OnProgressListener progressListener) {
+        this.db = FirebaseFirestore.getInstance();
+        this.chatRepository = new ChatRepository();
+        this.groupId = groupId;
+        this.progressListener = progressListener;
+        this.groupRef = db.collection(COLLECTION_GROUPS).document(groupId);
+    }
+
+    /**
+     * Chạy (hoặc chạy tiếp) quá trình xóa. Danh sách thành viên lấy từ document nhóm
+     * nên document nhóm được xóa sau cùng.
+     */
+    public Task<Void> run(List<String> memberIds) {
+        // onSuccessTask dừng chuỗi ở bước lỗi đầu tiên; lần chạy sau bắt đầu lại từ bước đó
+        return groupRef.update(FIELD_DELETING, true)
+                // collectionGroup gồm cả subcollection của nhiệm vụ lẫn collection "comments" chung cũ
+                .onSuccessTask(result -> deleteInPages(
+                        db.collectionGroup(COLLECTION_COMMENTS).whereEqualTo(FIELD_GROUP_ID, groupId), STEP_COMMENTS))
+                .onSuccessTask(result -> deleteInPages(
+                        groupRef.collection(COLLECTION_TASKS), STEP_TASKS))
+                .onSuccessTask(result -> deleteInPages(
+                        groupRef.collection(COLLECTION_MESSAGES), STEP_MESSAGES))
+                .onSuccessTask(result -> deleteInPages(
+                        groupRef.collection(COLLECTION_USER_READS), STEP_USER_READS))
+                .onSuccessTask(result -> removeFromMembers(memberIds))
+                .onSuccessTask(result -> groupRef.delete())
+                .continueWith(task -> {
+                    if (!task.isSuccessful()) {
+                        Log.e(TAG, "Group deletion interrupted: " + groupId, task.getException());
+                        throw task.getException();
+                    }
+                    reportProgress(STEP_GROUP, 1, 1);
+                    Log.d(TAG, "Deleted group " + groupId + " (" + deletedTotal + " documents)");
+                    return null;
+                });
+    }
+
+    /**
+     * Xóa từng trang của query cho đến khi hết
+     */
+    private Task<Void> deleteInPages(Query query, String step) {
+        return deletePage(query, step, 0);
+    }
+
+    private Task<Void> deletePage(Query query, String step, int deletedInStep) {
+        return query.limit(BATCH_WRITE_LIMIT)
+                .get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    QuerySnapshot snapshot = task.getResult();
+                    if (snapshot.isEmpty()) {
+                        return Tasks.forResult(null);
+                    }
+
+                    WriteBatch batch = db.batch();
+                    for (DocumentSnapshot document : snapshot.getDocuments()) {
+                        batch.delete(document.getReference());
+                    }
+                    return batch.commit().continueWithTask(commitTask -> {
+                        if (!commitTask.isSuccessful()) {
+                            throw commitTask.getException();
+                        }
+                        int deleted = deletedInStep + snapshot.size();
+                        reportProgress(step, deleted, snapshot.size());
+                        if (snapshot.size() < BATCH_WRITE_LIMIT) {
+                            return Tasks.forResult(null);
+                        }
+                        return deletePage(query, step, deleted);
+                    });
+                });
+    }
+
+    /**
+     * Bỏ groupId khỏi danh sách nhóm và bộ đếm chưa đọc của từng thành viên
+     * (2 thao tác mỗi thành viên, chia batch theo giới hạn)
+     */
+    private Task<Void> removeFromMembers(List<String> memberIds) {
+        if (memberIds == null || memberIds.isEmpty()) {
+            return Tasks.forResult(null);
+        }
+
+        List<Task<Void>> commits = new ArrayList<>();
+        WriteBatch batch = db.batch();
+        int operations = 0;
+        for (String memberId : memberIds) {
+            if (operations + 2 > BATCH_WRITE_LIMIT) {
+                commits.add(batch.commit());
+                batch = db.batch();
+                operations = 0;
+            }
+            // set + merge để batch không lỗi nếu document người dùng không còn
+            batch.set(db.collection(COLLECTION_USERS).document(memberId),
+                    Collections.singletonMap(FIELD_GROUPS, FieldValue.arrayRemove(groupId)), SetOptions.merge());
+            chatRepository.clearUnreadCounter(batch, memberId, groupId);
+            operations += 2;
+        }
+        commits.add(batch.commit());
+
+        return Tasks.whenAll(commits).continueWith(task -> {
+            if (!task.isSuccessful()) {
+                throw task.getException();
+            }
+            reportProgress(STEP_MEMBERS, memberIds.size(), memberIds.size());
+            return null;
+        });
+    }
+
+    private void reportProgress(String step, int deletedInStep, int deletedNow) {
+        deletedTotal += deletedNow;
+        if (progressListener != null) {
+            progressListener.onProgress(step, deletedInStep, deletedTotal);
+        }
+    }
+}
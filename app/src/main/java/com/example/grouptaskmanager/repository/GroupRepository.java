@@ -2,12 +2,15 @@ package com.example.grouptaskmanager.repository;
 
 import com.example.grouptaskmanager.model.Group;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
 
@@ -30,10 +33,16 @@ public class GroupRepository {
 
     private final FirebaseFirestore db;
     private final FirebaseAuth auth;
+    private final LocalStore localStore;
+    private final ReadCoalescer readCoalescer;
+    private final GroupCache groupCache;
 
     public GroupRepository() {
         db = FirebaseFirestore.getInstance();
         auth = FirebaseAuth.getInstance();
+        localStore = LocalStore.getInstance();
+        readCoalescer = ReadCoalescer.getInstance();
+        groupCache = GroupCache.getInstance();
     }
 
     /**
@@ -76,7 +85,7 @@ public class GroupRepository {
     }
 
     /**
-     * Lấy danh sách nhóm của người dùng hiện tại
+     * Lấy danh sách nhóm của người dùng hiện tại; kết quả được ghi vào GroupCache và LocalStore
      */
     public Task<QuerySnapshot> getUserGroups() {
         FirebaseUser currentUser = auth.getCurrentUser();
@@ -84,10 +93,84 @@ public class GroupRepository {
             return null;
         }
 
+        String userId = currentUser.getUid();
+        return getUserGroupsQuery(userId)
+                .get()
+                .addOnSuccessListener(snapshot -> saveUserGroups(userId, snapshot));
+    }
+
+    /**
+     * Lấy danh sách nhóm của người dùng hiện tại theo ReadPolicy;
+     * kết quả được ghi vào GroupCache, kết quả từ server được ghi thêm vào LocalStore
+     */
+    public void getUserGroups(ReadPolicy policy, ReadPolicy.OnReadListener<QuerySnapshot> listener) {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser == null) {
+            listener.onError(new IllegalStateException("User not authenticated"));
+            return;
+        }
+
+        String userId = currentUser.getUid();
+        ReadPolicy.read(getUserGroupsQuery(userId), policy, new ReadPolicy.OnReadListener<QuerySnapshot>() {
+            @Override
+            public void onRead(QuerySnapshot snapshot, boolean fromCache) {
+                if (fromCache) {
+                    groupCache.putAll(toGroups(snapshot));
+                } else {
+                    saveUserGroups(userId, snapshot);
+                }
+                listener.onRead(snapshot, fromCache);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                listener.onError(e);
+            }
+        });
+    }
+
+    private Query getUserGroupsQuery(String userId) {
+        return db.collection(COLLECTION_GROUPS)
+                .whereArrayContains(FIELD_MEMBERS, userId)
+                .orderBy(FIELD_CREATED_AT, Query.Direction.DESCENDING);
+    }
+
+    private void saveUserGroups(String userId, QuerySnapshot snapshot) {
+        List<Group> groups = toGroups(snapshot);
+        groupCache.putAll(groups);
+        localStore.replaceGroupsForUser(userId, groups);
+    }
+
+    /**
+     * Chuyển snapshot thành danh sách nhóm, bỏ qua nhóm đang bị xóa
+     */
+    public static List<Group> toGroups(QuerySnapshot snapshot) {
+        List<Group> groups = new ArrayList<>();
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            if (GroupDeleter.isDeleting(document)) {
+                continue;
+            }
+            Group group = document.toObject(Group.class);
+            if (group != null) {
+                group.setId(document.getId());
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Lắng nghe realtime danh sách nhóm của người dùng hiện tại
+     */
+    public ListenerRegistration addUserGroupsListener(EventListener<QuerySnapshot> listener) {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser == null) {
+            return null;
+        }
+
         return db.collection(COLLECTION_GROUPS)
                 .whereArrayContains(FIELD_MEMBERS, currentUser.getUid())
-                .orderBy(FIELD_CREATED_AT, Query.Direction.DESCENDING)
-                .get();
+                .addSnapshotListener(listener);
     }
 
     /**
@@ -108,9 +191,9 @@ public class GroupRepository {
                         String groupId = document.getId();
                         
                         // Thêm người dùng vào nhóm
-                        db.collection(COLLECTION_GROUPS)
-                                .document(groupId)
-                                .update(FIELD_MEMBERS, FieldValue.arrayUnion(currentUser.getUid()),
+                        DocumentReference groupRef = getGroupRef(groupId);
+                        readCoalescer.invalidate(groupRef);
+                        groupRef.update(FIELD_MEMBERS, FieldValue.arrayUnion(currentUser.getUid()),
                                         FIELD_UPDATED_AT, FieldValue.serverTimestamp());
                         
                         // Thêm groupId vào danh sách nhóm của người dùng
@@ -122,10 +205,23 @@ public class GroupRepository {
     }
 
     /**
-     * Lấy thông tin chi tiết của một nhóm
+     * Lấy thông tin chi tiết của một nhóm; các lần đọc cùng lúc được gộp qua ReadCoalescer
+     * và kết quả được ghi vào GroupCache
      */
     public Task<DocumentSnapshot> getGroupDetails(String groupId) {
-        return db.collection(COLLECTION_GROUPS).document(groupId).get();
+        DocumentReference groupRef = getGroupRef(groupId);
+        return readCoalescer.get(groupRef.getPath(), () -> groupRef.get()
+                .addOnSuccessListener(documentSnapshot -> {
+                    Group group = documentSnapshot.toObject(Group.class);
+                    if (group != null) {
+                        group.setId(documentSnapshot.getId());
+                        groupCache.put(group);
+                    }
+                }));
+    }
+
+    private DocumentReference getGroupRef(String groupId) {
+        return db.collection(COLLECTION_GROUPS).document(groupId);
     }
 
     /**
@@ -138,15 +234,18 @@ public class GroupRepository {
         }
 
         // Xóa người dùng khỏi danh sách thành viên nhóm
-        Task<Void> removeFromGroup = db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .update(FIELD_MEMBERS, FieldValue.arrayRemove(currentUser.getUid()),
+        DocumentReference groupRef = getGroupRef(groupId);
+        readCoalescer.invalidate(groupRef);
+        Task<Void> removeFromGroup = groupRef.update(FIELD_MEMBERS, FieldValue.arrayRemove(currentUser.getUid()),
                         FIELD_UPDATED_AT, FieldValue.serverTimestamp());
 
         // Xóa groupId khỏi danh sách nhóm của người dùng
         db.collection(COLLECTION_USERS)
                 .document(currentUser.getUid())
                 .update(FIELD_GROUPS, FieldValue.arrayRemove(groupId));
+
+        // Bỏ bộ đếm tin nhắn chưa đọc của nhóm để không tính vào badge
+        new ChatRepository().clearUnreadCounter(currentUser.getUid(), groupId);
         
         return removeFromGroup;
     }
@@ -160,9 +259,9 @@ public class GroupRepository {
         updates.put("description", description);
         updates.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
 
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .update(updates);
+        DocumentReference groupRef = getGroupRef(groupId);
+        readCoalescer.invalidate(groupRef);
+        return groupRef.update(updates);
     }
 
     /**
@@ -184,9 +283,9 @@ public class GroupRepository {
             // Trường hợp này sẽ được xử lý bởi generateNewInviteCode sau khi cập nhật
         }
 
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .update(updates);
+        DocumentReference groupRef = getGroupRef(groupId);
+        readCoalescer.invalidate(groupRef);
+        return groupRef.update(updates);
     }
 
     /**
@@ -223,9 +322,9 @@ public class GroupRepository {
         updates.put("isPrivate", true);
         updates.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
         
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .update(updates);
+        DocumentReference groupRef = getGroupRef(groupId);
+        readCoalescer.invalidate(groupRef);
+        return groupRef.update(updates);
     }
     
     /**
@@ -237,9 +336,8 @@ public class GroupRepository {
             return null;
         }
         
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .get()
+        // Dùng chung lần đọc với getGroupDetails nếu màn hình vừa tải nhóm
+        return getGroupDetails(groupId)
                 .continueWith(task -> {
                     if (task.isSuccessful() && task.getResult() != null) {
                         String creatorId = task.getResult().getString("createdBy");
@@ -255,60 +353,65 @@ public class GroupRepository {
      * Xóa nhóm (chỉ người tạo nhóm mới có quyền xóa)
      */
     public Task<Void> deleteGroup(String groupId) {
+        return deleteGroup(groupId, null);
+    }
+
+    /**
+     * Xóa nhóm cùng nhiệm vụ, tin nhắn, userReads, bình luận và tham chiếu ở thành viên,
+     * báo tiến độ qua progressListener
+     */
+    public Task<Void> deleteGroup(String groupId, GroupDeleter.OnProgressListener progressListener) {
         FirebaseUser currentUser = auth.getCurrentUser();
         if (currentUser == null) {
             return null;
         }
         
         // Lấy thông tin nhóm để kiểm tra quyền và lấy danh sách thành viên
+        DocumentReference groupRef = getGroupRef(groupId);
+        readCoalescer.invalidate(groupRef);
+        return groupRef.get()
+                .continueWithTask(task -> {
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
+                    }
+                    Group group = task.getResult().toObject(Group.class);
+                    if (group == null) {
+                        throw new IllegalStateException("Không tìm thấy nhóm");
+                    }
+                    
+                    // Kiểm tra quyền xóa nhóm
+                    if (!currentUser.getUid().equals(group.getCreatedBy())) {
+                        throw new IllegalStateException("Chỉ người tạo nhóm mới có quyền xóa nhóm");
+                    }
+                    
+                    return new GroupDeleter(groupId, progressListener).run(group.getMembers());
+                });
+    }
+
+    /**
+     * Chạy tiếp các lần xóa nhóm bị gián đoạn (nhóm của người dùng hiện tại còn cờ "deleting")
+     */
+    public Task<Void> resumePendingGroupDeletions() {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser == null) {
+            return Tasks.forResult(null);
+        }
+        
         return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
+                .whereEqualTo("createdBy", currentUser.getUid())
+                .whereEqualTo(GroupDeleter.FIELD_DELETING, true)
                 .get()
                 .continueWithTask(task -> {
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        Group group = task.getResult().toObject(Group.class);
-                        
-                        if (group != null) {
-                            // Kiểm tra quyền xóa nhóm
-                            if (!currentUser.getUid().equals(group.getCreatedBy())) {
-                                throw new IllegalStateException("Chỉ người tạo nhóm mới có quyền xóa nhóm");
-                            }
-                            
-                            // Xóa groupId khỏi danh sách nhóm của tất cả thành viên
-                            List<Task<Void>> memberTasks = new ArrayList<>();
-                            if (group.getMembers() != null) {
-                                for (String memberId : group.getMembers()) {
-                                    Task<Void> memberTask = db.collection(COLLECTION_USERS)
-                                            .document(memberId)
-                                            .update(FIELD_GROUPS, FieldValue.arrayRemove(groupId));
-                                    memberTasks.add(memberTask);
-                                }
-                            }
-                            
-                            // Đợi tất cả các thao tác cập nhật hoàn thành
-                            return com.google.android.gms.tasks.Tasks.whenAll(memberTasks)
-                                    .continueWithTask(t -> {
-                                        // Xóa tất cả các tài liệu con của nhóm (như tasks)
-                                        return db.collection(COLLECTION_GROUPS)
-                                                .document(groupId)
-                                                .collection("tasks")
-                                                .get()
-                                                .continueWithTask(tasksSnapshot -> {
-                                                    List<Task<Void>> deleteTasks = new ArrayList<>();
-                                                    for (DocumentSnapshot doc : tasksSnapshot.getResult().getDocuments()) {
-                                                        deleteTasks.add(doc.getReference().delete());
-                                                    }
-                                                    return com.google.android.gms.tasks.Tasks.whenAll(deleteTasks);
-                                                });
-                                    })
-                                    .continueWithTask(t -> {
-                                        // Cuối cùng, xóa nhóm
-                                        return db.collection(COLLECTION_GROUPS).document(groupId).delete();
-                                    });
-                        }
+                    if (!task.isSuccessful()) {
+                        throw task.getException();
                     }
-                    
-                    return null;
+                    List<Task<Void>> deletions = new ArrayList<>();
+                    for (DocumentSnapshot document : task.getResult().getDocuments()) {
+                        Group group = document.toObject(Group.class);
+                        List<String> members = group != null ? group.getMembers() : null;
+                        deletions.add(new GroupDeleter(document.getId(), null).run(members));
+                    }
+                    return Tasks.whenAll(deletions);
                 });
     }
-} 
\ No newline at end of file
+}
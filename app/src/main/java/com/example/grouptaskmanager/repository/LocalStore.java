@@ -0,0 +1,511 @@
+package com.example.grouptaskmanager.repository;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import com.example.grouptaskmanager.model.Group;
+import com.example.grouptaskmanager.model.User;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bản sao cục bộ (SQLite) của nhóm, nhiệm vụ, người dùng và thành viên nhóm.
+ * Các repository đọc từ đây để hiển thị ngay khi mở ứng dụng, sau đó đối chiếu
+ * với kết quả Firestore và ghi lại. Mọi thao tác chạy trên một luồng nền riêng
+ * và trả về Task như các repository khác.
+ */
+public class LocalStore extends SQLiteOpenHelper {
+
+    private static final String TAG = "LocalStore";
+    private static final String DATABASE_NAME = "local_store.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_GROUPS = "groups";
+    private static final String TABLE_GROUP_MEMBERS = "group_members";
+    private static final String TABLE_TASKS = "tasks";
+    private static final String TABLE_USERS = "users";
+    // SQLite giới hạn số tham số trong một câu lệnh
+    private static final int MAX_QUERY_ARGS = 500;
+
+    private static LocalStore instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private LocalStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Khởi tạo từ Application.onCreate
+     */
+    public static synchronized void init(Context context) {
+        if (instance == null) {
+            instance = new LocalStore(context.getApplicationContext());
+        }
+    }
+
+    public static synchronized LocalStore getInstance() {
+        if (instance == null) {
+            throw new IllegalStateException("LocalStore chưa được khởi tạo");
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_GROUPS + " ("
+                + "id TEXT PRIMARY KEY, name TEXT, description TEXT, created_by TEXT, "
+                + "created_at INTEGER, updated_at INTEGER, invite_code TEXT, is_private INTEGER, "
+                + "last_message_at INTEGER)");
+        db.execSQL("CREATE TABLE " + TABLE_GROUP_MEMBERS + " ("
+                + "group_id TEXT NOT NULL, user_id TEXT NOT NULL, PRIMARY KEY (group_id, user_id))");
+        db.execSQL("CREATE INDEX idx_group_members_user ON " + TABLE_GROUP_MEMBERS + " (user_id)");
+        db.execSQL("CREATE TABLE " + TABLE_TASKS + " ("
+                + "group_id TEXT NOT NULL, id TEXT NOT NULL, title TEXT, description TEXT, "
+                + "created_by TEXT, assigned_to TEXT, status TEXT, priority TEXT, deadline INTEGER, "
+                + "created_at INTEGER, updated_at INTEGER, due_reminder INTEGER, tags TEXT, "
+                + "comments_count INTEGER, attachments TEXT, PRIMARY KEY (group_id, id))");
+        db.execSQL("CREATE INDEX idx_tasks_status ON " + TABLE_TASKS + " (status)");
+        db.execSQL("CREATE INDEX idx_tasks_assigned_to ON " + TABLE_TASKS + " (assigned_to)");
+        db.execSQL("CREATE INDEX idx_tasks_deadline ON " + TABLE_TASKS + " (deadline)");
+        db.execSQL("CREATE TABLE " + TABLE_USERS + " ("
+                + "id TEXT PRIMARY KEY, name TEXT, email TEXT, photo_url TEXT, joined_at INTEGER, fcm_token TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Chỉ là bản sao của Firestore nên có thể tạo lại
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_GROUPS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_GROUP_MEMBERS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TASKS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_USERS);
+        onCreate(db);
+    }
+
+    // ---- Nhóm ----
+
+    /**
+     * Các nhóm người dùng là thành viên, mới tạo trước
+     */
+    public Task<List<Group>> getGroupsForUser(String userId) {
+        return Tasks.call(executor, () -> {
+            List<Group> groups = new ArrayList<>();
+            try (Cursor cursor = getReadableDatabase().rawQuery("SELECT g.* FROM " + TABLE_GROUPS + " g"
+                    + " JOIN " + TABLE_GROUP_MEMBERS + " m ON m.group_id = g.id"
+                    + " WHERE m.user_id = ? ORDER BY g.created_at DESC", new String[]{userId})) {
+                while (cursor.moveToNext()) {
+                    groups.add(readGroup(cursor));
+                }
+            }
+            attachMembers(groups);
+            return groups;
+        });
+    }
+
+    /**
+     * Thay toàn bộ danh sách nhóm của người dùng bằng kết quả mới từ Firestore;
+     * nhóm người dùng không còn tham gia bị xóa cùng nhiệm vụ của nhóm đó
+     */
+    public Task<Void> replaceGroupsForUser(String userId, List<Group> groups) {
+        List<Group> snapshot = new ArrayList<>(groups);
+        return Tasks.call(executor, () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                Map<String, Group> newGroups = new LinkedHashMap<>();
+                for (Group group : snapshot) {
+                    newGroups.put(group.getId(), group);
+                }
+                for (String groupId : queryStrings(db, "SELECT group_id FROM " + TABLE_GROUP_MEMBERS
+                        + " WHERE user_id = ?", userId)) {
+                    if (!newGroups.containsKey(groupId)) {
+                        deleteGroup(db, groupId);
+                    }
+                }
+                for (Group group : newGroups.values()) {
+                    writeGroup(db, group);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return null;
+        });
+    }
+
+    // ---- Nhiệm vụ ----
+
+    /**
+     * Nhiệm vụ của mọi nhóm người dùng là thành viên
+     */
+    public Task<List<com.example.grouptaskmanager.model.Task>> getTasksForUser(String userId) {
+        return Tasks.call(executor, () -> readTasks("SELECT t.* FROM " + TABLE_TASKS + " t"
+                + " JOIN " + TABLE_GROUP_MEMBERS + " m ON m.group_id = t.group_id"
+                + " WHERE m.user_id = ? ORDER BY t.created_at DESC", userId));
+    }
+
+    /**
+     * Một nhiệm vụ theo groupId và taskId, null nếu chưa có trong bản sao
+     */
+    public Task<com.example.grouptaskmanager.model.Task> getTask(String groupId, String taskId) {
+        return Tasks.call(executor, () -> {
+            List<com.example.grouptaskmanager.model.Task> tasks = readTasks("SELECT * FROM " + TABLE_TASKS
+                    + " WHERE group_id = ? AND id = ?", groupId, taskId);
+            return tasks.isEmpty() ? null : tasks.get(0);
+        });
+    }
+
+    /**
+     * Nhiệm vụ của một nhóm, mới tạo trước
+     */
+    public Task<List<com.example.grouptaskmanager.model.Task>> getTasksForGroup(String groupId) {
+        return Tasks.call(executor, () -> readTasks("SELECT * FROM " + TABLE_TASKS
+                + " WHERE group_id = ? ORDER BY created_at DESC", groupId));
+    }
+
+    /**
+     * Thay toàn bộ nhiệm vụ của các nhóm đã cho bằng kết quả đầy đủ từ Firestore
+     */
+    public Task<Void> replaceTasksForGroups(Collection<String> groupIds,
+                                            Collection<com.example.grouptaskmanager.model.Task> tasks) {
+        List<String> ids = new ArrayList<>(groupIds);
+        List<com.example.grouptaskmanager.model.Task> snapshot = new ArrayList<>(tasks);
+        return Tasks.call(executor, () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (String groupId : ids) {
+                    db.delete(TABLE_TASKS, "group_id = ?", new String[]{groupId});
+                }
+                for (com.example.grouptaskmanager.model.Task task : snapshot) {
+                    writeTask(db, task);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Áp dụng thay đổi lẻ: ghi các nhiệm vụ mới/sửa và xóa các nhiệm vụ theo khóa "groupId/taskId"
+     */
+    public Task<Void> applyTaskChanges(Collection<com.example.grouptaskmanager.model.Task> upserts,
+                                       Collection<String> removedKeys) {
+        List<com.example.grouptaskmanager.model.Task> upsertSnapshot = new ArrayList<>(upserts);
+        List<String> removedSnapshot = new ArrayList<>(removedKeys);
+        return Tasks.call(executor, () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (com.example.grouptaskmanager.model.Task task : upsertSnapshot) {
+                    writeTask(db, task);
+                }
+                for (String key : removedSnapshot) {
+                    int separator = key.indexOf('/');
+                    db.delete(TABLE_TASKS, "group_id = ? AND id = ?",
+                            new String[]{key.substring(0, separator), key.substring(separator + 1)});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return null;
+        });
+    }
+
+    // ---- Người dùng ----
+
+    /**
+     * Người dùng có trong bản sao, map userId -> User
+     */
+    public Task<Map<String, User>> getUsers(Collection<String> userIds) {
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+        return Tasks.call(executor, () -> {
+            Map<String, User> users = new LinkedHashMap<>();
+            SQLiteDatabase db = getReadableDatabase();
+            for (int start = 0; start < ids.size(); start += MAX_QUERY_ARGS) {
+                List<String> chunk = ids.subList(start, Math.min(start + MAX_QUERY_ARGS, ids.size()));
+                try (Cursor cursor = db.query(TABLE_USERS, null, "id IN (" + placeholders(chunk.size()) + ")",
+                        chunk.toArray(new String[0]), null, null, null)) {
+                    while (cursor.moveToNext()) {
+                        User user = readUser(cursor);
+                        users.put(user.getId(), user);
+                    }
+                }
+            }
+            return users;
+        });
+    }
+
+    public Task<Void> putUsers(Collection<User> users) {
+        List<User> snapshot = new ArrayList<>(users);
+        return Tasks.call(executor, () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                for (User user : snapshot) {
+                    ContentValues values = new ContentValues();
+                    values.put("id", user.getId());
+                    values.put("name", user.getName());
+                    values.put("email", user.getEmail());
+                    values.put("photo_url", user.getPhotoURL());
+                    values.put("joined_at", toMillis(user.getJoinedAt()));
+                    values.put("fcm_token", user.getFcmToken());
+                    db.insertWithOnConflict(TABLE_USERS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Xóa toàn bộ dữ liệu (ví dụ khi đăng xuất)
+     */
+    public Task<Void> clear() {
+        return Tasks.call(executor, () -> {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                db.delete(TABLE_GROUPS, null, null);
+                db.delete(TABLE_GROUP_MEMBERS, null, null);
+                db.delete(TABLE_TASKS, null, null);
+                db.delete(TABLE_USERS, null, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            Log.d(TAG, "Local store cleared");
+            return null;
+        });
+    }
+
+    // ---- Chuyển đổi ----
+
+    private void writeGroup(SQLiteDatabase db, Group group) {
+        ContentValues values = new ContentValues();
+        values.put("id", group.getId());
+        values.put("name", group.getName());
+        values.put("description", group.getDescription());
+        values.put("created_by", group.getCreatedBy());
+        values.put("created_at", toMillis(group.getCreatedAt()));
+        values.put("updated_at", toMillis(group.getUpdatedAt()));
+        values.put("invite_code", group.getInviteCode());
+        values.put("is_private", group.isPrivate() ? 1 : 0);
+        values.put("last_message_at", toMillis(group.getLastMessageAt()));
+        db.insertWithOnConflict(TABLE_GROUPS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+        db.delete(TABLE_GROUP_MEMBERS, "group_id = ?", new String[]{group.getId()});
+        if (group.getMembers() != null) {
+            for (String memberId : group.getMembers()) {
+                ContentValues member = new ContentValues();
+                member.put("group_id", group.getId());
+                member.put("user_id", memberId);
+                db.insertWithOnConflict(TABLE_GROUP_MEMBERS, null, member, SQLiteDatabase.CONFLICT_IGNORE);
+            }
+        }
+    }
+
+    private void deleteGroup(SQLiteDatabase db, String groupId) {
+        String[] args = {groupId};
+        db.delete(TABLE_GROUPS, "id = ?", args);
+        db.delete(TABLE_GROUP_MEMBERS, "group_id = ?", args);
+        db.delete(TABLE_TASKS, "group_id = ?", args);
+    }
+
+    private Group readGroup(Cursor cursor) {
+        Group group = new Group();
+        group.setId(getString(cursor, "id"));
+        group.setName(getString(cursor, "name"));
+        group.setDescription(getString(cursor, "description"));
+        group.setCreatedBy(getString(cursor, "created_by"));
+        group.setCreatedAt(getTimestamp(cursor, "created_at"));
+        group.setUpdatedAt(getTimestamp(cursor, "updated_at"));
+        group.setInviteCode(getString(cursor, "invite_code"));
+        group.setPrivate(cursor.getInt(cursor.getColumnIndexOrThrow("is_private")) == 1);
+        group.setLastMessageAt(getTimestamp(cursor, "last_message_at"));
+        return group;
+    }
+
+    private void attachMembers(List<Group> groups) {
+        if (groups.isEmpty()) {
+            return;
+        }
+        Map<String, Group> byId = new HashMap<>();
+        for (Group group : groups) {
+            group.setMembers(new ArrayList<>());
+            byId.put(group.getId(), group);
+        }
+        List<String> ids = new ArrayList<>(byId.keySet());
+        SQLiteDatabase db = getReadableDatabase();
+        for (int start = 0; start < ids.size(); start += MAX_QUERY_ARGS) {
+            List<String> chunk = ids.subList(start, Math.min(start + MAX_QUERY_ARGS, ids.size()));
+            try (Cursor cursor = db.query(TABLE_GROUP_MEMBERS, null, "group_id IN (" + placeholders(chunk.size()) + ")",
+                    chunk.toArray(new String[0]), null, null, null)) {
+                while (cursor.moveToNext()) {
+                    byId.get(getString(cursor, "group_id")).getMembers().add(getString(cursor, "user_id"));
+                }
+            }
+        }
+    }
+
+    private void writeTask(SQLiteDatabase db, com.example.grouptaskmanager.model.Task task) {
+        ContentValues values = new ContentValues();
+        values.put("group_id", task.getGroupId());
+        values.put("id", task.getId());
+        values.put("title", task.getTitle());
+        values.put("description", task.getDescription());
+        values.put("created_by", task.getCreatedBy());
+        values.put("assigned_to", task.getAssignedTo());
+        values.put("status", task.getStatus());
+        values.put("priority", task.getPriority());
+        values.put("deadline", toMillis(task.getDeadline()));
+        values.put("created_at", toMillis(task.getCreatedAt()));
+        values.put("updated_at", toMillis(task.getUpdatedAt()));
+        values.put("due_reminder", toMillis(task.getDueReminder()));
+        values.put("tags", task.getTags() != null ? new JSONArray(task.getTags()).toString() : null);
+        values.put("comments_count", task.getCommentsCount());
+        values.put("attachments", attachmentsToJson(task.getAttachments()));
+        db.insertWithOnConflict(TABLE_TASKS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private List<com.example.grouptaskmanager.model.Task> readTasks(String sql, String... args) {
+        List<com.example.grouptaskmanager.model.Task> tasks = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                com.example.grouptaskmanager.model.Task task = new com.example.grouptaskmanager.model.Task();
+                task.setGroupId(getString(cursor, "group_id"));
+                task.setId(getString(cursor, "id"));
+                task.setTitle(getString(cursor, "title"));
+                task.setDescription(getString(cursor, "description"));
+                task.setCreatedBy(getString(cursor, "created_by"));
+                task.setAssignedTo(getString(cursor, "assigned_to"));
+                task.setStatus(getString(cursor, "status"));
+                task.setPriority(getString(cursor, "priority"));
+                task.setDeadline(getTimestamp(cursor, "deadline"));
+                task.setCreatedAt(getTimestamp(cursor, "created_at"));
+                task.setUpdatedAt(getTimestamp(cursor, "updated_at"));
+                task.setDueReminder(getTimestamp(cursor, "due_reminder"));
+                task.setTags(tagsFromJson(getString(cursor, "tags")));
+                task.setCommentsCount(cursor.getInt(cursor.getColumnIndexOrThrow("comments_count")));
+                task.setAttachments(attachmentsFromJson(getString(cursor, "attachments")));
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    private User readUser(Cursor cursor) {
+        User user = new User();
+        user.setId(getString(cursor, "id"));
+        user.setName(getString(cursor, "name"));
+        user.setEmail(getString(cursor, "email"));
+        user.setPhotoURL(getString(cursor, "photo_url"));
+        user.setJoinedAt(getTimestamp(cursor, "joined_at"));
+        user.setFcmToken(getString(cursor, "fcm_token"));
+        return user;
+    }
+
+    private static String attachmentsToJson(List<Map<String, String>> attachments) {
+        if (attachments == null) {
+            return null;
+        }
+        JSONArray array = new JSONArray();
+        for (Map<String, String> attachment : attachments) {
+            array.put(new JSONObject(attachment));
+        }
+        return array.toString();
+    }
+
+    private static List<Map<String, String>> attachmentsFromJson(String json) {
+        List<Map<String, String>> attachments = new ArrayList<>();
+        if (json == null) {
+            return attachments;
+        }
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                Map<String, String> attachment = new HashMap<>();
+                Iterator<String> keys = object.keys();
+                while (keys.hasNext()) {
+                    String key = keys.next();
+                    attachment.put(key, object.optString(key));
+                }
+                attachments.add(attachment);
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Invalid attachments json", e);
+        }
+        return attachments;
+    }
+
+    private static List<String> tagsFromJson(String json) {
+        List<String> tags = new ArrayList<>();
+        if (json == null) {
+            return tags;
+        }
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                tags.add(array.getString(i));
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Invalid tags json", e);
+        }
+        return tags;
+    }
+
+    private static List<String> queryStrings(SQLiteDatabase db, String sql, String arg) {
+        List<String> values = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery(sql, new String[]{arg})) {
+            while (cursor.moveToNext()) {
+                values.add(cursor.getString(0));
+            }
+        }
+        return values;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static Long toMillis(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toDate().getTime() : null;
+    }
+
+    private static Timestamp getTimestamp(Cursor cursor, String column) {
+        int index = cursor.getColumnIndexOrThrow(column);
+        return cursor.isNull(index) ? null : new Timestamp(new Date(cursor.getLong(index)));
+    }
+
+    private static String getString(Cursor cursor, String column) {
+        return cursor.getString(cursor.getColumnIndexOrThrow(column));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.grouptaskmanager.repository;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Gộp các lần đọc trùng nhau bên dưới các repository.
+ * - Các yêu cầu cùng khóa (đường dẫn document hoặc khóa query) trong lúc một lần đọc
+ *   đang chạy dùng chung Task đó
+ * - Kết quả thành công được dùng lại trong RESULT_REUSE_MS
+ * - Repository gọi invalidate sau khi ghi để lần đọc tiếp theo lấy dữ liệu mới
+ */
+public class ReadCoalescer {
+
+    private static final long RESULT_REUSE_MS = 2000;
+    private static final int PRUNE_THRESHOLD = 64;
+
+    private static ReadCoalescer instance;
+
+    private final Map<String, Task<?>> inFlight = new HashMap<>();
+    private final Map<String, RecentResult> recentResults = new HashMap<>();
+    private int issuedReads = 0;
+    private int coalescedReads = 0;
+    private int reusedReads = 0;
+
+    private ReadCoalescer() {
+    }
+
+    public static synchronized ReadCoalescer getInstance() {
+        if (instance == null) {
+            instance = new ReadCoalescer();
+        }
+        return instance;
+    }
+
+    /**
+     * Đọc một document, khóa là đường dẫn của document
+     */
+    public Task<DocumentSnapshot> get(DocumentReference reference) {
+        return get(reference.getPath(), reference::get);
+    }
+
+    /**
+     * Đọc theo khóa tùy ý (ví dụ một query); loader chỉ được gọi khi không có
+     * lần đọc đang chạy hoặc kết quả gần đây cho khóa đó
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> Task<T> get(String key, Supplier<Task<T>> loader) {
+        long now = System.currentTimeMillis();
+        RecentResult recent = recentResults.get(key);
+        if (recent != null) {
+            if (now - recent.completedAt <= RESULT_REUSE_MS) {
+                reusedReads++;
+                return Tasks.forResult((T) recent.result);
+            }
+            recentResults.remove(key);
+        }
+
+        Task<T> pending = (Task<T>) inFlight.get(key);
+        if (pending != null) {
+            coalescedReads++;
+            return pending;
+        }
+
+        issuedReads++;
+        Task<T> readTask = loader.get();
+        inFlight.put(key, readTask);
+        // Ghi nhận ngay trên luồng hoàn thành, không chờ luồng chính (các phương thức đều synchronized)
+        readTask.addOnCompleteListener(Runnable::run, task -> onReadComplete(key, task));
+        return readTask;
+    }
+
+    /**
+     * Bỏ kết quả gần đây và lần đọc đang chạy của một document (gọi sau khi ghi)
+     */
+    public void invalidate(DocumentReference reference) {
+        invalidate(reference.getPath());
+    }
+
+    public synchronized void invalidate(String key) {
+        recentResults.remove(key);
+        inFlight.remove(key);
+    }
+
+    /**
+     * Số lần đọc thực sự gửi đến Firestore
+     */
+    public synchronized int getIssuedReadCount() {
+        return issuedReads;
+    }
+
+    /**
+     * Số yêu cầu dùng chung một lần đọc đang chạy
+     */
+    public synchronized int getCoalescedReadCount() {
+        return coalescedReads;
+    }
+
+    /**
+     * Số yêu cầu dùng lại kết quả vừa đọc xong
+     */
+    public synchronized int getReusedReadCount() {
+        return reusedReads;
+    }
+
+    private synchronized void onReadComplete(String key, Task<?> task) {
+        // Lần đọc đã bị invalidate thì không lưu kết quả
+        if (inFlight.get(key) != task) {
+            return;
+        }
+        inFlight.remove(key);
+        if (task.isSuccessful()) {
+            long now = System.currentTimeMillis();
+            if (recentResults.size() >= PRUNE_THRESHOLD) {
+                pruneExpired(now);
+            }
+            recentResults.put(key, new RecentResult(task.getResult(), now));
+        }
+    }
+
+    private void pruneExpired(long now) {
+        Iterator<RecentResult> iterator = recentResults.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().completedAt > RESULT_REUSE_MS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class RecentResult {
+        final Object result;
+        final long completedAt;
+
+        RecentResult(Object result, long completedAt) {
+            this.result = result;
+            this.completedAt = completedAt;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.grouptaskmanager.repository;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.Source;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Cách một phương thức đọc của repository lấy dữ liệu:
+ * - CACHE_ONLY: chỉ đọc cache cục bộ của Firestore, không dùng mạng
+ * - CACHE_THEN_SERVER: trả kết quả từ cache trước (nếu có), sau đó trả kết quả từ server
+ * - SERVER: chỉ đọc từ server
+ */
+public enum ReadPolicy {
+    CACHE_ONLY,
+    CACHE_THEN_SERVER,
+    SERVER;
+
+    private static final String TAG = "ReadPolicy";
+
+    /**
+     * Interface nhận kết quả đọc; với CACHE_THEN_SERVER có thể được gọi hai lần,
+     * lần đầu với fromCache = true
+     */
+    public interface OnReadListener<T> {
+        void onRead(T result, boolean fromCache);
+        void onError(Exception e);
+    }
+
+    /**
+     * Đọc một query theo policy; kết quả rỗng từ cache không được trả về ở bước cache
+     * của CACHE_THEN_SERVER
+     */
+    static void read(Query query, ReadPolicy policy, OnReadListener<QuerySnapshot> listener) {
+        read(query::get, snapshot -> !snapshot.isEmpty(), policy, listener);
+    }
+
+    private static <T> void read(Function<Source, Task<T>> getter, Predicate<T> hasData,
+                                 ReadPolicy policy, OnReadListener<T> listener) {
+        switch (policy) {
+            case CACHE_ONLY:
+                getter.apply(Source.CACHE)
+                        .addOnSuccessListener(result -> listener.onRead(result, true))
+                        .addOnFailureListener(listener::onError);
+                break;
+            case SERVER:
+                getter.apply(Source.SERVER)
+                        .addOnSuccessListener(result -> listener.onRead(result, false))
+                        .addOnFailureListener(listener::onError);
+                break;
+            case CACHE_THEN_SERVER:
+                getter.apply(Source.CACHE).addOnCompleteListener(cacheTask -> {
+                    // Cache chưa có dữ liệu thì coi như không có, chờ server
+                    boolean servedFromCache = cacheTask.isSuccessful() && hasData.test(cacheTask.getResult());
+                    if (servedFromCache) {
+                        listener.onRead(cacheTask.getResult(), true);
+                    }
+                    getter.apply(Source.SERVER)
+                            .addOnSuccessListener(result -> listener.onRead(result, false))
+                            .addOnFailureListener(e -> {
+                                if (servedFromCache) {
+                                    // Đã hiển thị dữ liệu từ cache, chỉ ghi log (ví dụ khi offline)
+                                    Log.w(TAG, "Server read failed, keeping cached result", e);
+                                } else {
+                                    listener.onError(e);
+                                }
+                            });
+                });
+                break;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.grouptaskmanager.repository;
+
+import com.example.grouptaskmanager.model.Task;
+import com.example.grouptaskmanager.model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Chỉ mục nhiệm vụ trong bộ nhớ theo nhiều chiều: trạng thái, độ ưu tiên, người được giao,
+ * người tạo, nhóm và hạn chót. Mỗi chiều giữ tập khóa nhiệm vụ ("groupId/taskId") và được
+ * cập nhật từng phần khi thêm, sửa hoặc xóa, nên một tổ hợp bộ lọc chỉ là phép giao các tập.
+ * Hạn chót của nhiệm vụ chưa hoàn thành được giữ theo thứ tự để lấy nhóm quá hạn tại mọi thời điểm.
+ * Tiêu đề, mô tả, tên người được giao và độ ưu tiên (kèm nhãn hiển thị) được đánh chỉ mục
+ * trong TaskSearchIndex để tìm kiếm cũng là phép giao tập.
+ * Các phương thức được đồng bộ trên chính chỉ mục; các tập khóa trả về là view của chỉ mục,
+ * nên khi lọc trên luồng nền hãy đọc và giao chúng trong synchronized (index).
+ */
+public class TaskIndex {
+
+    /**
+     * Mới tạo trước; nhiệm vụ chưa có createdAt (đang chờ server timestamp) xếp lên đầu
+     */
+    public static final Comparator<Task> NEWEST_FIRST = (first, second) -> {
+        if (first.getCreatedAt() == null) return second.getCreatedAt() == null ? 0 : -1;
+        if (second.getCreatedAt() == null) return 1;
+        return second.getCreatedAt().compareTo(first.getCreatedAt());
+    };
+
+    private final Map<String, Task> tasks = new HashMap<>();
+    private final Map<String, Set<String>> byStatus = new HashMap<>();
+    private final Map<String, Set<String>> byPriority = new HashMap<>();
+    private final Map<String, Set<String>> byAssignee = new HashMap<>();
+    private final Map<String, Set<String>> byCreator = new HashMap<>();
+    private final Map<String, Set<String>> byGroup = new HashMap<>();
+    // Hạn chót (millis) -> khóa của các nhiệm vụ chưa hoàn thành
+    private final TreeMap<Long, Set<String>> openByDeadline = new TreeMap<>();
+    private final TaskSearchIndex searchIndex = new TaskSearchIndex();
+    // Giữ lại qua clear() vì không phụ thuộc vào danh sách nhiệm vụ
+    private final Map<String, String> assigneeNames = new HashMap<>();
+    private final Map<String, String> priorityLabels = new HashMap<>();
+
+    public static String keyOf(Task task) {
+        return task.getGroupId() + "/" + task.getId();
+    }
+
+    /**
+     * Thêm hoặc cập nhật một nhiệm vụ
+     */
+    public synchronized void put(Task task) {
+        String key = keyOf(task);
+        Task old = tasks.put(key, task);
+        if (old != null) {
+            // Chỉ mục tìm kiếm được cập nhật theo phần khác biệt trong indexText
+            removeFacets(key, old);
+        }
+        add(byStatus, task.getStatus(), key);
+        add(byPriority, task.getPriority(), key);
+        add(byAssignee, task.getAssignedTo(), key);
+        add(byCreator, task.getCreatedBy(), key);
+        add(byGroup, task.getGroupId(), key);
+        Long deadline = openDeadline(task);
+        if (deadline != null) {
+            add(openByDeadline, deadline, key);
+        }
+        indexText(key, task);
+    }
+
+    public synchronized void remove(String key) {
+        Task old = tasks.remove(key);
+        if (old == null) {
+            return;
+        }
+        removeFacets(key, old);
+        searchIndex.remove(key);
+    }
+
+    public synchronized void clear() {
+        tasks.clear();
+        byStatus.clear();
+        byPriority.clear();
+        byAssignee.clear();
+        byCreator.clear();
+        byGroup.clear();
+        openByDeadline.clear();
+        searchIndex.clear();
+    }
+
+    /**
+     * Tên người được giao dùng cho tìm kiếm (tên, hoặc email nếu chưa có tên); chỉ đánh lại
+     * chỉ mục các nhiệm vụ của người có tên thay đổi
+     */
+    public synchronized void setAssigneeNames(Map<String, User> users) {
+        for (Map.Entry<String, User> entry : users.entrySet()) {
+            User user = entry.getValue();
+            String name = user == null ? null : user.getName() != null ? user.getName() : user.getEmail();
+            String userId = entry.getKey();
+            if (Objects.equals(assigneeNames.get(userId), name)) {
+                continue;
+            }
+            assigneeNames.put(userId, name);
+            for (String key : getKeysByAssignee(userId)) {
+                indexText(key, tasks.get(key));
+            }
+        }
+    }
+
+    /**
+     * Nhãn hiển thị (theo ngôn ngữ) của các độ ưu tiên, ví dụ "high" -> "Cao"
+     */
+    public synchronized void setPriorityLabels(Map<String, String> labels) {
+        if (priorityLabels.equals(labels)) {
+            return;
+        }
+        priorityLabels.clear();
+        priorityLabels.putAll(labels);
+        for (Map.Entry<String, Task> entry : tasks.entrySet()) {
+            indexText(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public synchronized Task get(String key) {
+        return tasks.get(key);
+    }
+
+    public synchronized int size() {
+        return tasks.size();
+    }
+
+    public synchronized Set<String> getAllKeys() {
+        return Collections.unmodifiableSet(tasks.keySet());
+    }
+
+    public synchronized Set<String> getKeysByStatus(String status) {
+        return view(byStatus, status);
+    }
+
+    public synchronized Set<String> getKeysByPriority(String priority) {
+        return view(byPriority, priority);
+    }
+
+    public synchronized Set<String> getKeysByAssignee(String userId) {
+        return view(byAssignee, userId);
+    }
+
+    public synchronized Set<String> getKeysByCreator(String userId) {
+        return view(byCreator, userId);
+    }
+
+    public synchronized Set<String> getKeysByGroup(String groupId) {
+        return view(byGroup, groupId);
+    }
+
+    /**
+     * Nhiệm vụ chưa hoàn thành có hạn chót trước thời điểm now
+     */
+    public synchronized Set<String> getOverdueKeys(long now) {
+        Set<String> result = new HashSet<>();
+        for (Set<String> keys : openByDeadline.headMap(now, false).values()) {
+            result.addAll(keys);
+        }
+        return result;
+    }
+
+    /**
+     * Tập khóa cho từng từ của truy vấn (không phân biệt dấu); thêm vào danh sách
+     * truyền cho intersect. Truy vấn rỗng không thêm tập nào
+     */
+    public synchronized List<Set<String>> matchQuery(String query) {
+        return searchIndex.match(query);
+    }
+
+    public synchronized int countByStatus(String status) {
+        return getKeysByStatus(status).size();
+    }
+
+    /**
+     * Nhiệm vụ được giao cho hoặc do người dùng tạo
+     */
+    public synchronized Set<String> getKeysByOwner(String userId) {
+        Set<String> result = new HashSet<>(getKeysByAssignee(userId));
+        result.addAll(getKeysByCreator(userId));
+        return result;
+    }
+
+    /**
+     * Giao các tập khóa; duyệt tập nhỏ nhất và kiểm tra trong các tập còn lại.
+     * Không có tập nào thì trả về toàn bộ khóa
+     */
+    public synchronized Set<String> intersect(List<Set<String>> keySets) {
+        if (keySets.isEmpty()) {
+            return new HashSet<>(tasks.keySet());
+        }
+        Set<String> smallest = keySets.get(0);
+        for (Set<String> keys : keySets) {
+            if (keys.size() < smallest.size()) {
+                smallest = keys;
+            }
+        }
+        Set<String> result = new HashSet<>();
+        outer:
+        for (String key : smallest) {
+            for (Set<String> keys : keySets) {
+                if (keys != smallest && !keys.contains(key)) {
+                    continue outer;
+                }
+            }
+            result.add(key);
+        }
+        return result;
+    }
+
+    /**
+     * Lấy nhiệm vụ theo các khóa, mới tạo trước
+     */
+    public synchronized List<Task> getTasks(Collection<String> keys) {
+        List<Task> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Task task = tasks.get(key);
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        Collections.sort(result, NEWEST_FIRST);
+        return result;
+    }
+
+    private void removeFacets(String key, Task old) {
+        removeFrom(byStatus, old.getStatus(), key);
+        removeFrom(byPriority, old.getPriority(), key);
+        removeFrom(byAssignee, old.getAssignedTo(), key);
+        removeFrom(byCreator, old.getCreatedBy(), key);
+        removeFrom(byGroup, old.getGroupId(), key);
+        Long deadline = openDeadline(old);
+        if (deadline != null) {
+            removeFrom(openByDeadline, deadline, key);
+        }
+    }
+
+    private void indexText(String key, Task task) {
+        String priority = task.getPriority();
+        searchIndex.put(key, task.getTitle(), task.getDescription(),
+                task.getAssignedTo() != null ? assigneeNames.get(task.getAssignedTo()) : null,
+                priority, priority != null ? priorityLabels.get(priority.toLowerCase(Locale.ROOT)) : null);
+    }
+
+    private static Long openDeadline(Task task) {
+        if (Task.STATUS_DONE.equals(task.getStatus()) || task.getDeadline() == null) {
+            return null;
+        }
+        return task.getDeadline().toDate().getTime();
+    }
+
+    private static <K> void add(Map<K, Set<String>> index, K value, String key) {
+        if (value == null) {
+            return;
+        }
+        Set<String> keys = index.get(value);
+        if (keys == null) {
+            keys = new HashSet<>();
+            index.put(value, keys);
+        }
+        keys.add(key);
+    }
+
+    private static <K> void removeFrom(Map<K, Set<String>> index, K value, String key) {
+        if (value == null) {
+            return;
+        }
+        Set<String> keys = index.get(value);
+        if (keys != null) {
+            keys.remove(key);
+            if (keys.isEmpty()) {
+                index.remove(value);
+            }
+        }
+    }
+
+    private static Set<String> view(Map<String, Set<String>> index, String value) {
+        Set<String> keys = value != null ? index.get(value) : null;
+        return keys != null ? Collections.unmodifiableSet(keys) : Collections.emptySet();
+    }
+}
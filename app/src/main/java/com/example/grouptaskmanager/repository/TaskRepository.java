@@ -1,20 +1,31 @@
 package com.example.grouptaskmanager.repository;
 
+import android.util.Log;
+
 import com.example.grouptaskmanager.model.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.EventListener;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class TaskRepository {
 
+    private static final String TAG = "TaskRepository";
     private static final String COLLECTION_GROUPS = "groups";
     private static final String COLLECTION_TASKS = "tasks";
     private static final String FIELD_CREATED_AT = "createdAt";
@@ -22,13 +33,21 @@ public class TaskRepository {
     private static final String FIELD_STATUS = "status";
     private static final String FIELD_DEADLINE = "deadline";
     private static final String FIELD_ASSIGNED_TO = "assignedTo";
+    private static final String FIELD_GROUP_ID = "groupId";
+    // Firestore cho phép tối đa 30 giá trị trong một truy vấn whereIn
+    private static final int WHERE_IN_LIMIT = 30;
+    private static final int BATCH_WRITE_LIMIT = 500;
 
     private final FirebaseFirestore db;
     private final FirebaseAuth auth;
+    private final LocalStore localStore;
+    private final ReadCoalescer readCoalescer;
 
     public TaskRepository() {
         db = FirebaseFirestore.getInstance();
         auth = FirebaseAuth.getInstance();
+        localStore = LocalStore.getInstance();
+        readCoalescer = ReadCoalescer.getInstance();
     }
 
     /**
@@ -44,6 +63,7 @@ public class TaskRepository {
 
         // Tạo dữ liệu cho nhiệm vụ mới
         Map<String, Object> taskData = new HashMap<>();
+        taskData.put("groupId", groupId);
         taskData.put("title", title);
         taskData.put("description", description);
         taskData.put("createdBy", currentUser.getUid());
@@ -56,15 +76,16 @@ public class TaskRepository {
         taskData.put("commentsCount", 0);
 
         // Thêm nhiệm vụ vào Firestore
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .collection(COLLECTION_TASKS)
-                .add(taskData)
+        return invalidateTaskReads(groupId, null, GroupDeleter.ensureNotDeleting(groupId)
+                .onSuccessTask(result -> db.collection(COLLECTION_GROUPS)
+                        .document(groupId)
+                        .collection(COLLECTION_TASKS)
+                        .add(taskData))
                 .addOnSuccessListener(documentReference -> {
                     // Cập nhật ID của nhiệm vụ
                     String taskId = documentReference.getId();
                     documentReference.update("id", taskId);
-                });
+                }));
     }
 
     /**
@@ -78,6 +99,7 @@ public class TaskRepository {
 
         // Tạo dữ liệu cho nhiệm vụ mới
         Map<String, Object> taskData = new HashMap<>();
+        taskData.put("groupId", groupId);
         taskData.put("title", task.getTitle());
         taskData.put("description", task.getDescription());
         taskData.put("createdBy", currentUser.getUid());
@@ -90,15 +112,16 @@ public class TaskRepository {
         taskData.put("commentsCount", 0);
 
         // Thêm nhiệm vụ vào Firestore
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .collection(COLLECTION_TASKS)
-                .add(taskData)
+        return invalidateTaskReads(groupId, null, GroupDeleter.ensureNotDeleting(groupId)
+                .onSuccessTask(result -> db.collection(COLLECTION_GROUPS)
+                        .document(groupId)
+                        .collection(COLLECTION_TASKS)
+                        .add(taskData))
                 .addOnSuccessListener(documentReference -> {
                     // Cập nhật ID của nhiệm vụ
                     String taskId = documentReference.getId();
                     documentReference.update("id", taskId);
-                });
+                }));
     }
 
     /**
@@ -115,58 +138,189 @@ public class TaskRepository {
         updates.put("deadline", deadline);
         updates.put(FIELD_UPDATED_AT, FieldValue.serverTimestamp());
 
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .collection(COLLECTION_TASKS)
-                .document(taskId)
-                .update(updates);
+        DocumentReference taskRef = getTaskRef(groupId, taskId);
+        return invalidateTaskReads(groupId, taskRef, taskRef.update(updates));
     }
 
     /**
      * Cập nhật trạng thái nhiệm vụ
      */
     public com.google.android.gms.tasks.Task<Void> updateTaskStatus(String groupId, String taskId, String status) {
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .collection(COLLECTION_TASKS)
-                .document(taskId)
-                .update(
+        DocumentReference taskRef = getTaskRef(groupId, taskId);
+        return invalidateTaskReads(groupId, taskRef, taskRef.update(
                         FIELD_STATUS, status,
                         FIELD_UPDATED_AT, FieldValue.serverTimestamp()
-                );
+                ));
     }
 
     /**
      * Xóa nhiệm vụ
      */
     public com.google.android.gms.tasks.Task<Void> deleteTask(String groupId, String taskId) {
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .collection(COLLECTION_TASKS)
-                .document(taskId)
-                .delete();
+        DocumentReference taskRef = getTaskRef(groupId, taskId);
+        return invalidateTaskReads(groupId, taskRef, taskRef.delete());
     }
 
     /**
-     * Lấy chi tiết một nhiệm vụ
+     * Lấy chi tiết một nhiệm vụ; các lần đọc cùng lúc được gộp qua ReadCoalescer
      */
     public com.google.android.gms.tasks.Task<DocumentSnapshot> getTaskDetails(String groupId, String taskId) {
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .collection(COLLECTION_TASKS)
-                .document(taskId)
-                .get();
+        return readCoalescer.get(getTaskRef(groupId, taskId));
+    }
+
+    /**
+     * Lắng nghe realtime một nhiệm vụ
+     */
+    public ListenerRegistration addTaskListener(String groupId, String taskId, EventListener<DocumentSnapshot> listener) {
+        return getTaskRef(groupId, taskId).addSnapshotListener(listener);
     }
 
     /**
-     * Lấy danh sách nhiệm vụ của nhóm
+     * Lấy danh sách nhiệm vụ của nhóm; kết quả được ghi vào LocalStore
      */
     public com.google.android.gms.tasks.Task<QuerySnapshot> getGroupTasks(String groupId) {
+        return readCoalescer.get(getGroupTasksKey(groupId),
+                () -> getGroupTasksQuery(groupId)
+                        .get()
+                        .addOnSuccessListener(snapshot -> saveGroupTasks(groupId, snapshot)));
+    }
+
+    /**
+     * Lấy danh sách nhiệm vụ của nhóm theo ReadPolicy; kết quả từ server được ghi vào LocalStore
+     */
+    public void getGroupTasks(String groupId, ReadPolicy policy, ReadPolicy.OnReadListener<QuerySnapshot> listener) {
+        ReadPolicy.read(getGroupTasksQuery(groupId), policy, new ReadPolicy.OnReadListener<QuerySnapshot>() {
+            @Override
+            public void onRead(QuerySnapshot snapshot, boolean fromCache) {
+                if (!fromCache) {
+                    saveGroupTasks(groupId, snapshot);
+                }
+                listener.onRead(snapshot, fromCache);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                listener.onError(e);
+            }
+        });
+    }
+
+    /**
+     * Khóa ReadCoalescer của query danh sách nhiệm vụ của nhóm
+     */
+    private static String getGroupTasksKey(String groupId) {
+        return COLLECTION_GROUPS + "/" + groupId + "/" + COLLECTION_TASKS + "?orderBy=" + FIELD_CREATED_AT;
+    }
+
+    /**
+     * Bỏ kết quả đọc gần đây của nhiệm vụ (nếu có taskRef) và của danh sách nhiệm vụ của nhóm,
+     * ngay khi ghi và lần nữa khi lần ghi hoàn tất, để lần đọc chen giữa không được dùng lại
+     */
+    private <T> com.google.android.gms.tasks.Task<T> invalidateTaskReads(String groupId, DocumentReference taskRef,
+                                                                     com.google.android.gms.tasks.Task<T> write) {
+        invalidateTaskReads(groupId, taskRef);
+        write.addOnCompleteListener(task -> invalidateTaskReads(groupId, taskRef));
+        return write;
+    }
+
+    private void invalidateTaskReads(String groupId, DocumentReference taskRef) {
+        if (taskRef != null) {
+            readCoalescer.invalidate(taskRef);
+        }
+        readCoalescer.invalidate(getGroupTasksKey(groupId));
+    }
+
+    private DocumentReference getTaskRef(String groupId, String taskId) {
         return db.collection(COLLECTION_GROUPS)
                 .document(groupId)
                 .collection(COLLECTION_TASKS)
-                .orderBy(FIELD_CREATED_AT, Query.Direction.DESCENDING)
-                .get();
+                .document(taskId);
+    }
+
+    private Query getGroupTasksQuery(String groupId) {
+        return db.collection(COLLECTION_GROUPS)
+                .document(groupId)
+                .collection(COLLECTION_TASKS)
+                .orderBy(FIELD_CREATED_AT, Query.Direction.DESCENDING);
+    }
+
+    private void saveGroupTasks(String groupId, QuerySnapshot snapshot) {
+        List<Task> tasks = new ArrayList<>();
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            Task task = document.toObject(Task.class);
+            if (task != null) {
+                task.setId(document.getId());
+                task.setGroupId(groupId);
+                tasks.add(task);
+            }
+        }
+        localStore.replaceTasksForGroups(Collections.singletonList(groupId), tasks);
+    }
+
+    /**
+     * Lắng nghe realtime nhiệm vụ của tối đa WHERE_IN_LIMIT nhóm bằng collectionGroup("tasks").
+     * Cần chỉ mục một trường phạm vi COLLECTION_GROUP cho tasks.groupId (firestore.indexes.json)
+     */
+    public ListenerRegistration addGroupsTasksListener(List<String> groupIds, EventListener<QuerySnapshot> listener) {
+        if (groupIds.size() > WHERE_IN_LIMIT) {
+            throw new IllegalArgumentException("Tối đa " + WHERE_IN_LIMIT + " nhóm cho mỗi listener");
+        }
+        return db.collectionGroup(COLLECTION_TASKS)
+                .whereIn(FIELD_GROUP_ID, groupIds)
+                .addSnapshotListener(listener);
+    }
+
+    public static int getMaxGroupsPerQuery() {
+        return WHERE_IN_LIMIT;
+    }
+
+    /**
+     * groupId của nhiệm vụ lấy từ đường dẫn groups/{groupId}/tasks/{taskId}
+     */
+    public static String getGroupIdFromPath(DocumentSnapshot document) {
+        DocumentReference groupRef = document.getReference().getParent().getParent();
+        return groupRef != null ? groupRef.getId() : null;
+    }
+
+    /**
+     * Bổ sung trường groupId cho các nhiệm vụ cũ được tạo trước khi trường này tồn tại,
+     * để truy vấn collectionGroup theo groupId tìm thấy chúng. Chỉ cần chạy một lần.
+     */
+    public com.google.android.gms.tasks.Task<Void> backfillTaskGroupIds(Collection<String> groupIds) {
+        if (groupIds == null || groupIds.isEmpty()) {
+            return Tasks.forResult(null);
+        }
+
+        List<com.google.android.gms.tasks.Task<Void>> groupTasks = new ArrayList<>();
+        for (String groupId : groupIds) {
+            groupTasks.add(db.collection(COLLECTION_GROUPS)
+                    .document(groupId)
+                    .collection(COLLECTION_TASKS)
+                    .get()
+                    .continueWithTask(task -> {
+                        List<com.google.android.gms.tasks.Task<Void>> commits = new ArrayList<>();
+                        WriteBatch batch = db.batch();
+                        int pending = 0;
+                        for (DocumentSnapshot document : task.getResult().getDocuments()) {
+                            if (groupId.equals(document.getString(FIELD_GROUP_ID))) {
+                                continue;
+                            }
+                            batch.update(document.getReference(), FIELD_GROUP_ID, groupId);
+                            pending++;
+                            if (pending == BATCH_WRITE_LIMIT) {
+                                commits.add(batch.commit());
+                                batch = db.batch();
+                                pending = 0;
+                            }
+                        }
+                        if (pending > 0) {
+                            commits.add(batch.commit());
+                        }
+                        Log.d(TAG, "Backfilled groupId for group " + groupId + " in " + commits.size() + " batch(es)");
+                        return Tasks.whenAll(commits);
+                    }));
+        }
+        return Tasks.whenAll(groupTasks);
     }
 
     /**
@@ -215,33 +369,27 @@ public class TaskRepository {
             return null;
         }
 
-        return db.collection(COLLECTION_GROUPS)
-                .document(groupId)
-                .collection(COLLECTION_TASKS)
-                .document(taskId)
-                .get()
-                .continueWith(task -> {
+        return getTaskDetails(groupId, taskId)
+                .continueWithTask(task -> {
                     if (task.isSuccessful() && task.getResult() != null) {
                         String createdBy = task.getResult().getString("createdBy");
                         
                         // Nếu là người tạo nhiệm vụ
                         if (createdBy != null && createdBy.equals(currentUser.getUid())) {
-                            return true;
+                            return Tasks.forResult(true);
                         }
                         
-                        // Kiểm tra xem có phải là người tạo nhóm không
-                        return db.collection(COLLECTION_GROUPS)
-                                .document(groupId)
-                                .get()
+                        // Kiểm tra xem có phải là người tạo nhóm không (dùng chung lần đọc nhóm với màn hình)
+                        return readCoalescer.get(db.collection(COLLECTION_GROUPS).document(groupId))
                                 .continueWith(groupTask -> {
                                     if (groupTask.isSuccessful() && groupTask.getResult() != null) {
                                         String groupCreator = groupTask.getResult().getString("createdBy");
                                         return groupCreator != null && groupCreator.equals(currentUser.getUid());
                                     }
                                     return false;
-                                }).getResult();
+                                });
                     }
-                    return false;
+                    return Tasks.forResult(false);
                 });
     }
 } 
\ No newline at end of file
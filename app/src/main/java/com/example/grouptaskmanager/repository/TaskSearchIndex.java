@@ -0,0 +1,229 @@
+package com.example.grouptaskmanager.repository;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Chỉ mục đảo để tìm kiếm văn bản trên nhiệm vụ.
+ * - Văn bản được chuẩn hóa: chữ thường, bỏ dấu tiếng Việt (NFD, bỏ dấu, đ -> d), tách thành từ
+ * - Mỗi từ giữ tập khóa nhiệm vụ chứa từ đó; mỗi trigram giữ tập các từ chứa nó
+ * - Từ truy vấn ngắn hơn 3 ký tự khớp theo tiền tố, từ dài hơn khớp ở bất kỳ vị trí nào trong từ
+ * Cập nhật từng phần khi một nhiệm vụ thay đổi: chỉ thêm/bớt các từ khác với lần trước.
+ */
+public class TaskSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    // Từ -> khóa nhiệm vụ; sắp xếp để tìm theo tiền tố
+    private final TreeMap<String, Set<String>> postings = new TreeMap<>();
+    // Trigram -> các từ đang có trong postings
+    private final Map<String, Set<String>> grams = new HashMap<>();
+    // Khóa nhiệm vụ -> các từ đã đánh chỉ mục
+    private final Map<String, Set<String>> tokensByKey = new HashMap<>();
+
+    /**
+     * Chuẩn hóa để so khớp không phân biệt hoa thường và dấu: "Hoàn Thành" -> "hoan thanh"
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            builder.append(c == 'đ' ? 'd' : c);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Tách văn bản đã chuẩn hóa thành các từ (chuỗi chữ cái hoặc chữ số liên tiếp)
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        String folded = fold(text);
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Đánh chỉ mục (hoặc đánh lại) nhiệm vụ với các trường văn bản của nó
+     */
+    public void put(String key, String... fields) {
+        Set<String> newTokens = new HashSet<>();
+        for (String field : fields) {
+            newTokens.addAll(tokenize(field));
+        }
+        Set<String> oldTokens = tokensByKey.get(key);
+        if (oldTokens == null) {
+            oldTokens = Collections.emptySet();
+        }
+
+        for (String token : oldTokens) {
+            if (!newTokens.contains(token)) {
+                removePosting(token, key);
+            }
+        }
+        for (String token : newTokens) {
+            if (!oldTokens.contains(token)) {
+                addPosting(token, key);
+            }
+        }
+
+        if (newTokens.isEmpty()) {
+            tokensByKey.remove(key);
+        } else {
+            tokensByKey.put(key, newTokens);
+        }
+    }
+
+    public void remove(String key) {
+        Set<String> oldTokens = tokensByKey.remove(key);
+        if (oldTokens == null) {
+            return;
+        }
+        for (String token : oldTokens) {
+            removePosting(token, key);
+        }
+    }
+
+    public void clear() {
+        postings.clear();
+        grams.clear();
+        tokensByKey.clear();
+    }
+
+    /**
+     * Mỗi từ trong truy vấn cho một tập khóa nhiệm vụ khớp với từ đó; kết quả tìm kiếm
+     * là phép giao các tập này. Truy vấn không có từ nào thì trả về danh sách rỗng
+     */
+    public List<Set<String>> match(String query) {
+        List<Set<String>> keySets = new ArrayList<>();
+        for (String queryToken : new HashSet<>(tokenize(query))) {
+            keySets.add(keysForToken(queryToken));
+        }
+        return keySets;
+    }
+
+    private Set<String> keysForToken(String queryToken) {
+        List<Set<String>> matched = new ArrayList<>();
+        if (queryToken.length() < GRAM_LENGTH) {
+            NavigableMap<String, Set<String>> prefixed =
+                    postings.subMap(queryToken, true, queryToken + Character.MAX_VALUE, false);
+            matched.addAll(prefixed.values());
+        } else {
+            for (String token : tokensContaining(queryToken)) {
+                matched.add(postings.get(token));
+            }
+        }
+
+        if (matched.isEmpty()) {
+            return Collections.emptySet();
+        }
+        if (matched.size() == 1) {
+            return Collections.unmodifiableSet(matched.get(0));
+        }
+        Set<String> keys = new HashSet<>();
+        for (Set<String> posting : matched) {
+            keys.addAll(posting);
+        }
+        return keys;
+    }
+
+    /**
+     * Các từ đã đánh chỉ mục có chứa queryToken: giao các tập từ theo trigram của
+     * queryToken (bắt đầu từ tập nhỏ nhất), sau đó kiểm tra lại bằng contains
+     */
+    private List<String> tokensContaining(String queryToken) {
+        List<Set<String>> candidates = new ArrayList<>();
+        for (String gram : gramsOf(queryToken)) {
+            Set<String> tokens = grams.get(gram);
+            if (tokens == null) {
+                return Collections.emptyList();
+            }
+            candidates.add(tokens);
+        }
+        Set<String> smallest = candidates.get(0);
+        for (Set<String> tokens : candidates) {
+            if (tokens.size() < smallest.size()) {
+                smallest = tokens;
+            }
+        }
+        List<String> result = new ArrayList<>();
+        for (String token : smallest) {
+            if (token.contains(queryToken)) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
+    private void addPosting(String token, String key) {
+        Set<String> keys = postings.get(token);
+        if (keys == null) {
+            keys = new HashSet<>();
+            postings.put(token, keys);
+            for (String gram : gramsOf(token)) {
+                Set<String> tokens = grams.get(gram);
+                if (tokens == null) {
+                    tokens = new HashSet<>();
+                    grams.put(gram, tokens);
+                }
+                tokens.add(token);
+            }
+        }
+        keys.add(key);
+    }
+
+    private void removePosting(String token, String key) {
+        Set<String> keys = postings.get(token);
+        if (keys == null) {
+            return;
+        }
+        keys.remove(key);
+        if (!keys.isEmpty()) {
+            return;
+        }
+        // Không còn nhiệm vụ nào chứa từ này: bỏ khỏi từ điển và khỏi chỉ mục trigram
+        postings.remove(token);
+        for (String gram : gramsOf(token)) {
+            Set<String> tokens = grams.get(gram);
+            if (tokens != null) {
+                tokens.remove(token);
+                if (tokens.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<String> gramsOf(String token) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= token.length(); i++) {
+            result.add(token.substring(i, i + GRAM_LENGTH));
+        }
+        return result;
+    }
+}
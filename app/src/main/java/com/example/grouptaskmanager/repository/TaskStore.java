@@ -0,0 +1,458 @@
+package com.example.grouptaskmanager.repository;
+
+import android.util.Log;
+
+import com.example.grouptaskmanager.model.Group;
+import com.example.grouptaskmanager.model.Task;
+import com.example.grouptaskmanager.model.User;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Kho nhiệm vụ dùng chung cho toàn ứng dụng, lưu trong TaskIndex.
+ * Giữ snapshot listener trên các nhóm của người dùng và nhiệm vụ của các nhóm đó,
+ * áp dụng từng DocumentChange vào mô hình trong bộ nhớ. Các màn hình đăng ký
+ * OnTasksChangedListener và đọc các view (tất cả, theo nhóm, theo trạng thái, quá hạn)
+ * mà không cần tải lại từ mạng khi chuyển tab.
+ * Khi bắt đầu, nhiệm vụ được đọc ngay từ LocalStore để hiển thị trước; snapshot đầu tiên
+ * của mỗi phần nhóm thay thế dữ liệu cục bộ, các thay đổi sau đó được ghi lại vào LocalStore.
+ */
+public class TaskStore {
+
+    private static final String TAG = "TaskStore";
+
+    private static TaskStore instance;
+
+    private final GroupRepository groupRepository;
+    private final TaskRepository taskRepository;
+    private final LocalStore localStore;
+    private final GroupCache groupCache;
+
+    // Khóa: groupId + "/" + taskId
+    private final TaskIndex index = new TaskIndex();
+    private final List<OnTasksChangedListener> listeners = new ArrayList<>();
+    // Các phần nhóm (tối đa WHERE_IN_LIMIT nhóm) theo id phần, mỗi phần một listener
+    private final Map<Integer, List<String>> chunks = new HashMap<>();
+    private final Map<String, Integer> chunkOfGroup = new HashMap<>();
+    private final Map<Integer, ListenerRegistration> chunkListeners = new HashMap<>();
+    private final Set<Integer> pendingChunks = new HashSet<>();
+    private int nextChunkId = 0;
+    // Các nhóm đã nhận snapshot đầy đủ từ Firestore, dữ liệu cục bộ không còn dùng
+    private final Set<String> syncedGroupIds = new HashSet<>();
+    private Set<String> groupIds = new HashSet<>();
+
+    private ListenerRegistration groupsListener;
+    private String userId;
+    private boolean groupsLoaded = false;
+    private boolean localSnapshotLoaded = false;
+    private List<Task> sortedTasksCache;
+
+    private TaskStore() {
+        groupRepository = new GroupRepository();
+        taskRepository = new TaskRepository();
+        localStore = LocalStore.getInstance();
+        groupCache = GroupCache.getInstance();
+    }
+
+    public static synchronized TaskStore getInstance() {
+        if (instance == null) {
+            instance = new TaskStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Interface cho các màn hình theo dõi thay đổi nhiệm vụ
+     */
+    public interface OnTasksChangedListener {
+        void onTasksChanged(TaskStore store);
+        void onError(Exception e);
+    }
+
+    /**
+     * Đăng ký listener; kho tự bắt đầu lắng nghe nếu chưa chạy.
+     * Nếu dữ liệu đã sẵn sàng, listener được gọi ngay.
+     */
+    public void addListener(OnTasksChangedListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+        ensureStarted();
+        if (isLoaded()) {
+            listener.onTasksChanged(this);
+        }
+    }
+
+    public void removeListener(OnTasksChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Đã có dữ liệu để hiển thị hay chưa: bản sao cục bộ, hoặc snapshot đầu tiên
+     * của nhóm và của tất cả nhiệm vụ
+     */
+    public boolean isLoaded() {
+        return localSnapshotLoaded || isSynced();
+    }
+
+    /**
+     * Đã nhận snapshot đầu tiên của nhóm và của tất cả nhiệm vụ hay chưa
+     */
+    public boolean isSynced() {
+        return groupsLoaded && pendingChunks.isEmpty();
+    }
+
+    /**
+     * Tất cả nhiệm vụ, mới tạo trước
+     */
+    public List<Task> getAllTasks() {
+        if (sortedTasksCache == null) {
+            sortedTasksCache = Collections.unmodifiableList(index.getTasks(index.getAllKeys()));
+        }
+        return sortedTasksCache;
+    }
+
+    /**
+     * Lấy một nhiệm vụ đã có trong kho (bản sao để màn hình có thể sửa),
+     * trả về null nếu chưa có
+     */
+    public Task getTask(String groupId, String taskId) {
+        Task task = index.get(groupId + "/" + taskId);
+        if (task == null) {
+            return null;
+        }
+        Task copy = new Task(task.getId(), task.getTitle(), task.getDescription(), task.getCreatedBy(),
+                task.getAssignedTo(), task.getStatus(), task.getPriority(), task.getDeadline(),
+                task.getCreatedAt(), task.getUpdatedAt(), task.getDueReminder(),
+                task.getTags() != null ? new ArrayList<>(task.getTags()) : new ArrayList<>(),
+                task.getCommentsCount(),
+                task.getAttachments() != null ? new ArrayList<>(task.getAttachments()) : new ArrayList<>());
+        copy.setGroupId(task.getGroupId());
+        return copy;
+    }
+
+    public List<Task> getTasksByGroup(String groupId) {
+        return index.getTasks(index.getKeysByGroup(groupId));
+    }
+
+    public List<Task> getTasksByStatus(String status) {
+        return index.getTasks(index.getKeysByStatus(status));
+    }
+
+    /**
+     * Nhiệm vụ chưa hoàn thành và đã qua hạn
+     */
+    public List<Task> getOverdueTasks() {
+        return index.getTasks(index.getOverdueKeys(System.currentTimeMillis()));
+    }
+
+    /**
+     * Chỉ mục nhiệm vụ để các màn hình lọc và đếm bằng phép giao tập; chỉ đọc
+     */
+    public TaskIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Cập nhật tên người được giao và nhãn độ ưu tiên dùng cho tìm kiếm
+     */
+    public void setAssigneeNames(Map<String, User> users) {
+        index.setAssigneeNames(users);
+    }
+
+    public void setPriorityLabels(Map<String, String> labels) {
+        index.setPriorityLabels(labels);
+    }
+
+    /**
+     * Dừng toàn bộ listener và xóa dữ liệu (ví dụ khi đăng xuất)
+     */
+    public void stop() {
+        if (groupsListener != null) {
+            groupsListener.remove();
+            groupsListener = null;
+        }
+        for (ListenerRegistration registration : chunkListeners.values()) {
+            registration.remove();
+        }
+        chunkListeners.clear();
+        pendingChunks.clear();
+        chunks.clear();
+        chunkOfGroup.clear();
+        syncedGroupIds.clear();
+        groupIds = new HashSet<>();
+        index.clear();
+        sortedTasksCache = null;
+        groupsLoaded = false;
+        localSnapshotLoaded = false;
+        userId = null;
+    }
+
+    private void ensureStarted() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser == null) {
+            return;
+        }
+        if (groupsListener != null && currentUser.getUid().equals(userId)) {
+            return;
+        }
+
+        // Người dùng khác đăng nhập: bắt đầu lại từ đầu
+        stop();
+        userId = currentUser.getUid();
+        groupsListener = groupRepository.addUserGroupsListener((snapshot, e) -> {
+            if (e != null) {
+                Log.e(TAG, "Error listening for groups", e);
+                notifyError(e);
+                return;
+            }
+            if (snapshot != null) {
+                onGroupsChanged(snapshot);
+            }
+        });
+
+        String startedUserId = userId;
+        localStore.getGroupsForUser(startedUserId)
+                .addOnSuccessListener(groupCache::putAllIfAbsent);
+        localStore.getTasksForUser(startedUserId)
+                .addOnSuccessListener(localTasks -> onLocalTasksLoaded(startedUserId, localTasks))
+                .addOnFailureListener(e -> Log.e(TAG, "Error reading local tasks", e));
+    }
+
+    /**
+     * Hiển thị trước nhiệm vụ từ bản sao cục bộ; bỏ qua nhóm đã có dữ liệu từ Firestore
+     */
+    private void onLocalTasksLoaded(String startedUserId, List<Task> localTasks) {
+        if (!startedUserId.equals(userId) || isSynced() || localTasks.isEmpty()) {
+            return;
+        }
+        for (Task task : localTasks) {
+            String groupId = task.getGroupId();
+            if (syncedGroupIds.contains(groupId) || (groupsLoaded && !groupIds.contains(groupId))) {
+                continue;
+            }
+            index.put(task);
+        }
+        sortedTasksCache = null;
+        localSnapshotLoaded = true;
+        Log.d(TAG, "Served " + localTasks.size() + " tasks from local store");
+        notifyChanged();
+    }
+
+    private void onGroupsChanged(QuerySnapshot snapshot) {
+        Set<String> newGroupIds = new HashSet<>();
+        List<Group> groups = GroupRepository.toGroups(snapshot);
+        for (Group group : groups) {
+            newGroupIds.add(group.getId());
+        }
+        // Giữ GroupCache đồng bộ với listener nhóm
+        for (String groupId : groupIds) {
+            if (!newGroupIds.contains(groupId)) {
+                groupCache.remove(groupId);
+            }
+        }
+        groupCache.putAll(groups);
+        groupsLoaded = true;
+        localStore.replaceGroupsForUser(userId, groups);
+
+        if (newGroupIds.equals(groupIds)) {
+            // Chỉ thông tin nhóm thay đổi, không ảnh hưởng đến nhiệm vụ
+            if (isLoaded()) {
+                notifyChanged();
+            }
+            return;
+        }
+
+        // Bỏ nhiệm vụ của các nhóm người dùng không còn tham gia
+        boolean removed = false;
+        for (String key : new ArrayList<>(index.getAllKeys())) {
+            String groupId = key.substring(0, key.indexOf('/'));
+            if (!newGroupIds.contains(groupId)) {
+                index.remove(key);
+                removed = true;
+            }
+        }
+        syncedGroupIds.retainAll(newGroupIds);
+        if (removed) {
+            sortedTasksCache = null;
+        }
+        groupIds = newGroupIds;
+        updateChunkListeners();
+
+        if (isLoaded()) {
+            notifyChanged();
+        }
+    }
+
+    /**
+     * Chia các nhóm thành từng phần theo giới hạn whereIn một cách ổn định: nhóm đã rời được bỏ
+     * khỏi phần của nó, nhóm mới được thêm vào phần còn chỗ. Chỉ những phần có thành viên
+     * thay đổi mới tạo lại listener
+     */
+    private void updateChunkListeners() {
+        int chunkSize = TaskRepository.getMaxGroupsPerQuery();
+        Set<Integer> changedChunks = new HashSet<>();
+
+        for (String groupId : new ArrayList<>(chunkOfGroup.keySet())) {
+            if (!groupIds.contains(groupId)) {
+                int chunkId = chunkOfGroup.remove(groupId);
+                chunks.get(chunkId).remove(groupId);
+                changedChunks.add(chunkId);
+            }
+        }
+        for (String groupId : new TreeSet<>(groupIds)) {
+            if (chunkOfGroup.containsKey(groupId)) {
+                continue;
+            }
+            Integer chunkId = findChunkWithRoom(changedChunks, chunkSize);
+            if (chunkId == null) {
+                chunkId = nextChunkId++;
+                chunks.put(chunkId, new ArrayList<>());
+            }
+            chunks.get(chunkId).add(groupId);
+            chunkOfGroup.put(groupId, chunkId);
+            changedChunks.add(chunkId);
+        }
+
+        for (int chunkId : changedChunks) {
+            ListenerRegistration registration = chunkListeners.remove(chunkId);
+            if (registration != null) {
+                registration.remove();
+            }
+            pendingChunks.remove(chunkId);
+            List<String> chunkGroupIds = chunks.get(chunkId);
+            if (chunkGroupIds.isEmpty()) {
+                chunks.remove(chunkId);
+                continue;
+            }
+            // Snapshot đầu tiên của listener mới đồng bộ lại toàn bộ các nhóm trong phần
+            syncedGroupIds.removeAll(chunkGroupIds);
+            listenToChunk(chunkId, new ArrayList<>(chunkGroupIds));
+        }
+    }
+
+    /**
+     * Phần còn chỗ cho một nhóm mới; ưu tiên phần đang được tạo lại listener
+     * để không phải tạo lại thêm phần khác. Trả về null nếu mọi phần đều đầy
+     */
+    private Integer findChunkWithRoom(Set<Integer> changedChunks, int chunkSize) {
+        Integer candidate = null;
+        for (Map.Entry<Integer, List<String>> entry : chunks.entrySet()) {
+            if (entry.getValue().size() >= chunkSize) {
+                continue;
+            }
+            if (changedChunks.contains(entry.getKey())) {
+                return entry.getKey();
+            }
+            if (candidate == null) {
+                candidate = entry.getKey();
+            }
+        }
+        return candidate;
+    }
+
+    private void listenToChunk(int chunkId, List<String> chunkGroupIds) {
+        pendingChunks.add(chunkId);
+        chunkListeners.put(chunkId, taskRepository.addGroupsTasksListener(chunkGroupIds, (snapshot, e) -> {
+            if (e != null) {
+                Log.e(TAG, "Error listening for tasks", e);
+                pendingChunks.remove(chunkId);
+                notifyError(e);
+                return;
+            }
+            if (snapshot != null) {
+                applyChanges(chunkId, chunkGroupIds, snapshot);
+            }
+        }));
+    }
+
+    private void applyChanges(int chunkId, List<String> chunkGroupIds, QuerySnapshot snapshot) {
+        if (!syncedGroupIds.containsAll(chunkGroupIds)) {
+            replaceChunk(chunkGroupIds, snapshot);
+        } else {
+            List<Task> upserts = new ArrayList<>();
+            List<String> removedKeys = new ArrayList<>();
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                DocumentSnapshot document = change.getDocument();
+                String key = TaskRepository.getGroupIdFromPath(document) + "/" + document.getId();
+
+                if (change.getType() == DocumentChange.Type.REMOVED) {
+                    index.remove(key);
+                    removedKeys.add(key);
+                    continue;
+                }
+
+                Task task = toTask(document);
+                if (task != null) {
+                    index.put(task);
+                    upserts.add(task);
+                }
+            }
+            localStore.applyTaskChanges(upserts, removedKeys);
+        }
+        sortedTasksCache = null;
+        pendingChunks.remove(chunkId);
+
+        if (isLoaded()) {
+            notifyChanged();
+        }
+    }
+
+    /**
+     * Snapshot đầu tiên của một phần nhóm: thay toàn bộ nhiệm vụ (kể cả dữ liệu cục bộ cũ)
+     * của các nhóm trong phần đó
+     */
+    private void replaceChunk(List<String> chunkGroupIds, QuerySnapshot snapshot) {
+        Set<String> chunkGroups = new HashSet<>(chunkGroupIds);
+        for (String key : new ArrayList<>(index.getAllKeys())) {
+            if (chunkGroups.contains(key.substring(0, key.indexOf('/')))) {
+                index.remove(key);
+            }
+        }
+
+        List<Task> chunkTasks = new ArrayList<>();
+        for (DocumentSnapshot document : snapshot.getDocuments()) {
+            Task task = toTask(document);
+            if (task != null) {
+                index.put(task);
+                chunkTasks.add(task);
+            }
+        }
+        syncedGroupIds.addAll(chunkGroups);
+        localStore.replaceTasksForGroups(chunkGroups, chunkTasks);
+    }
+
+    private static Task toTask(DocumentSnapshot document) {
+        Task task = document.toObject(Task.class);
+        if (task != null) {
+            task.setId(document.getId());
+            task.setGroupId(TaskRepository.getGroupIdFromPath(document));
+        }
+        return task;
+    }
+
+    private void notifyChanged() {
+        for (OnTasksChangedListener listener : new ArrayList<>(listeners)) {
+            listener.onTasksChanged(this);
+        }
+    }
+
+    private void notifyError(Exception e) {
+        for (OnTasksChangedListener listener : new ArrayList<>(listeners)) {
+            listener.onError(e);
+        }
+    }
+}
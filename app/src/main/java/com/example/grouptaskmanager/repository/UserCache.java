@@ -0,0 +1,155 @@
+package com.example.grouptaskmanager.repository;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+
+import com.example.grouptaskmanager.model.User;
+import com.google.android.gms.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache thông tin người dùng dùng chung cho toàn ứng dụng.
+ * - LRU giới hạn số lượng phần tử, mỗi phần tử hết hạn sau TTL
+ * - Ghi nhận các lần tải đang chạy để nhiều yêu cầu cùng lúc dùng chung một lần đọc
+ * - Hồ sơ do chính người dùng sửa được xóa khỏi cache ngay (UserRepository gọi invalidate)
+ */
+public class UserCache {
+
+    private static final String TAG = "UserCache";
+    private static final int DEFAULT_MAX_SIZE = 200;
+    private static final long DEFAULT_TTL_MS = 10 * 60 * 1000L; // 10 phút
+
+    private static UserCache instance;
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, Task<User>> inFlight = new HashMap<>();
+
+    private UserCache(int maxSize, long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        // accessOrder = true để LinkedHashMap hoạt động như LRU
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > UserCache.this.maxSize;
+            }
+        };
+    }
+
+    public static synchronized UserCache getInstance() {
+        if (instance == null) {
+            instance = new UserCache(DEFAULT_MAX_SIZE, DEFAULT_TTL_MS);
+        }
+        return instance;
+    }
+
+    /**
+     * Lấy user trong cache, trả về null nếu chưa có hoặc đã hết hạn
+     */
+    public synchronized User get(String userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry)) {
+            remove(userId);
+            return null;
+        }
+        return entry.user;
+    }
+
+    /**
+     * Lưu user vào cache
+     */
+    public synchronized void put(String userId, User user) {
+        if (userId == null || user == null) {
+            return;
+        }
+        entries.put(userId, new Entry(user, System.currentTimeMillis()));
+    }
+
+    /**
+     * Xóa một user khỏi cache (ví dụ sau khi cập nhật hồ sơ)
+     */
+    public synchronized void invalidate(String userId) {
+        remove(userId);
+    }
+
+    /**
+     * Lấy tác vụ tải đang chạy cho user (nếu có) để dùng chung kết quả
+     */
+    public synchronized Task<User> getInFlight(String userId) {
+        return inFlight.get(userId);
+    }
+
+    /**
+     * Ghi nhận một tác vụ tải user đang chạy; tự xóa khi tác vụ hoàn thành
+     */
+    public synchronized void markInFlight(String userId, Task<User> loadTask) {
+        inFlight.put(userId, loadTask);
+        loadTask.addOnCompleteListener(task -> clearInFlight(userId, loadTask));
+    }
+
+    private synchronized void clearInFlight(String userId, Task<User> loadTask) {
+        if (inFlight.get(userId) == loadTask) {
+            inFlight.remove(userId);
+        }
+    }
+
+    /**
+     * Giải phóng bộ nhớ theo mức độ từ onTrimMemory
+     */
+    public synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(maxSize / 2);
+        }
+        Log.d(TAG, "Trimmed user cache (level " + level + "), size: " + entries.size());
+    }
+
+    /**
+     * Xóa toàn bộ cache (ví dụ khi đăng xuất)
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private void trimToSize(int targetSize) {
+        // Duyệt theo thứ tự LRU: phần tử ít dùng nhất ở đầu
+        Iterator<String> iterator = entries.keySet().iterator();
+        List<String> removed = new ArrayList<>();
+        while (entries.size() - removed.size() > targetSize && iterator.hasNext()) {
+            removed.add(iterator.next());
+        }
+        for (String userId : removed) {
+            remove(userId);
+        }
+    }
+
+    private void remove(String userId) {
+        entries.remove(userId);
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.loadedAt > ttlMs;
+    }
+
+    private static class Entry {
+        final User user;
+        final long loadedAt;
+
+        Entry(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
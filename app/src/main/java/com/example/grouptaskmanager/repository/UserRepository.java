@@ -1,35 +1,52 @@
 package com.example.grouptaskmanager.repository;
 
+import android.util.Log;
+
 import com.example.grouptaskmanager.model.User;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.Query;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
 public class UserRepository {
 
+    private static final String TAG = "UserRepository";
     private static final String COLLECTION_USERS = "users";
     private static final String FIELD_NAME = "name";
     private static final String FIELD_EMAIL = "email";
     private static final String FIELD_PHOTO_URL = "photoURL";
     private static final String FIELD_GROUPS = "groups";
     private static final String FIELD_JOINED_AT = "joinedAt";
+    // Firestore cho phép tối đa 30 giá trị trong một truy vấn whereIn
+    private static final int WHERE_IN_LIMIT = 30;
 
     private final FirebaseFirestore db;
     private final FirebaseAuth auth;
+    private final UserCache userCache;
+    private final LocalStore localStore;
+    private final ReadCoalescer readCoalescer;
 
     public UserRepository() {
         db = FirebaseFirestore.getInstance();
         auth = FirebaseAuth.getInstance();
+        userCache = UserCache.getInstance();
+        localStore = LocalStore.getInstance();
+        readCoalescer = ReadCoalescer.getInstance();
     }
 
     /**
@@ -40,36 +57,178 @@ public class UserRepository {
         if (currentUser == null) {
             return null;
         }
-        return db.collection(COLLECTION_USERS).document(currentUser.getUid()).get();
+        return readCoalescer.get(db.collection(COLLECTION_USERS).document(currentUser.getUid()));
     }
 
     /**
      * Lấy thông tin người dùng theo ID
      */
     public Task<DocumentSnapshot> getUserById(String userId) {
-        return db.collection(COLLECTION_USERS).document(userId).get();
+        return readCoalescer.get(db.collection(COLLECTION_USERS).document(userId));
+    }
+
+    /**
+     * Lấy thông tin người dùng theo ID, ưu tiên cache dùng chung
+     */
+    public Task<User> getUser(String userId) {
+        return getUsersByIds(Collections.singletonList(userId))
+                .continueWith(task -> task.getResult().get(userId));
     }
 
     /**
-     * Lấy danh sách thông tin người dùng theo danh sách ID
+     * Lấy thông tin nhiều người dùng cùng lúc theo danh sách ID.
+     * User đã có trong UserCache được trả về ngay, user đang được tải ở nơi khác
+     * dùng chung tác vụ đó; phần còn lại được chia thành các nhóm tối đa WHERE_IN_LIMIT
+     * phần tử và tải bằng whereIn(documentId) song song, LocalStore chỉ dùng khi tải lỗi.
+     * Kết quả là map userId -> User; ID không tồn tại sẽ không có trong map.
      */
-    public Task<QuerySnapshot> getUsersByIds(List<String> userIds) {
+    public Task<Map<String, User>> getUsersByIds(Collection<String> userIds) {
+        Map<String, User> users = new LinkedHashMap<>();
         if (userIds == null || userIds.isEmpty()) {
-            return null;
+            return Tasks.forResult(users);
         }
-        
-        // Firestore không hỗ trợ truy vấn trực tiếp theo ID với whereIn
-        // Sử dụng trường UID đã được thiết lập trong document
-        return db.collection(COLLECTION_USERS)
-                .whereIn("id", userIds)
-                .limit(10) // Giới hạn kết quả
-                .get();
+
+        // Loại bỏ ID trùng lặp và ID rỗng, lấy sẵn những user đã có trong cache
+        List<Task<User>> pendingTasks = new ArrayList<>();
+        List<String> idsToFetch = new ArrayList<>();
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            if (userId == null || userId.isEmpty()) {
+                continue;
+            }
+            User cached = userCache.get(userId);
+            if (cached != null) {
+                users.put(userId, cached);
+                continue;
+            }
+            Task<User> inFlight = userCache.getInFlight(userId);
+            if (inFlight != null) {
+                pendingTasks.add(inFlight);
+            } else {
+                idsToFetch.add(userId);
+            }
+        }
+
+        if (!idsToFetch.isEmpty()) {
+            pendingTasks.addAll(loadUsers(idsToFetch));
+        }
+
+        if (pendingTasks.isEmpty()) {
+            return Tasks.forResult(users);
+        }
+
+        return Tasks.whenAllComplete(pendingTasks)
+                .continueWith(allTask -> {
+                    Exception firstError = null;
+                    for (Task<User> userTask : pendingTasks) {
+                        if (!userTask.isSuccessful()) {
+                            if (firstError == null) {
+                                firstError = userTask.getException();
+                            }
+                            continue;
+                        }
+                        User user = userTask.getResult();
+                        if (user != null) {
+                            users.put(user.getId(), user);
+                        }
+                    }
+
+                    // Chỉ báo lỗi khi không tải được user nào
+                    if (users.isEmpty() && firstError != null) {
+                        throw firstError;
+                    }
+                    return users;
+                });
+    }
+
+    /**
+     * Tải các user chưa có trong cache; mỗi user được đăng ký là đang tải trong UserCache
+     * để các yêu cầu khác dùng chung kết quả. Người gọi chỉ nhận kết quả một lần, nên
+     * bản trong LocalStore (có thể đã cũ) chỉ được trả về khi không tải được từ Firestore.
+     */
+    private List<Task<User>> loadUsers(List<String> userIds) {
+        Map<String, TaskCompletionSource<User>> sources = new HashMap<>();
+        List<Task<User>> userTasks = new ArrayList<>();
+        for (String userId : userIds) {
+            TaskCompletionSource<User> source = new TaskCompletionSource<>();
+            sources.put(userId, source);
+            userTasks.add(source.getTask());
+            userCache.markInFlight(userId, source.getTask());
+        }
+
+        for (int start = 0; start < userIds.size(); start += WHERE_IN_LIMIT) {
+            List<String> chunk = new ArrayList<>(
+                    userIds.subList(start, Math.min(start + WHERE_IN_LIMIT, userIds.size())));
+            fetchUserChunk(chunk, sources);
+        }
+        return userTasks;
+    }
+
+    /**
+     * Tải một nhóm user bằng whereIn(documentId), cập nhật UserCache và LocalStore.
+     * Tải lỗi thì trả về bản trong LocalStore (không đưa vào UserCache để lần sau vẫn tải lại).
+     */
+    private void fetchUserChunk(List<String> chunk, Map<String, TaskCompletionSource<User>> allSources) {
+        Map<String, TaskCompletionSource<User>> sources = new HashMap<>();
+        for (String userId : chunk) {
+            sources.put(userId, allSources.get(userId));
+        }
+
+        db.collection(COLLECTION_USERS)
+                .whereIn(FieldPath.documentId(), chunk)
+                .get()
+                .addOnCompleteListener(queryTask -> {
+                    if (!queryTask.isSuccessful() || queryTask.getResult() == null) {
+                        Exception error = queryTask.getException() != null ? queryTask.getException()
+                                : new IllegalStateException("Không tải được thông tin người dùng");
+                        Log.e(TAG, "Error loading user chunk", error);
+                        completeFromLocalStore(chunk, sources, error);
+                        return;
+                    }
+
+                    List<User> loadedUsers = new ArrayList<>();
+                    for (DocumentSnapshot document : queryTask.getResult().getDocuments()) {
+                        User user = document.toObject(User.class);
+                        TaskCompletionSource<User> source = sources.remove(document.getId());
+                        if (user != null) {
+                            user.setId(document.getId());
+                            userCache.put(document.getId(), user);
+                            loadedUsers.add(user);
+                        }
+                        if (source != null) {
+                            source.trySetResult(user);
+                        }
+                    }
+                    localStore.putUsers(loadedUsers);
+                    // ID không tồn tại trong Firestore
+                    for (TaskCompletionSource<User> source : sources.values()) {
+                        source.trySetResult(null);
+                    }
+                });
+    }
+
+    private void completeFromLocalStore(List<String> chunk, Map<String, TaskCompletionSource<User>> sources,
+                                        Exception error) {
+        localStore.getUsers(chunk).addOnCompleteListener(localTask -> {
+            if (localTask.isSuccessful()) {
+                for (User user : localTask.getResult().values()) {
+                    TaskCompletionSource<User> source = sources.remove(user.getId());
+                    if (source != null) {
+                        source.trySetResult(user);
+                    }
+                }
+            } else {
+                Log.e(TAG, "Error reading local users", localTask.getException());
+            }
+            for (TaskCompletionSource<User> source : sources.values()) {
+                source.trySetException(error);
+            }
+        });
     }
 
     /**
      * Lấy danh sách users (method gọi getUsersByIds)
      */
-    public Task<QuerySnapshot> getUsers(List<String> userIds) {
+    public Task<Map<String, User>> getUsers(List<String> userIds) {
         return getUsersByIds(userIds);
     }
 
@@ -90,7 +249,11 @@ public class UserRepository {
         
         return db.collection(COLLECTION_USERS)
                 .document(currentUser.getUid())
-                .update(updates);
+                .update(updates)
+                .addOnCompleteListener(task -> {
+                    userCache.invalidate(currentUser.getUid());
+                    readCoalescer.invalidate(COLLECTION_USERS + "/" + currentUser.getUid());
+                });
     }
 
     /**
@@ -105,7 +268,11 @@ public class UserRepository {
         
         return db.collection(COLLECTION_USERS)
                 .document(userId)
-                .update(updates);
+                .update(updates)
+                .addOnCompleteListener(task -> {
+                    userCache.invalidate(userId);
+                    readCoalescer.invalidate(COLLECTION_USERS + "/" + userId);
+                });
     }
 
     /**
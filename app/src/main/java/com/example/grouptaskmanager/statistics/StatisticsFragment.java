@@ -17,25 +17,18 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.MainActivity;
 import com.example.grouptaskmanager.model.Task;
-import com.example.grouptaskmanager.model.User;
-import com.example.grouptaskmanager.model.Group;
-import com.example.grouptaskmanager.repository.GroupRepository;
-import com.example.grouptaskmanager.repository.TaskRepository;
-import com.example.grouptaskmanager.repository.UserRepository;
+import com.example.grouptaskmanager.repository.GroupCache;
+import com.example.grouptaskmanager.repository.TaskStore;
 import com.example.grouptaskmanager.task.TaskDetailActivity;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.progressindicator.CircularProgressIndicator;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
-public class StatisticsFragment extends Fragment implements TaskCompactAdapter.OnTaskClickListener {
+public class StatisticsFragment extends Fragment implements TaskCompactAdapter.OnTaskClickListener,
+        TaskStore.OnTasksChangedListener {
 
     private static final String TAG = "StatisticsFragment";
     
@@ -46,21 +39,15 @@ public class StatisticsFragment extends Fragment implements TaskCompactAdapter.O
     private MaterialButton btnViewAllTasks;
     private CircularProgressIndicator progressBar;
     
-    private TaskRepository taskRepository;
-    private GroupRepository groupRepository;
-    private UserRepository userRepository;
+    private TaskStore taskStore;
     private TaskCompactAdapter overdueTasksAdapter, inProgressTasksAdapter;
     private List<Task> allTasks;
-    private Map<String, User> userCache = new HashMap<>();
     private FirebaseAuth auth;
-    private boolean isLoading = false;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        taskRepository = new TaskRepository();
-        groupRepository = new GroupRepository();
-        userRepository = new UserRepository();
+        taskStore = TaskStore.getInstance();
         allTasks = new ArrayList<>();
         auth = FirebaseAuth.getInstance();
     }
@@ -78,15 +65,35 @@ public class StatisticsFragment extends Fragment implements TaskCompactAdapter.O
         initViews(view);
         setupRecyclerViews();
         setupClickListeners();
-        loadStatistics();
+        
+        // Nhận nhiệm vụ từ TaskStore dùng chung; nếu đã có dữ liệu thì hiển thị ngay
+        showLoading(!taskStore.isLoaded());
+        taskStore.addListener(this);
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-        if (!isLoading) {
-            loadStatistics();
-        }
+    public void onDestroyView() {
+        super.onDestroyView();
+        taskStore.removeListener(this);
+    }
+
+    @Override
+    public void onTasksChanged(TaskStore store) {
+        if (!isAdded() || getView() == null) return;
+        
+        allTasks.clear();
+        allTasks.addAll(store.getAllTasks());
+        // Danh sách thu gọn không hiển thị người được giao nên không cần tải thông tin user
+        showLoading(false);
+        updateStatistics();
+    }
+
+    @Override
+    public void onError(Exception e) {
+        if (!isAdded() || getView() == null) return;
+        
+        Log.e(TAG, "Error loading tasks", e);
+        showLoading(false);
     }
 
     private void initViews(View view) {
@@ -108,14 +115,14 @@ public class StatisticsFragment extends Fragment implements TaskCompactAdapter.O
 
     private void setupRecyclerViews() {
         // Setup overdue tasks RecyclerView
-        overdueTasksAdapter = new TaskCompactAdapter(requireContext(), new ArrayList<>(), userCache);
+        overdueTasksAdapter = new TaskCompactAdapter(requireContext());
         overdueTasksAdapter.setOnTaskClickListener(this);
         rvOverdueTasks.setLayoutManager(new LinearLayoutManager(requireContext()));
         rvOverdueTasks.setAdapter(overdueTasksAdapter);
         rvOverdueTasks.setNestedScrollingEnabled(false);
         
         // Setup in progress tasks RecyclerView
-        inProgressTasksAdapter = new TaskCompactAdapter(requireContext(), new ArrayList<>(), userCache);
+        inProgressTasksAdapter = new TaskCompactAdapter(requireContext());
         inProgressTasksAdapter.setOnTaskClickListener(this);
         rvInProgressTasks.setLayoutManager(new LinearLayoutManager(requireContext()));
         rvInProgressTasks.setAdapter(inProgressTasksAdapter);
@@ -142,136 +149,12 @@ public class StatisticsFragment extends Fragment implements TaskCompactAdapter.O
         });
     }
 
-    private void loadStatistics() {
-        if (isLoading) return;
-        
-        isLoading = true;
-        showLoading(true);
-        allTasks.clear();
-        
-        String currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
-        if (currentUserId == null) {
-            isLoading = false;
-            showLoading(false);
-            return;
-        }
-        
-        // Load all groups user is part of
-        groupRepository.getUserGroups()
-                .addOnSuccessListener(this::processGroupsAndLoadTasks)
-                .addOnFailureListener(e -> {
-                    isLoading = false;
-                    showLoading(false);
-                    Log.e(TAG, "Error loading groups", e);
-                });
-    }
-
-    private void processGroupsAndLoadTasks(QuerySnapshot groupSnapshot) {
-        if (groupSnapshot.isEmpty()) {
-            isLoading = false;
-            showLoading(false);
-            updateStatistics();
-            return;
-        }
-        
-        List<String> groupIds = new ArrayList<>();
-        for (DocumentSnapshot document : groupSnapshot.getDocuments()) {
-            groupIds.add(document.getId());
-        }
-        
-        final int[] processedGroups = {0};
-        final int totalGroups = groupIds.size();
-        
-        // Load all tasks from all groups
-        for (String groupId : groupIds) {
-            taskRepository.getGroupTasks(groupId)
-                    .addOnSuccessListener(tasksSnapshot -> {
-                        for (DocumentSnapshot document : tasksSnapshot.getDocuments()) {
-                            Task task = document.toObject(Task.class);
-                            if (task != null) {
-                                task.setGroupId(groupId);
-                                task.setId(document.getId());
-                                allTasks.add(task);
-                            }
-                        }
-                        
-                        processedGroups[0]++;
-                        if (processedGroups[0] == totalGroups) {
-                            loadAssigneeInfo();
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        processedGroups[0]++;
-                        if (processedGroups[0] == totalGroups) {
-                            loadAssigneeInfo();
-                        }
-                        Log.e(TAG, "Error loading tasks for group: " + groupId, e);
-                    });
-        }
-    }
-
-    private void loadAssigneeInfo() {
-        final int[] processedTasks = {0};
-        final int totalTasks = allTasks.size();
-        
-        if (totalTasks == 0) {
-            isLoading = false;
-            showLoading(false);
-            updateStatistics();
-            return;
-        }
-        
-        for (Task task : allTasks) {
-            String assigneeId = task.getAssignedTo();
-            if (assigneeId == null || userCache.containsKey(assigneeId)) {
-                processedTasks[0]++;
-                if (processedTasks[0] == totalTasks) {
-                    isLoading = false;
-                    showLoading(false);
-                    updateStatistics();
-                }
-                continue;
-            }
-            
-            userRepository.getUserById(assigneeId)
-                    .addOnSuccessListener(documentSnapshot -> {
-                        User user = documentSnapshot.toObject(User.class);
-                        if (user != null) {
-                            user.setId(documentSnapshot.getId());
-                            userCache.put(assigneeId, user);
-                        }
-                        
-                        processedTasks[0]++;
-                        if (processedTasks[0] == totalTasks) {
-                            isLoading = false;
-                            showLoading(false);
-                            updateStatistics();
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        processedTasks[0]++;
-                        if (processedTasks[0] == totalTasks) {
-                            isLoading = false;
-                            showLoading(false);
-                            updateStatistics();
-                        }
-                        Log.e(TAG, "Error loading user data", e);
-                    });
-        }
-    }
-
     private void updateStatistics() {
         if (getActivity() == null || !isAdded()) return;
         
-        Date now = new Date();
-        
         int todoCount = 0;
         int inProgressCount = 0;
         int doneCount = 0;
-        int overdueCount = 0;
-        
-        List<Task> overdueTasks = new ArrayList<>();
-        List<Task> inProgressTasks = new ArrayList<>();
         
         for (Task task : allTasks) {
             // Count by status
@@ -279,20 +162,15 @@ public class StatisticsFragment extends Fragment implements TaskCompactAdapter.O
                 todoCount++;
             } else if (Task.STATUS_IN_PROGRESS.equals(task.getStatus())) {
                 inProgressCount++;
-                inProgressTasks.add(task);
             } else if (Task.STATUS_DONE.equals(task.getStatus())) {
                 doneCount++;
             }
-            
-            // Check if overdue
-            if (!Task.STATUS_DONE.equals(task.getStatus()) && 
-                task.getDeadline() != null && 
-                task.getDeadline().toDate().before(now)) {
-                overdueCount++;
-                overdueTasks.add(task);
-            }
         }
         
+        List<Task> overdueTasks = taskStore.getOverdueTasks();
+        List<Task> inProgressTasks = taskStore.getTasksByStatus(Task.STATUS_IN_PROGRESS);
+        int overdueCount = overdueTasks.size();
+        
         int totalTasks = allTasks.size();
         float completionPercentage = totalTasks > 0 ? (float) doneCount / totalTasks * 100 : 0;
         
@@ -343,32 +221,11 @@ public class StatisticsFragment extends Fragment implements TaskCompactAdapter.O
         intent.putExtra("GROUP_ID", task.getGroupId());
         intent.putExtra("TASK_ID", task.getId());
         
-        // Get group name from cache or fetch it
-        getGroupName(task.getGroupId(), groupName -> {
+        // Tên nhóm lấy từ GroupCache nên mở màn hình ngay, không chờ đọc mạng
+        String groupName = GroupCache.getInstance().getName(task.getGroupId());
+        if (groupName != null) {
             intent.putExtra("GROUP_NAME", groupName);
-            startActivity(intent);
-        });
-    }
-    
-    // Helper method to get group name
-    private void getGroupName(String groupId, OnGroupNameFetchedListener listener) {
-        groupRepository.getGroupDetails(groupId)
-                .addOnSuccessListener(documentSnapshot -> {
-                    Group group = documentSnapshot.toObject(Group.class);
-                    String groupName = "";
-                    if (group != null && group.getName() != null) {
-                        groupName = group.getName();
-                    }
-                    listener.onGroupNameFetched(groupName);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading group details", e);
-                    listener.onGroupNameFetched("");
-                });
-    }
-    
-    // Interface for callback
-    private interface OnGroupNameFetchedListener {
-        void onGroupNameFetched(String groupName);
+        }
+        startActivity(intent);
     }
 } 
\ No newline at end of file
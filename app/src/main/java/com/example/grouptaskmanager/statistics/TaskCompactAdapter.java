@@ -8,46 +8,77 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.model.Task;
-import com.example.grouptaskmanager.model.User;
 import com.example.grouptaskmanager.repository.GroupRepository;
+import com.example.grouptaskmanager.utils.StableIds;
 import com.google.android.material.chip.Chip;
 import com.google.firebase.firestore.DocumentSnapshot;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
-public class TaskCompactAdapter extends RecyclerView.Adapter<TaskCompactAdapter.TaskCompactViewHolder> {
+public class TaskCompactAdapter extends ListAdapter<Task, TaskCompactAdapter.TaskCompactViewHolder> {
+
+    // Payload khi chỉ trạng thái thay đổi: chỉ đổi màu chấm trạng thái
+    private static final Object PAYLOAD_STATUS = new Object();
+
+    private static final DiffUtil.ItemCallback<Task> DIFF_CALLBACK = new DiffUtil.ItemCallback<Task>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Task oldItem, @NonNull Task newItem) {
+            return Objects.equals(oldItem.getGroupId(), newItem.getGroupId())
+                    && Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Task oldItem, @NonNull Task newItem) {
+            return Objects.equals(oldItem.getStatus(), newItem.getStatus()) && !hasOtherChanges(oldItem, newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Task oldItem, @NonNull Task newItem) {
+            return hasOtherChanges(oldItem, newItem) ? null : PAYLOAD_STATUS;
+        }
+
+        private boolean hasOtherChanges(Task oldItem, Task newItem) {
+            return !Objects.equals(oldItem.getTitle(), newItem.getTitle())
+                    || !Objects.equals(oldItem.getPriority(), newItem.getPriority());
+        }
+    };
 
     private Context context;
-    private List<Task> tasks;
-    private Map<String, User> userCache;
     private Map<String, String> groupCache;
     private GroupRepository groupRepository;
     private OnTaskClickListener listener;
+    private final StableIds stableIds = new StableIds();
 
     public interface OnTaskClickListener {
         void onTaskClick(Task task);
     }
 
-    public TaskCompactAdapter(Context context, List<Task> tasks, Map<String, User> userCache) {
+    public TaskCompactAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.tasks = tasks;
-        this.userCache = userCache;
         this.groupRepository = new GroupRepository();
         this.groupCache = new java.util.HashMap<>();
+        setHasStableIds(true);
     }
 
     public void setOnTaskClickListener(OnTaskClickListener listener) {
         this.listener = listener;
     }
 
+    /**
+     * Hiển thị danh sách mới; DiffUtil tính thay đổi trên luồng nền
+     */
     public void updateTasks(List<Task> tasks) {
-        this.tasks = tasks;
-        notifyDataSetChanged();
+        submitList(new ArrayList<>(tasks));
     }
 
     @NonNull
@@ -59,13 +90,23 @@ public class TaskCompactAdapter extends RecyclerView.Adapter<TaskCompactAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull TaskCompactViewHolder holder, int position) {
-        Task task = tasks.get(position);
+        Task task = getItem(position);
         holder.bind(task);
     }
 
     @Override
-    public int getItemCount() {
-        return tasks.size();
+    public void onBindViewHolder(@NonNull TaskCompactViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            holder.bindStatus(getItem(position));
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Task task = getItem(position);
+        return stableIds.idOf(task.getGroupId() + "/" + task.getId());
     }
 
     class TaskCompactViewHolder extends RecyclerView.ViewHolder {
@@ -83,7 +124,7 @@ public class TaskCompactAdapter extends RecyclerView.Adapter<TaskCompactAdapter.
 
             itemView.setOnClickListener(v -> {
                 if (listener != null && getAdapterPosition() != RecyclerView.NO_POSITION) {
-                    listener.onTaskClick(tasks.get(getAdapterPosition()));
+                    listener.onTaskClick(getItem(getAdapterPosition()));
                 }
             });
         }
@@ -92,9 +133,7 @@ public class TaskCompactAdapter extends RecyclerView.Adapter<TaskCompactAdapter.
             // Set task title
             tvTaskTitle.setText(task.getTitle());
 
-            // Set status dot color
-            int statusColor = getStatusColor(task.getStatus());
-            statusDot.setBackgroundTintList(ContextCompat.getColorStateList(context, statusColor));
+            bindStatus(task);
 
             // Set priority
             if (task.getPriority() != null && !task.getPriority().isEmpty()) {
@@ -112,6 +151,12 @@ public class TaskCompactAdapter extends RecyclerView.Adapter<TaskCompactAdapter.
             loadGroupName(task.getGroupId(), tvGroupName);
         }
 
+        void bindStatus(Task task) {
+            // Set status dot color
+            int statusColor = getStatusColor(task.getStatus());
+            statusDot.setBackgroundTintList(ContextCompat.getColorStateList(context, statusColor));
+        }
+
         private int getStatusColor(String status) {
             if (status == null) return R.color.text_secondary;
             
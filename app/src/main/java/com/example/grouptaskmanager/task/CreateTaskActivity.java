@@ -25,18 +25,15 @@ import com.example.grouptaskmanager.notification.NotificationHelper;
 import com.example.grouptaskmanager.repository.GroupRepository;
 import com.example.grouptaskmanager.repository.TaskRepository;
 import com.example.grouptaskmanager.repository.UserRepository;
+import com.example.grouptaskmanager.utils.DateFormats;
 import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.firestore.DocumentSnapshot;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 
 public class CreateTaskActivity extends AppCompatActivity {
 
@@ -51,7 +48,6 @@ public class CreateTaskActivity extends AppCompatActivity {
     private List<String> memberIds;
     private List<User> membersList;
     private UserSpinnerAdapter membersAdapter;
-    private Map<String, User> userCache;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -74,7 +70,6 @@ public class CreateTaskActivity extends AppCompatActivity {
         userRepository = new UserRepository();
         memberIds = new ArrayList<>();
         membersList = new ArrayList<>();
-        userCache = new HashMap<>();
         deadlineCalendar = Calendar.getInstance();
         
         setupToolbar();
@@ -124,36 +119,24 @@ public class CreateTaskActivity extends AppCompatActivity {
         }
         
         membersList.clear();
-        userCache.clear();
         
-        int[] processedCount = {0};
-        
-        for (String memberId : memberIds) {
-            userRepository.getUserById(memberId)
-                    .addOnSuccessListener(documentSnapshot -> {
-                        User user = documentSnapshot.toObject(User.class);
+        userRepository.getUsersByIds(memberIds)
+                .addOnSuccessListener(users -> {
+                    // Giữ thứ tự thành viên như trong nhóm
+                    for (String memberId : memberIds) {
+                        User user = users.get(memberId);
                         if (user != null) {
-                            user.setId(documentSnapshot.getId());
                             membersList.add(user);
-                            userCache.put(user.getId(), user);
-                        }
-                        
-                        processedCount[0]++;
-                        if (processedCount[0] == memberIds.size()) {
-                            setupMembersSpinner();
-                            showLoading(false);
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Error loading member " + memberId, e);
-                        
-                        processedCount[0]++;
-                        if (processedCount[0] == memberIds.size()) {
-                            setupMembersSpinner();
-                            showLoading(false);
                         }
-                    });
-        }
+                    }
+                    setupMembersSpinner();
+                    showLoading(false);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error loading members", e);
+                    setupMembersSpinner();
+                    showLoading(false);
+                });
     }
 
     private void setupMembersSpinner() {
@@ -190,8 +173,7 @@ public class CreateTaskActivity extends AppCompatActivity {
     }
 
     private void updateDeadlineText() {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-        String formattedDate = dateFormat.format(deadlineCalendar.getTime());
+        String formattedDate = DateFormats.formatDate(deadlineCalendar.getTime());
         binding.tvDeadline.setText(formattedDate);
     }
 
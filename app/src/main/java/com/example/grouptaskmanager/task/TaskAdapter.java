@@ -10,33 +10,59 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.model.Task;
 import com.example.grouptaskmanager.model.User;
+import com.example.grouptaskmanager.utils.StableIds;
 import com.google.android.material.chip.Chip;
-import com.google.firebase.Timestamp;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+
+public class TaskAdapter extends ListAdapter<Task, TaskAdapter.TaskViewHolder> {
+
+    // Payload khi chỉ một phần của nhiệm vụ thay đổi, chỉ bind lại các view liên quan
+    private static final int PAYLOAD_STATUS = 1;
+    private static final int PAYLOAD_COMMENTS = 1 << 1;
+    private static final int PAYLOAD_ASSIGNEE = 1 << 2;
 
-public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder> {
+    private static final DiffUtil.ItemCallback<Task> DIFF_CALLBACK = new DiffUtil.ItemCallback<Task>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Task oldItem, @NonNull Task newItem) {
+            return Objects.equals(oldItem.getGroupId(), newItem.getGroupId())
+                    && Objects.equals(oldItem.getId(), newItem.getId());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Task oldItem, @NonNull Task newItem) {
+            return changedParts(oldItem, newItem) == 0 && !hasOtherChanges(oldItem, newItem);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Task oldItem, @NonNull Task newItem) {
+            // Chỉ trạng thái/số bình luận thay đổi thì bind một phần, còn lại bind toàn bộ
+            return hasOtherChanges(oldItem, newItem) ? null : changedParts(oldItem, newItem);
+        }
+    };
 
-    private List<Task> taskList;
     private final OnTaskClickListener listener;
     private final Context context;
-    private final Map<String, User> userCache;
+    // Người được giao từ lần đọc gần nhất qua UserRepository; màn hình không tự giữ cache user
+    private Map<String, User> users = new HashMap<>();
+    private final StableIds stableIds = new StableIds();
 
-    public TaskAdapter(Context context, List<Task> taskList, OnTaskClickListener listener, Map<String, User> userCache) {
+    public TaskAdapter(Context context, OnTaskClickListener listener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.taskList = taskList;
         this.listener = listener;
-        this.userCache = userCache;
+        setHasStableIds(true);
     }
 
     @NonNull
@@ -48,19 +74,76 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull TaskViewHolder holder, int position) {
-        Task task = taskList.get(position);
+        Task task = getItem(position);
         holder.bind(task);
     }
 
     @Override
-    public int getItemCount() {
-        return taskList.size();
+    public void onBindViewHolder(@NonNull TaskViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        int parts = 0;
+        for (Object payload : payloads) {
+            parts |= (Integer) payload;
+        }
+        Task task = getItem(position);
+        if ((parts & PAYLOAD_STATUS) != 0) {
+            holder.bindStatus(task);
+        }
+        if ((parts & PAYLOAD_COMMENTS) != 0) {
+            holder.bindCommentCount(task);
+        }
+        if ((parts & PAYLOAD_ASSIGNEE) != 0) {
+            holder.bindAssignee(task);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        Task task = getItem(position);
+        return stableIds.idOf(task.getGroupId() + "/" + task.getId());
     }
 
+    /**
+     * Hiển thị danh sách mới; DiffUtil tính thay đổi trên luồng nền
+     */
     public void updateTasks(List<Task> newTaskList) {
-        // Create a new list to avoid reference issues
-        this.taskList = new ArrayList<>(newTaskList);
-        notifyDataSetChanged();
+        submitList(new ArrayList<>(newTaskList));
+    }
+
+    /**
+     * Thông tin người được giao vừa đọc qua UserRepository (UserCache quyết định đọc lại hay dùng lại):
+     * chỉ bind lại tên người được giao của các dòng liên quan
+     */
+    public void setUsers(Map<String, User> loadedUsers) {
+        users = new HashMap<>(loadedUsers);
+        List<Task> tasks = getCurrentList();
+        for (int i = 0; i < tasks.size(); i++) {
+            if (users.containsKey(tasks.get(i).getAssignedTo())) {
+                notifyItemChanged(i, PAYLOAD_ASSIGNEE);
+            }
+        }
+    }
+
+    private static int changedParts(Task oldItem, Task newItem) {
+        int parts = 0;
+        if (!Objects.equals(oldItem.getStatus(), newItem.getStatus())) {
+            parts |= PAYLOAD_STATUS;
+        }
+        if (oldItem.getCommentsCount() != newItem.getCommentsCount()) {
+            parts |= PAYLOAD_COMMENTS;
+        }
+        return parts;
+    }
+
+    private static boolean hasOtherChanges(Task oldItem, Task newItem) {
+        return !Objects.equals(oldItem.getTitle(), newItem.getTitle())
+                || !Objects.equals(oldItem.getDescription(), newItem.getDescription())
+                || !Objects.equals(oldItem.getAssignedTo(), newItem.getAssignedTo())
+                || !Objects.equals(oldItem.getPriority(), newItem.getPriority())
+                || !Objects.equals(oldItem.getDeadline(), newItem.getDeadline());
     }
 
     public interface OnTaskClickListener {
@@ -75,6 +158,8 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
         private final Chip chipPriority;
         private final Chip chipStatus;
         private final View statusIndicator;
+        private final View layoutCommentCount;
+        private final TextView tvCommentCount;
 
         TaskViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -85,11 +170,13 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
             chipPriority = itemView.findViewById(R.id.chip_priority);
             chipStatus = itemView.findViewById(R.id.chip_status);
             statusIndicator = itemView.findViewById(R.id.status_indicator);
+            layoutCommentCount = itemView.findViewById(R.id.layout_comment_count);
+            tvCommentCount = itemView.findViewById(R.id.tv_comment_count);
 
             itemView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
                 if (position != RecyclerView.NO_POSITION) {
-                    listener.onTaskClick(taskList.get(position));
+                    listener.onTaskClick(getItem(position));
                 }
             });
         }
@@ -104,11 +191,27 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
                 tvTaskDescription.setVisibility(View.GONE);
             }
             
+            bindAssignee(task);
+            
+            // Hiển thị deadline (chuỗi đã định dạng sẵn trên model)
+            if (task.getDeadline() != null) {
+                tvDeadline.setText(task.getDeadlineText());
+            }
+            
+            bindCommentCount(task);
+            
+            // Hiển thị mức độ ưu tiên
+            setPriorityChip(chipPriority, task.getPriority());
+            
+            bindStatus(task);
+        }
+        
+        void bindAssignee(Task task) {
             // Hiển thị tên người được giao thay vì ID
             String assignedTo = task.getAssignedTo();
             if (assignedTo != null && !assignedTo.isEmpty()) {
-                if (userCache.containsKey(assignedTo)) {
-                    User user = userCache.get(assignedTo);
+                if (users.containsKey(assignedTo)) {
+                    User user = users.get(assignedTo);
                     if (user != null && user.getName() != null && !user.getName().isEmpty()) {
                         tvAssignedTo.setText(user.getName());
                     } else if (user != null && user.getEmail() != null) {
@@ -127,18 +230,19 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
                 tvAssignedTo.setText(R.string.unassigned);
                 tvAssignedTo.setVisibility(View.VISIBLE);
             }
-            
-            // Format và hiển thị deadline
-            Timestamp deadline = task.getDeadline();
-            if (deadline != null) {
-                Date date = deadline.toDate();
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-                tvDeadline.setText(dateFormat.format(date));
+        }
+        
+        void bindCommentCount(Task task) {
+            // Số bình luận lấy từ trường commentsCount, không cần query bình luận
+            if (task.getCommentsCount() > 0) {
+                tvCommentCount.setText(String.valueOf(task.getCommentsCount()));
+                layoutCommentCount.setVisibility(View.VISIBLE);
+            } else {
+                layoutCommentCount.setVisibility(View.GONE);
             }
-            
-            // Hiển thị mức độ ưu tiên
-            setPriorityChip(chipPriority, task.getPriority());
-            
+        }
+        
+        void bindStatus(Task task) {
             // Hiển thị trạng thái
             setStatusChip(chipStatus, task.getStatus());
 
@@ -165,12 +269,8 @@ public class TaskAdapter extends RecyclerView.Adapter<TaskAdapter.TaskViewHolder
         }
         
         private boolean isTaskOverdue(Task task) {
-            if (task.getDeadline() != null) {
-                Date deadline = task.getDeadline().toDate();
-                Date now = new Date();
-                return deadline.before(now);
-            }
-            return false;
+            return task.getDeadline() != null
+                    && task.getDeadline().toDate().getTime() < System.currentTimeMillis();
         }
         
         private void setPriorityChip(Chip chip, String priority) {
@@ -36,23 +36,27 @@ import com.example.grouptaskmanager.model.Group;
 import com.example.grouptaskmanager.model.Task;
 import com.example.grouptaskmanager.model.User;
 import com.example.grouptaskmanager.repository.CommentRepository;
+import com.example.grouptaskmanager.repository.GroupCache;
 import com.example.grouptaskmanager.repository.GroupRepository;
+import com.example.grouptaskmanager.repository.LocalStore;
 import com.example.grouptaskmanager.repository.TaskRepository;
+import com.example.grouptaskmanager.repository.TaskStore;
 import com.example.grouptaskmanager.repository.UserRepository;
+import com.example.grouptaskmanager.utils.DateFormats;
 import com.google.android.material.button.MaterialButton;
 import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.QuerySnapshot;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Locale;
-import java.util.HashMap;
 import java.util.Map;
 
 public class TaskDetailActivity extends AppCompatActivity implements CommentsAdapter.OnCommentActionListener {
@@ -67,18 +71,26 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
     private String taskId;
     private String groupName;
     private Task currentTask;
+    private Task pendingRemoteTask;
+    private ListenerRegistration taskListener;
     private Calendar deadlineCalendar;
     private List<String> membersList;
     private List<User> membersUserList;
     private UserSpinnerAdapter membersAdapter;
     private boolean canModifyTask = false;
     private boolean isEditMode = false;
-    private Map<String, User> userCache = new HashMap<>();
     
     // Comments related
     private CommentsAdapter commentsAdapter;
-    private List<Comment> commentsList;
     private Comment replyingToComment;
+    private ListenerRegistration commentsListener;
+    // Bình luận cũ nhất đã tải, dùng làm con trỏ cho trang cũ hơn
+    private DocumentSnapshot oldestCommentSnapshot;
+    private boolean commentsLoaded = false;
+    private boolean hasMoreComments = false;
+    // Trang realtime đã được server xác nhận; ảnh chụp từ cache có thể chỉ chứa một phần
+    private boolean commentsFromServer = false;
+    private boolean isLoadingOlderComments = false;
     private String currentUserName;
     
     // Modern UI components
@@ -95,6 +107,9 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
         groupId = getIntent().getStringExtra("GROUP_ID");
         taskId = getIntent().getStringExtra("TASK_ID");
         groupName = getIntent().getStringExtra("GROUP_NAME");
+        if (groupName == null) {
+            groupName = GroupCache.getInstance().getName(groupId);
+        }
         
         if (groupId == null || taskId == null) {
             Toast.makeText(this, "Không tìm thấy thông tin nhiệm vụ", Toast.LENGTH_SHORT).show();
@@ -108,7 +123,6 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
         commentRepository = new CommentRepository();
         membersList = new ArrayList<>();
         membersUserList = new ArrayList<>();
-        commentsList = new ArrayList<>();
         deadlineCalendar = Calendar.getInstance();
         
         setupToolbar();
@@ -127,6 +141,20 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
         binding.recyclerComments.setLayoutManager(new LinearLayoutManager(this));
         binding.recyclerComments.setAdapter(commentsAdapter);
         binding.recyclerComments.setNestedScrollingEnabled(false);
+        binding.btnLoadOlderComments.setOnClickListener(v -> loadOlderComments());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (taskListener != null) {
+            taskListener.remove();
+            taskListener = null;
+        }
+        if (commentsListener != null) {
+            commentsListener.remove();
+            commentsListener = null;
+        }
     }
     
     private void setupModernUI() {
@@ -148,9 +176,8 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
     private void loadCurrentUserName() {
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
         if (currentUser != null) {
-            userRepository.getUserById(currentUser.getUid())
-                .addOnSuccessListener(documentSnapshot -> {
-                    User user = documentSnapshot.toObject(User.class);
+            userRepository.getUser(currentUser.getUid())
+                .addOnSuccessListener(user -> {
                     if (user != null) {
                         currentUserName = user.getName() != null ? user.getName() : 
                                         (user.getEmail() != null ? user.getEmail() : currentUser.getUid());
@@ -165,31 +192,141 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
     }
     
     private void loadComments() {
-        commentRepository.getTaskComments(groupId, taskId)
+        // Bình luận nằm ở subcollection của nhiệm vụ hoặc collection cũ tùy nhóm đã chuyển xong chưa
+        commentRepository.isCommentsMigrated(groupId).addOnCompleteListener(migrated -> {
+            if (isDestroyed()) return;
+            if (!migrated.isSuccessful()) {
+                Log.e(TAG, "Error loading comments", migrated.getException());
+                Toast.makeText(this, "Lỗi tải bình luận", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            // Trang bình luận mới nhất được lắng nghe realtime, thay đổi được áp dụng từng phần
+            commentsListener = commentRepository.addCommentsListener(groupId, taskId, migrated.getResult(),
+                    (snapshot, e) -> {
+                        if (e != null) {
+                            Log.e(TAG, "Error loading comments", e);
+                            Toast.makeText(this, "Lỗi tải bình luận: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        if (snapshot != null) {
+                            applyCommentChanges(snapshot);
+                        }
+                    });
+        });
+    }
+    
+    private void applyCommentChanges(QuerySnapshot snapshot) {
+        if (!commentsLoaded) {
+            // Snapshot đầu tiên: mới nhất trước, hiển thị cũ trước
+            List<DocumentSnapshot> documents = snapshot.getDocuments();
+            List<Comment> page = new ArrayList<>();
+            for (int i = documents.size() - 1; i >= 0; i--) {
+                Comment comment = toComment(documents.get(i));
+                if (comment != null) {
+                    page.add(comment);
+                }
+            }
+            commentsAdapter.updateComments(page);
+            commentsLoaded = true;
+            updatePagingFromSnapshot(snapshot);
+            updateCommentsUI();
+            return;
+        }
+        
+        for (DocumentChange change : snapshot.getDocumentChanges()) {
+            Comment comment = toComment(change.getDocument());
+            if (comment == null) continue;
+            
+            switch (change.getType()) {
+                case ADDED:
+                    if (commentsAdapter.containsComment(comment.getId())) {
+                        commentsAdapter.updateComment(comment);
+                    } else if (change.getNewIndex() == 0) {
+                        // Bình luận mới nhất
+                        commentsAdapter.addComment(comment);
+                    } else {
+                        // Bình luận cũ hơn quay lại trang sau khi có bình luận bị xóa
+                        commentsAdapter.addOlderComments(Collections.singletonList(comment));
+                        oldestCommentSnapshot = change.getDocument();
+                    }
+                    break;
+                case MODIFIED:
+                    commentsAdapter.updateComment(comment);
+                    break;
+                case REMOVED:
+                    // Bình luận trượt ra khỏi trang realtime vẫn được giữ lại
+                    if (!CommentRepository.isSlidOutOfWindow(change, snapshot)) {
+                        commentsAdapter.removeComment(comment.getId());
+                    }
+                    break;
+            }
+        }
+        updatePagingFromSnapshot(snapshot);
+        updateCommentsUI();
+    }
+    
+    /**
+     * Tính lại con trỏ trang cũ hơn cho đến khi có ảnh chụp từ server
+     */
+    private void updatePagingFromSnapshot(QuerySnapshot snapshot) {
+        if (commentsFromServer) {
+            return;
+        }
+        List<DocumentSnapshot> documents = snapshot.getDocuments();
+        oldestCommentSnapshot = documents.isEmpty() ? null : documents.get(documents.size() - 1);
+        hasMoreComments = documents.size() >= CommentRepository.COMMENT_PAGE_SIZE;
+        commentsFromServer = !snapshot.getMetadata().isFromCache();
+    }
+    
+    private void loadOlderComments() {
+        if (!commentsFromServer || isLoadingOlderComments || !hasMoreComments || oldestCommentSnapshot == null) {
+            return;
+        }
+        isLoadingOlderComments = true;
+        
+        commentRepository.getTaskCommentsPage(groupId, taskId, oldestCommentSnapshot,
+                        CommentRepository.COMMENT_PAGE_SIZE)
             .addOnSuccessListener(querySnapshot -> {
-                commentsList.clear();
-                for (DocumentSnapshot doc : querySnapshot.getDocuments()) {
-                    Comment comment = doc.toObject(Comment.class);
-                    if (comment != null) {
-                        comment.setId(doc.getId());
-                        commentsList.add(comment);
+                isLoadingOlderComments = false;
+                List<DocumentSnapshot> documents = querySnapshot.getDocuments();
+                hasMoreComments = documents.size() >= CommentRepository.COMMENT_PAGE_SIZE;
+                
+                List<Comment> olderComments = new ArrayList<>();
+                for (int i = documents.size() - 1; i >= 0; i--) {
+                    Comment comment = toComment(documents.get(i));
+                    if (comment != null && !commentsAdapter.containsComment(comment.getId())) {
+                        olderComments.add(comment);
                     }
                 }
-                
-                commentsAdapter.updateComments(commentsList);
+                if (!documents.isEmpty()) {
+                    oldestCommentSnapshot = documents.get(documents.size() - 1);
+                }
+                commentsAdapter.addOlderComments(olderComments);
                 updateCommentsUI();
             })
             .addOnFailureListener(e -> {
-                Log.e(TAG, "Error loading comments", e);
+                isLoadingOlderComments = false;
+                Log.e(TAG, "Error loading older comments", e);
                 Toast.makeText(this, "Lỗi tải bình luận: " + e.getMessage(), Toast.LENGTH_SHORT).show();
             });
     }
     
+    private Comment toComment(DocumentSnapshot document) {
+        Comment comment = document.toObject(Comment.class);
+        if (comment != null) {
+            comment.setId(document.getId());
+        }
+        return comment;
+    }
+    
     private void updateCommentsUI() {
-        int commentCount = commentsList.size();
+        int loadedCount = commentsAdapter.getCommentCount();
+        // Tổng số lấy từ commentsCount của nhiệm vụ vì có thể chưa tải hết các trang
+        int commentCount = currentTask != null ? Math.max(loadedCount, currentTask.getCommentsCount()) : loadedCount;
         binding.tvCommentCount.setText(String.valueOf(commentCount));
+        binding.btnLoadOlderComments.setVisibility(hasMoreComments ? View.VISIBLE : View.GONE);
         
-        if (commentCount == 0) {
+        if (loadedCount == 0) {
             binding.tvNoComments.setVisibility(View.VISIBLE);
             binding.recyclerComments.setVisibility(View.GONE);
         } else {
@@ -230,26 +367,63 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
     }
 
     private void loadTaskDetails() {
-        showLoading(true);
+        // Hiển thị ngay nhiệm vụ đã có trong TaskStore (mở từ danh sách) ở frame đầu tiên
+        Task knownTask = TaskStore.getInstance().getTask(groupId, taskId);
+        if (knownTask != null) {
+            showTask(knownTask);
+        } else {
+            showLoading(true);
+            // Mở từ thông báo khi TaskStore chưa có dữ liệu: thử bản sao cục bộ trước
+            LocalStore.getInstance().getTask(groupId, taskId)
+                    .addOnSuccessListener(localTask -> {
+                        if (localTask != null && currentTask == null && !isFinishing()) {
+                            showTask(localTask);
+                        }
+                    });
+        }
         
-        taskRepository.getTaskDetails(groupId, taskId)
-                .addOnSuccessListener(documentSnapshot -> {
-                    currentTask = documentSnapshot.toObject(Task.class);
-                    if (currentTask != null) {
-                        displayTaskDetails();
-                        loadUserData();
-                    } else {
-                        Toast.makeText(this, "Không tìm thấy thông tin nhiệm vụ", Toast.LENGTH_SHORT).show();
-                        finish();
-                    }
-                    showLoading(false);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading task details", e);
+        // Sau đó đồng bộ với document nhiệm vụ bằng listener
+        taskListener = taskRepository.addTaskListener(groupId, taskId, (documentSnapshot, e) -> {
+            if (isFinishing()) return;
+            if (e != null) {
+                Log.e(TAG, "Error loading task details", e);
+                if (currentTask == null) {
                     showLoading(false);
                     Toast.makeText(this, "Lỗi: " + e.getMessage(), Toast.LENGTH_SHORT).show();
                     finish();
-                });
+                }
+                return;
+            }
+            if (documentSnapshot == null || !documentSnapshot.exists()) {
+                // Cache chưa có document thì chờ kết quả từ server
+                if (documentSnapshot != null && documentSnapshot.getMetadata().isFromCache()) return;
+                Toast.makeText(this, "Không tìm thấy thông tin nhiệm vụ", Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
+            
+            Task task = documentSnapshot.toObject(Task.class);
+            if (task == null) return;
+            task.setId(documentSnapshot.getId());
+            task.setGroupId(groupId);
+            if (isEditMode) {
+                // Không ghi đè nội dung người dùng đang sửa; áp dụng khi thoát chế độ sửa
+                pendingRemoteTask = task;
+                return;
+            }
+            showTask(task);
+        });
+    }
+
+    private void showTask(Task task) {
+        boolean firstResult = currentTask == null;
+        currentTask = task;
+        displayTaskDetails();
+        if (firstResult) {
+            loadUserData();
+        }
+        updateCommentsUI();
+        showLoading(false);
     }
 
     private void loadUserData() {
@@ -261,32 +435,20 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
         
         // Load creator info
         if (currentTask.getCreatedBy() != null) {
-            userRepository.getUserById(currentTask.getCreatedBy())
-                .addOnSuccessListener(documentSnapshot -> {
-                    User creator = documentSnapshot.toObject(User.class);
+            userRepository.getUser(currentTask.getCreatedBy())
+                .addOnSuccessListener(creator -> {
                     if (creator != null) {
-                        creator.setId(documentSnapshot.getId());
-                        userCache.put(creator.getId(), creator);
                         updateCreatorInfo(creator);
                     }
                 })
                 .addOnFailureListener(e -> Log.e(TAG, "Error loading creator info", e));
         }
         
-        // Load assignee info for all members
-        for (String memberId : membersList) {
-            if (!userCache.containsKey(memberId)) {
-                userRepository.getUserById(memberId)
-                    .addOnSuccessListener(documentSnapshot -> {
-                        User user = documentSnapshot.toObject(User.class);
-                        if (user != null) {
-                            user.setId(documentSnapshot.getId());
-                            userCache.put(user.getId(), user);
-                            updateMembersList();
-                        }
-                    })
-                    .addOnFailureListener(e -> Log.e(TAG, "Error loading user data", e));
-            }
+        // Load info for all members in one batched request; UserCache serves the ones still fresh
+        if (!membersList.isEmpty()) {
+            userRepository.getUsersByIds(membersList)
+                .addOnSuccessListener(this::updateMembersList)
+                .addOnFailureListener(e -> Log.e(TAG, "Error loading user data", e));
         }
     }
 
@@ -298,10 +460,10 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
         }
     }
 
-    private void updateMembersList() {
+    private void updateMembersList(Map<String, User> users) {
         membersUserList.clear();
         for (String memberId : membersList) {
-            User user = userCache.get(memberId);
+            User user = users.get(memberId);
             if (user != null) {
                 membersUserList.add(user);
             } else {
@@ -330,6 +492,13 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
         groupRepository.getGroupDetails(groupId)
                 .addOnSuccessListener(documentSnapshot -> {
                     Group group = documentSnapshot.toObject(Group.class);
+                    // Mở từ nơi chưa biết tên nhóm: cập nhật tiêu đề khi có dữ liệu nhóm
+                    if (group != null && (groupName == null || groupName.isEmpty()) && group.getName() != null) {
+                        groupName = group.getName();
+                        if (currentTask != null) {
+                            displayTaskDetails();
+                        }
+                    }
                     if (group != null && group.getMembers() != null) {
                         membersList.clear();
                         membersList.addAll(group.getMembers());
@@ -343,8 +512,8 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
     }
 
     private void setupMembersSpinner() {
-        // Initialize with existing data
-        updateMembersList();
+        // Initialize with member IDs until user data is loaded
+        updateMembersList(Collections.emptyMap());
         
         // Create custom adapter
         membersAdapter = new UserSpinnerAdapter();
@@ -403,14 +572,12 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
         
         // Hiển thị metadata
         if (currentTask.getCreatedAt() != null) {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-            String createdDate = dateFormat.format(currentTask.getCreatedAt().toDate());
+            String createdDate = DateFormats.formatDateTime(currentTask.getCreatedAt().toDate());
             binding.tvCreatedDate.setText(getString(R.string.created_date, createdDate));
         }
         
         if (currentTask.getUpdatedAt() != null) {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-            String updatedDate = dateFormat.format(currentTask.getUpdatedAt().toDate());
+            String updatedDate = DateFormats.formatDateTime(currentTask.getUpdatedAt().toDate());
             binding.tvUpdatedDate.setText(getString(R.string.updated_date, updatedDate));
         }
         
@@ -450,16 +617,13 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
     }
 
     private void updateDeadlineText() {
-        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-        String formattedDate = dateFormat.format(deadlineCalendar.getTime());
+        String formattedDate = DateFormats.formatDate(deadlineCalendar.getTime());
         binding.tvDeadline.setText(formattedDate);
     }
 
     private void updateDeadlineChip() {
         if (currentTask != null && currentTask.getDeadline() != null && tvDeadlineChip != null) {
-            SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy", Locale.getDefault());
-            String formattedDate = dateFormat.format(currentTask.getDeadline().toDate());
-            tvDeadlineChip.setText(formattedDate);
+            tvDeadlineChip.setText(currentTask.getDeadlineText());
             tvDeadlineChip.setVisibility(View.VISIBLE);
         } else if (tvDeadlineChip != null) {
             tvDeadlineChip.setVisibility(View.GONE);
@@ -579,8 +743,7 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
                         
                         // Update timestamp
                         currentTask.setUpdatedAt(Timestamp.now());
-                        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-                        String updatedDate = dateFormat.format(currentTask.getUpdatedAt().toDate());
+                        String updatedDate = DateFormats.formatDateTime(currentTask.getUpdatedAt().toDate());
                         binding.tvUpdatedDate.setText(getString(R.string.updated_date, updatedDate));
                         
                         showLoading(false);
@@ -636,7 +799,6 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
                 .addOnSuccessListener(documentReference -> {
                     binding.etComment.setText("");
                     cancelReply();
-                    loadComments(); // Reload comments
                     Toast.makeText(this, "Đã gửi phản hồi", Toast.LENGTH_SHORT).show();
                 })
                 .addOnFailureListener(e -> {
@@ -648,7 +810,6 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
             commentRepository.addComment(groupId, taskId, content, currentUserName)
                 .addOnSuccessListener(documentReference -> {
                     binding.etComment.setText("");
-                    loadComments(); // Reload comments
                     Toast.makeText(this, "Đã gửi bình luận", Toast.LENGTH_SHORT).show();
                 })
                 .addOnFailureListener(e -> {
@@ -687,9 +848,8 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
         builder.setPositiveButton("Lưu", (dialog, which) -> {
             String newContent = input.getText().toString().trim();
             if (!TextUtils.isEmpty(newContent)) {
-                commentRepository.updateComment(comment.getId(), newContent)
+                commentRepository.updateComment(groupId, taskId, comment.getId(), newContent)
                     .addOnSuccessListener(aVoid -> {
-                        loadComments();
                         Toast.makeText(this, "Đã cập nhật bình luận", Toast.LENGTH_SHORT).show();
                     })
                     .addOnFailureListener(e -> {
@@ -709,9 +869,8 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
             .setTitle("Xóa bình luận")
             .setMessage("Bạn có chắc chắn muốn xóa bình luận này?")
             .setPositiveButton("Xóa", (dialog, which) -> {
-                commentRepository.deleteComment(comment.getId())
+                commentRepository.deleteComment(groupId, taskId, comment.getId())
                     .addOnSuccessListener(aVoid -> {
-                        loadComments();
                         Toast.makeText(this, "Đã xóa bình luận", Toast.LENGTH_SHORT).show();
                     })
                     .addOnFailureListener(e -> {
@@ -802,8 +961,7 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
                     
                     // Cập nhật thời gian cập nhật
                     currentTask.setUpdatedAt(Timestamp.now());
-                    SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm", Locale.getDefault());
-                    String updatedDate = dateFormat.format(currentTask.getUpdatedAt().toDate());
+                    String updatedDate = DateFormats.formatDateTime(currentTask.getUpdatedAt().toDate());
                     binding.tvUpdatedDate.setText(getString(R.string.updated_date, updatedDate));
                     
                     showLoading(false);
@@ -842,6 +1000,12 @@ public class TaskDetailActivity extends AppCompatActivity implements CommentsAda
 
     private void setEditMode(boolean editMode) {
         isEditMode = editMode;
+        if (!editMode && pendingRemoteTask != null) {
+            // Áp dụng thay đổi nhận được trong lúc đang sửa
+            Task remoteTask = pendingRemoteTask;
+            pendingRemoteTask = null;
+            showTask(remoteTask);
+        }
         
         // Hiển thị/ẩn các view dựa trên mode
         binding.viewModeContainer.setVisibility(editMode ? View.GONE : View.VISIBLE);
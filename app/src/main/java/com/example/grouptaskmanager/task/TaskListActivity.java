@@ -16,19 +16,21 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.databinding.ActivityTaskListBinding;
 import com.example.grouptaskmanager.model.Task;
-import com.example.grouptaskmanager.model.User;
+import com.example.grouptaskmanager.repository.ReadPolicy;
+import com.example.grouptaskmanager.repository.TaskIndex;
 import com.example.grouptaskmanager.repository.TaskRepository;
 import com.example.grouptaskmanager.repository.UserRepository;
+import com.example.grouptaskmanager.utils.FilterPipeline;
 import com.google.android.material.chip.Chip;
-import com.google.firebase.Timestamp;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 public class TaskListActivity extends AppCompatActivity implements TaskAdapter.OnTaskClickListener {
 
@@ -43,7 +45,8 @@ public class TaskListActivity extends AppCompatActivity implements TaskAdapter.O
     private String groupName;
     private String currentFilter = "all"; // Bộ lọc mặc định
     private String searchQuery = "";
-    private Map<String, User> userCache = new HashMap<>();
+    private final TaskIndex taskIndex = new TaskIndex();
+    private final FilterPipeline<Task> filterPipeline = new FilterPipeline<>(this::showFilteredTasks);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -66,6 +69,13 @@ public class TaskListActivity extends AppCompatActivity implements TaskAdapter.O
         taskList = new ArrayList<>();
         filteredTaskList = new ArrayList<>();
 
+        // Nhãn độ ưu tiên theo ngôn ngữ được đánh chỉ mục cùng nhiệm vụ để tìm kiếm
+        Map<String, String> priorityLabels = new HashMap<>();
+        priorityLabels.put("high", getString(R.string.priority_high));
+        priorityLabels.put("medium", getString(R.string.priority_medium));
+        priorityLabels.put("low", getString(R.string.priority_low));
+        taskIndex.setPriorityLabels(priorityLabels);
+
         setupToolbar();
         setupRecyclerView();
         setupFilterChips();
@@ -94,7 +104,7 @@ public class TaskListActivity extends AppCompatActivity implements TaskAdapter.O
     }
 
     private void setupRecyclerView() {
-        taskAdapter = new TaskAdapter(this, filteredTaskList, this, userCache);
+        taskAdapter = new TaskAdapter(this, this);
         binding.rvTasks.setLayoutManager(new LinearLayoutManager(this));
         binding.rvTasks.setAdapter(taskAdapter);
     }
@@ -142,7 +152,8 @@ public class TaskListActivity extends AppCompatActivity implements TaskAdapter.O
             @Override
             public void afterTextChanged(Editable s) {
                 searchQuery = s.toString().toLowerCase().trim();
-                applyFilters();
+                // Chỉ lọc khi người dùng ngừng gõ
+                filterPipeline.submitDebounced(createTaskFilter());
             }
         });
         
@@ -161,18 +172,28 @@ public class TaskListActivity extends AppCompatActivity implements TaskAdapter.O
     }
 
     private void loadTasks() {
-        showLoading(true);
-        taskRepository.getGroupTasks(groupId)
-                .addOnSuccessListener(this::processTaskData)
-                .addOnFailureListener(e -> {
-                    showLoading(false);
-                    Log.e(TAG, "Error loading tasks", e);
-                    showEmptyState(true);
-                });
+        if (taskList.isEmpty()) {
+            showLoading(true);
+        }
+        // Hiển thị ngay từ cache của Firestore, sau đó cập nhật bằng kết quả từ server
+        taskRepository.getGroupTasks(groupId, ReadPolicy.CACHE_THEN_SERVER, new ReadPolicy.OnReadListener<QuerySnapshot>() {
+            @Override
+            public void onRead(QuerySnapshot snapshot, boolean fromCache) {
+                processTaskData(snapshot);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                showLoading(false);
+                Log.e(TAG, "Error loading tasks", e);
+                showEmptyState(taskList.isEmpty());
+            }
+        });
     }
 
     private void processTaskData(QuerySnapshot querySnapshot) {
         taskList.clear();
+        taskIndex.clear();
         
         if (querySnapshot.isEmpty()) {
             showEmptyState(true);
@@ -184,7 +205,9 @@ public class TaskListActivity extends AppCompatActivity implements TaskAdapter.O
             Task task = document.toObject(Task.class);
             if (task != null) {
                 task.setId(document.getId());
+                task.setGroupId(groupId);
                 taskList.add(task);
+                taskIndex.put(task);
             }
         }
         
@@ -210,69 +233,60 @@ public class TaskListActivity extends AppCompatActivity implements TaskAdapter.O
             return;
         }
         
-        // Track number of processed user requests
-        final int[] processedUsers = {0};
-        final int totalUsers = userIds.size();
-        
-        // Load user data for each user ID
-        for (String userId : userIds) {
-            userRepository.getUserById(userId)
-                .addOnSuccessListener(documentSnapshot -> {
-                    User user = documentSnapshot.toObject(User.class);
-                    if (user != null) {
-                        user.setId(documentSnapshot.getId());
-                        userCache.put(userId, user);
-                    }
-                    
-                    processedUsers[0]++;
-                    if (processedUsers[0] >= totalUsers) {
-                        // All users loaded, apply filters and update UI
-                        applyFilters();
-                        showLoading(false);
-                    }
-                })
-                .addOnFailureListener(e -> {
-                    processedUsers[0]++;
-                    Log.e(TAG, "Error loading user data", e);
-                    
-                    if (processedUsers[0] >= totalUsers) {
-                        // Continue even if some users failed to load
-                        applyFilters();
-                        showLoading(false);
-                    }
-                });
-        }
+        // Load all users in one batched request
+        userRepository.getUsersByIds(userIds)
+            .addOnSuccessListener(users -> {
+                taskIndex.setAssigneeNames(users);
+                taskAdapter.setUsers(users);
+                applyFilters();
+                showLoading(false);
+            })
+            .addOnFailureListener(e -> {
+                Log.e(TAG, "Error loading user data", e);
+                // Continue even if users failed to load
+                applyFilters();
+                showLoading(false);
+            });
     }
     
     private void applyFilters() {
-        filteredTaskList.clear();
-        
-        // First apply status filter
-        for (Task task : taskList) {
-            if (currentFilter.equals("all") || 
-                currentFilter.equals(task.getStatus()) ||
-                (currentFilter.equals("overdue") && isTaskOverdue(task))) {
-                filteredTaskList.add(task);
-            }
-        }
+        filterPipeline.submit(createTaskFilter());
+    }
+    
+    /**
+     * Tạo bộ lọc với trạng thái hiện tại; chạy trên luồng nền của FilterPipeline
+     */
+    private Callable<List<Task>> createTaskFilter() {
+        String statusFilter = currentFilter;
+        String query = searchQuery;
+        List<Task> allTasks = new ArrayList<>(taskList);
         
-        // Then apply search filter
-        if (!searchQuery.isEmpty()) {
-            List<Task> searchResults = new ArrayList<>();
-            for (Task task : filteredTaskList) {
-                if (matchesSearchQuery(task, searchQuery)) {
-                    searchResults.add(task);
+        return () -> {
+            // Bộ lọc trạng thái và từ khóa tìm kiếm là phép giao các tập khóa trong chỉ mục
+            synchronized (taskIndex) {
+                List<Set<String>> keySets = new ArrayList<>();
+                if (statusFilter.equals("overdue")) {
+                    keySets.add(taskIndex.getOverdueKeys(System.currentTimeMillis()));
+                } else if (!statusFilter.equals("all")) {
+                    keySets.add(taskIndex.getKeysByStatus(statusFilter));
+                }
+                if (!query.isEmpty()) {
+                    keySets.addAll(taskIndex.matchQuery(query));
                 }
+                return keySets.isEmpty() ? allTasks : taskIndex.getTasks(taskIndex.intersect(keySets));
             }
-            filteredTaskList.clear();
-            filteredTaskList.addAll(searchResults);
-        }
+        };
+    }
+    
+    private void showFilteredTasks(List<Task> tasks) {
+        filteredTaskList.clear();
+        filteredTaskList.addAll(tasks);
         
         // Hiển thị số lượng nhiệm vụ
         updateTaskCount(filteredTaskList.size());
         
         // Cập nhật adapter và hiển thị trạng thái trống nếu cần
-        taskAdapter.notifyDataSetChanged();
+        taskAdapter.updateTasks(filteredTaskList);
         showEmptyState(filteredTaskList.isEmpty());
     }
     
@@ -282,32 +296,6 @@ public class TaskListActivity extends AppCompatActivity implements TaskAdapter.O
         binding.tvTaskCount.setText(taskCountText);
     }
     
-    private boolean isTaskOverdue(Task task) {
-        if (task.getStatus().equals(Task.STATUS_DONE)) {
-            return false; // Nhiệm vụ đã hoàn thành không bị coi là quá hạn
-        }
-        
-        Timestamp deadline = task.getDeadline();
-        if (deadline != null) {
-            return deadline.toDate().before(new Date());
-        }
-        return false;
-    }
-    
-    private boolean matchesSearchQuery(Task task, String query) {
-        String assigneeName = "";
-        if (task.getAssignedTo() != null && userCache.containsKey(task.getAssignedTo())) {
-            User user = userCache.get(task.getAssignedTo());
-            if (user != null && user.getName() != null) {
-                assigneeName = user.getName().toLowerCase();
-            }
-        }
-        
-        return (task.getTitle() != null && task.getTitle().toLowerCase().contains(query)) ||
-               (task.getDescription() != null && task.getDescription().toLowerCase().contains(query)) ||
-               assigneeName.contains(query);
-    }
-
     private void showEmptyState(boolean isEmpty) {
         binding.emptyStateContainer.setVisibility(isEmpty ? View.VISIBLE : View.GONE);
         binding.rvTasks.setVisibility(isEmpty ? View.GONE : View.VISIBLE);
@@ -331,6 +319,12 @@ public class TaskListActivity extends AppCompatActivity implements TaskAdapter.O
         loadTasks();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        filterPipeline.cancel();
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
@@ -19,26 +19,27 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.grouptaskmanager.R;
 import com.example.grouptaskmanager.MainActivity;
 import com.example.grouptaskmanager.model.Task;
-import com.example.grouptaskmanager.model.User;
-import com.example.grouptaskmanager.model.Group;
-import com.example.grouptaskmanager.repository.GroupRepository;
-import com.example.grouptaskmanager.repository.TaskRepository;
+import com.example.grouptaskmanager.repository.GroupCache;
+import com.example.grouptaskmanager.repository.TaskIndex;
+import com.example.grouptaskmanager.repository.TaskStore;
 import com.example.grouptaskmanager.repository.UserRepository;
+import com.example.grouptaskmanager.utils.FilterPipeline;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.progressindicator.CircularProgressIndicator;
-import com.google.firebase.Timestamp;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.firestore.DocumentSnapshot;
-import com.google.firebase.firestore.QuerySnapshot;
 
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
-public class TasksFragment extends Fragment implements TaskAdapter.OnTaskClickListener {
+public class TasksFragment extends Fragment implements TaskAdapter.OnTaskClickListener,
+        TaskStore.OnTasksChangedListener {
 
     private static final String TAG = "TasksFragment";
     
@@ -51,28 +52,26 @@ public class TasksFragment extends Fragment implements TaskAdapter.OnTaskClickLi
     private TextView tvTotalCount, tvTodoCount, tvInProgressCount, tvDoneCount;
     private View layoutEmptyTasks;
     
-    private TaskRepository taskRepository;
-    private GroupRepository groupRepository;
+    private TaskStore taskStore;
     private UserRepository userRepository;
     private TaskAdapter taskAdapter;
     private List<Task> taskList;
     private List<Task> filteredTaskList;
-    private Map<String, User> userCache = new HashMap<>();
     private String currentFilter = "all"; // Bộ lọc trạng thái mặc định
     private String currentOwnerFilter = "all"; // Bộ lọc owner mặc định: "all" hoặc "mine"
     private String currentSearchQuery = "";
-    private boolean isLoading = false; // Flag to track loading state
     private FirebaseAuth auth;
+    private FilterPipeline<Task> filterPipeline;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        taskRepository = new TaskRepository();
-        groupRepository = new GroupRepository();
+        taskStore = TaskStore.getInstance();
         userRepository = new UserRepository();
         taskList = new ArrayList<>();
         filteredTaskList = new ArrayList<>();
         auth = FirebaseAuth.getInstance();
+        filterPipeline = new FilterPipeline<>(this::showFilteredTasks);
     }
 
     @Nullable
@@ -116,20 +115,48 @@ public class TasksFragment extends Fragment implements TaskAdapter.OnTaskClickLi
         setupRecyclerView();
         setupFilterChips();
         setupSearchView();
-        loadAllTasks();
+        
+        // Nhãn độ ưu tiên theo ngôn ngữ được đánh chỉ mục cùng nhiệm vụ để tìm kiếm
+        taskStore.setPriorityLabels(getPriorityLabels());
+        
+        // Nhận nhiệm vụ từ TaskStore dùng chung; nếu đã có dữ liệu thì hiển thị ngay
+        showLoading(!taskStore.isLoaded());
+        taskStore.addListener(this);
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-        // Only load tasks if not already loading and view is created
-        if (!isLoading && getView() != null) {
-            loadAllTasks();
-        }
+    public void onDestroyView() {
+        super.onDestroyView();
+        taskStore.removeListener(this);
+        filterPipeline.cancel();
+    }
+
+    @Override
+    public void onTasksChanged(TaskStore store) {
+        if (!isAdded() || getView() == null) return;
+        
+        taskList.clear();
+        taskList.addAll(store.getAllTasks());
+        Log.d(TAG, "Tasks changed. Total: " + taskList.size());
+        
+        // Cập nhật thống kê
+        updateTaskStatistics();
+        
+        // Load user info for each task
+        loadAssigneeInfo();
+    }
+
+    @Override
+    public void onError(Exception e) {
+        if (!isAdded() || getView() == null) return;
+        
+        Log.e(TAG, "Error loading tasks", e);
+        showLoading(false);
+        showEmptyState(filteredTaskList.isEmpty());
     }
 
     private void setupRecyclerView() {
-        taskAdapter = new TaskAdapter(requireContext(), filteredTaskList, this, userCache);
+        taskAdapter = new TaskAdapter(requireContext(), this);
         rvTasks.setLayoutManager(new LinearLayoutManager(requireContext()));
         rvTasks.setAdapter(taskAdapter);
     }
@@ -178,277 +205,92 @@ public class TasksFragment extends Fragment implements TaskAdapter.OnTaskClickLi
             @Override
             public boolean onQueryTextChange(String newText) {
                 currentSearchQuery = newText.toLowerCase().trim();
-                applyFilters();
+                // Chỉ lọc khi người dùng ngừng gõ
+                filterPipeline.submitDebounced(createTaskFilter());
                 return true;
             }
         });
     }
 
-    private void loadAllTasks() {
-        // Set loading flag to prevent duplicate loads
-        isLoading = true;
-        showLoading(true);
-        
-        // Clear existing tasks to prevent duplicates
-        taskList.clear();
-        filteredTaskList.clear();
-        
-        // Đầu tiên, lấy danh sách tất cả các nhóm mà người dùng đã tham gia
-        groupRepository.getUserGroups()
-                .addOnSuccessListener(this::processGroupsAndLoadTasks)
-                .addOnFailureListener(e -> {
-                    isLoading = false; // Reset loading flag
-                    showLoading(false);
-                    Log.e(TAG, "Error loading groups", e);
-                    showEmptyState(true);
-                });
-    }
-    
-    private void processGroupsAndLoadTasks(QuerySnapshot groupSnapshot) {
-        if (groupSnapshot.isEmpty()) {
-            isLoading = false; // Reset loading flag
-            showLoading(false); // Ẩn loading
-            showEmptyState(true); // Hiển thị empty state
-            updateTaskStatistics(); // Cập nhật stats với 0
-            Log.d(TAG, "No groups found for user");
-            return;
-        }
-        
-        // taskList already cleared in loadAllTasks()
-        List<String> groupIds = new ArrayList<>();
-        
-        // Lấy ID của tất cả các nhóm
-        for (DocumentSnapshot document : groupSnapshot.getDocuments()) {
-            groupIds.add(document.getId());
-        }
-        
-        Log.d(TAG, "Found " + groupIds.size() + " groups: " + groupIds);
-        
-        // Lấy ID của user hiện tại
-        String currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
-        if (currentUserId == null) {
-            isLoading = false;
-            showLoading(false);
-            showEmptyState(true);
-            Log.e(TAG, "Current user ID is null");
-            return;
-        }
-        
-        Log.d(TAG, "Current user ID: " + currentUserId);
-        
-        // Biến đếm số nhóm đã xử lý
-        final int[] processedGroups = {0};
-        final int totalGroups = groupIds.size();
-        
-        // Lấy TẤT CẢ nhiệm vụ từ mỗi nhóm 
-        for (String groupId : groupIds) {
-            Log.d(TAG, "Loading tasks from group: " + groupId);
-            taskRepository.getGroupTasks(groupId)
-                    .addOnSuccessListener(tasksSnapshot -> {
-                        Log.d(TAG, "Found " + tasksSnapshot.size() + " tasks in group " + groupId);
-                        for (DocumentSnapshot document : tasksSnapshot.getDocuments()) {
-                            Task task = document.toObject(Task.class);
-                            if (task != null) {
-                                // Set group ID for each task
-                                task.setGroupId(groupId);
-                                task.setId(document.getId());
-                                taskList.add(task);
-                                Log.d(TAG, "Added task: " + task.getTitle() + " (assigned to: " + task.getAssignedTo() + ", created by: " + task.getCreatedBy() + ")");
-                            }
-                        }
-                        
-                        processedGroups[0]++;
-                        
-                        // Khi đã xử lý hết tất cả các nhóm, cập nhật UI
-                        if (processedGroups[0] == totalGroups) {
-                            Log.d(TAG, "Finished loading all tasks. Total: " + taskList.size());
-                            // Cập nhật thống kê
-                            updateTaskStatistics();
-                            
-                            // Load user info for each task
-                            loadAssigneeInfo();
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        processedGroups[0]++;
-                        
-                        if (processedGroups[0] == totalGroups) {
-                            // Cập nhật thống kê
-                            updateTaskStatistics();
-                            
-                            // Load user info for each task
-                            loadAssigneeInfo();
-                        }
-                        
-                        Log.e(TAG, "Error loading tasks for group: " + groupId, e);
-                    });
-        }
-    }
-    
     private void loadAssigneeInfo() {
-        // Track the number of tasks with loaded assignee info
-        final int[] processedTasks = {0};
-        final int totalTasks = taskList.size();
+        // Đọc mọi assignee qua UserRepository: UserCache trả ngay user còn hạn, chỉ tải lại phần còn lại
+        Set<String> assigneeIds = new LinkedHashSet<>();
+        for (Task task : taskList) {
+            String assigneeId = task.getAssignedTo();
+            if (assigneeId != null && !assigneeId.isEmpty()) {
+                assigneeIds.add(assigneeId);
+            }
+        }
         
-        if (totalTasks == 0) {
+        if (assigneeIds.isEmpty()) {
             showLoading(false);
-            isLoading = false; // Reset loading flag
-            applyFilters(); // Gọi applyFilters để hiển thị empty state
+            applyFilters();
             return;
         }
         
-        for (Task task : taskList) {
-            String assigneeId = task.getAssignedTo();
-            if (assigneeId == null) {
-                processedTasks[0]++;
-                if (processedTasks[0] == totalTasks) {
+        userRepository.getUsersByIds(assigneeIds)
+                .addOnSuccessListener(users -> {
+                    taskStore.setAssigneeNames(users);
+                    taskAdapter.setUsers(users);
                     showLoading(false);
-                    isLoading = false; // Reset loading flag
                     applyFilters();
-                }
-                continue;
-            }
-            
-            // Check if we already have the user info in cache
-            if (userCache.containsKey(assigneeId)) {
-                processedTasks[0]++;
-                if (processedTasks[0] == totalTasks) {
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error loading user data", e);
                     showLoading(false);
-                    isLoading = false; // Reset loading flag
                     applyFilters();
-                }
-            } else {
-                // Load user info from Firestore
-                userRepository.getUserById(assigneeId)
-                    .addOnSuccessListener(documentSnapshot -> {
-                        User user = documentSnapshot.toObject(User.class);
-                        if (user != null) {
-                            user.setId(documentSnapshot.getId());
-                            userCache.put(assigneeId, user);
-                        }
-                        
-                        processedTasks[0]++;
-                        if (processedTasks[0] == totalTasks) {
-                            showLoading(false);
-                            isLoading = false; // Reset loading flag
-                            applyFilters();
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        processedTasks[0]++;
-                        Log.e(TAG, "Error loading user data", e);
-                        
-                        if (processedTasks[0] == totalTasks) {
-                            showLoading(false);
-                            isLoading = false; // Reset loading flag
-                            applyFilters();
-                        }
-                    });
-            }
-        }
+                });
     }
     
     private void updateTaskStatistics() {
-        // Count tasks by status
-        int todoCount = 0;
-        int inProgressCount = 0;
-        int doneCount = 0;
-        
-        Date now = new Date();
-        
-        for (Task task : taskList) {
-            // Count by status
-            if (Task.STATUS_TODO.equals(task.getStatus())) {
-                todoCount++;
-            } else if (Task.STATUS_IN_PROGRESS.equals(task.getStatus())) {
-                inProgressCount++;
-            } else if (Task.STATUS_DONE.equals(task.getStatus())) {
-                doneCount++;
-            }
-        }
-        
-        // Update UI with counts
-        tvTotalCount.setText(String.valueOf(taskList.size()));
-        tvTodoCount.setText(String.valueOf(todoCount));
-        tvInProgressCount.setText(String.valueOf(inProgressCount));
-        tvDoneCount.setText(String.valueOf(doneCount));
+        // Số liệu lấy trực tiếp từ chỉ mục của TaskStore, không cần duyệt danh sách
+        TaskIndex index = taskStore.getIndex();
+        tvTotalCount.setText(String.valueOf(index.size()));
+        tvTodoCount.setText(String.valueOf(index.countByStatus(Task.STATUS_TODO)));
+        tvInProgressCount.setText(String.valueOf(index.countByStatus(Task.STATUS_IN_PROGRESS)));
+        tvDoneCount.setText(String.valueOf(index.countByStatus(Task.STATUS_DONE)));
     }
     
     private void applyFilters() {
-        filteredTaskList.clear();
-        
-        // Get current date for overdue comparison
-        Date now = new Date();
+        filterPipeline.submit(createTaskFilter());
+    }
+    
+    /**
+     * Tạo bộ lọc với trạng thái hiện tại; chạy trên luồng nền của FilterPipeline
+     */
+    private Callable<List<Task>> createTaskFilter() {
+        String statusFilter = currentFilter;
+        String ownerFilter = currentOwnerFilter;
+        String searchQuery = currentSearchQuery;
         String currentUserId = auth.getCurrentUser() != null ? auth.getCurrentUser().getUid() : null;
+        List<Task> allTasks = taskStore.getAllTasks();
+        TaskIndex index = taskStore.getIndex();
         
-        Log.d(TAG, "Applying filters - Total tasks: " + taskList.size() + ", Owner filter: " + currentOwnerFilter + ", Status filter: " + currentFilter);
-        
-        // Filter tasks based on current filter and search query
-        for (Task task : taskList) {
-            boolean matchesFilter = false;
-            
-            // Owner filter - kiểm tra trước
-            boolean matchesOwner = false;
-            if ("all".equals(currentOwnerFilter)) {
-                matchesOwner = true;
-            } else if ("mine".equals(currentOwnerFilter) && currentUserId != null) {
-                // "Task của tôi" bao gồm: được assign cho tôi HOẶC tôi tạo ra
-                matchesOwner = (currentUserId.equals(task.getAssignedTo()) || 
-                               currentUserId.equals(task.getCreatedBy()));
-            }
-            
-            Log.d(TAG, "Task: " + task.getTitle() + " - Owner match: " + matchesOwner + " (assigned: " + task.getAssignedTo() + ", created: " + task.getCreatedBy() + ", current: " + currentUserId + ")");
-            
-            // Nếu không match owner filter thì skip
-            if (!matchesOwner) {
-                continue;
-            }
-            
-            // Status filter
-            if ("all".equals(currentFilter)) {
-                matchesFilter = true;
-            } else {
-                matchesFilter = currentFilter.equals(task.getStatus());
-            }
-            
-            // Search query
-            if (matchesFilter && !currentSearchQuery.isEmpty()) {
-                // Search by title
-                boolean matchesSearch = task.getTitle() != null && 
-                                       task.getTitle().toLowerCase().contains(currentSearchQuery);
-                
-                // Search by description
-                if (!matchesSearch && task.getDescription() != null) {
-                    matchesSearch = task.getDescription().toLowerCase().contains(currentSearchQuery);
+        return () -> {
+            // Bộ lọc trạng thái, owner và từ khóa tìm kiếm đều là phép giao các tập khóa trong chỉ mục
+            synchronized (index) {
+                List<Set<String>> keySets = new ArrayList<>();
+                if (!"all".equals(statusFilter)) {
+                    keySets.add(index.getKeysByStatus(statusFilter));
                 }
-                
-                // Search by assignee name
-                if (!matchesSearch && task.getAssignedTo() != null && userCache.containsKey(task.getAssignedTo())) {
-                    User assignee = userCache.get(task.getAssignedTo());
-                    if (assignee.getName() != null) {
-                        matchesSearch = assignee.getName().toLowerCase().contains(currentSearchQuery);
-                    } else if (assignee.getEmail() != null) {
-                        matchesSearch = assignee.getEmail().toLowerCase().contains(currentSearchQuery);
-                    }
+                if ("mine".equals(ownerFilter)) {
+                    // "Task của tôi" bao gồm: được assign cho tôi HOẶC tôi tạo ra
+                    keySets.add(currentUserId != null ? index.getKeysByOwner(currentUserId) : Collections.emptySet());
                 }
-                
-                // Search by priority
-                if (!matchesSearch && task.getPriority() != null) {
-                    String priorityEnglish = task.getPriority().toLowerCase();
-                    String priorityVietnamese = getPriorityDisplayName(task.getPriority()).toLowerCase();
-                    matchesSearch = priorityEnglish.contains(currentSearchQuery) || 
-                                   priorityVietnamese.contains(currentSearchQuery);
+                if (!searchQuery.isEmpty()) {
+                    // Tìm trong tiêu đề, mô tả, tên người được giao và độ ưu tiên, không phân biệt dấu
+                    keySets.addAll(index.matchQuery(searchQuery));
                 }
-                
-                matchesFilter = matchesSearch;
-            }
-            
-            if (matchesFilter) {
-                filteredTaskList.add(task);
-                Log.d(TAG, "Task passed all filters: " + task.getTitle());
+                return keySets.isEmpty() ? allTasks : index.getTasks(index.intersect(keySets));
             }
-        }
+        };
+    }
+    
+    private void showFilteredTasks(List<Task> tasks) {
+        if (!isAdded() || getView() == null) return;
         
+        filteredTaskList.clear();
+        filteredTaskList.addAll(tasks);
         Log.d(TAG, "Filter complete - Filtered tasks: " + filteredTaskList.size());
         
         // Update adapter with filtered list
@@ -486,47 +328,19 @@ public class TasksFragment extends Fragment implements TaskAdapter.OnTaskClickLi
         intent.putExtra("GROUP_ID", task.getGroupId());
         intent.putExtra("TASK_ID", task.getId());
         
-        // Get group name from cache or fetch it
-        getGroupName(task.getGroupId(), groupName -> {
+        // Tên nhóm lấy từ GroupCache nên mở màn hình ngay, không chờ đọc mạng
+        String groupName = GroupCache.getInstance().getName(task.getGroupId());
+        if (groupName != null) {
             intent.putExtra("GROUP_NAME", groupName);
-            startActivity(intent);
-        });
-    }
-    
-    private String getPriorityDisplayName(String priority) {
-        if (priority == null) return "";
-        
-        switch (priority.toLowerCase()) {
-            case "high":
-                return getString(R.string.priority_high);
-            case "medium":
-                return getString(R.string.priority_medium);
-            case "low":
-                return getString(R.string.priority_low);
-            default:
-                return priority;
         }
-    }
-
-    // Helper method to get group name
-    private void getGroupName(String groupId, OnGroupNameFetchedListener listener) {
-        groupRepository.getGroupDetails(groupId)
-                .addOnSuccessListener(documentSnapshot -> {
-                    Group group = documentSnapshot.toObject(Group.class);
-                    String groupName = "";
-                    if (group != null && group.getName() != null) {
-                        groupName = group.getName();
-                    }
-                    listener.onGroupNameFetched(groupName);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "Error loading group details", e);
-                    listener.onGroupNameFetched("");
-                });
+        startActivity(intent);
     }
     
-    // Interface for callback
-    private interface OnGroupNameFetchedListener {
-        void onGroupNameFetched(String groupName);
+    private Map<String, String> getPriorityLabels() {
+        Map<String, String> labels = new HashMap<>();
+        labels.put("high", getString(R.string.priority_high));
+        labels.put("medium", getString(R.string.priority_medium));
+        labels.put("low", getString(R.string.priority_low));
+        return labels;
     }
-} 
\ No newline at end of file
+}
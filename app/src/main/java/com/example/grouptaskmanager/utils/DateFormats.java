@@ -0,0 +1,103 @@
+package com.example.grouptaskmanager.utils;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Định dạng ngày giờ dùng chung cho các màn hình và adapter.
+ * SimpleDateFormat được tạo một lần cho mỗi (pattern, locale) trên mỗi luồng (ThreadLocal)
+ * vì SimpleDateFormat không thread-safe; java.time cần API 26 trong khi minSdk là 24.
+ */
+public final class DateFormats {
+
+    public static final String DATE = "dd/MM/yyyy";
+    public static final String DATE_TIME = "dd/MM/yyyy HH:mm";
+    public static final String TIME = "HH:mm";
+    public static final String DAY_MONTH = "dd/MM";
+
+    private static final ThreadLocal<Map<String, SimpleDateFormat>> FORMATS =
+            new ThreadLocal<Map<String, SimpleDateFormat>>() {
+                @Override
+                protected Map<String, SimpleDateFormat> initialValue() {
+                    return new HashMap<>();
+                }
+            };
+
+    // Đầu ngày hôm nay và ngày mai (millis), tính lại khi sang ngày mới
+    private static long todayStart = 0;
+    private static long tomorrowStart = 0;
+
+    private DateFormats() {
+    }
+
+    public static String format(String pattern, Date date) {
+        Locale locale = Locale.getDefault();
+        String key = pattern + "|" + locale;
+        Map<String, SimpleDateFormat> formats = FORMATS.get();
+        SimpleDateFormat format = formats.get(key);
+        if (format == null) {
+            format = new SimpleDateFormat(pattern, locale);
+            formats.put(key, format);
+        }
+        return format.format(date);
+    }
+
+    public static String formatDate(Date date) {
+        return format(DATE, date);
+    }
+
+    public static String formatDateTime(Date date) {
+        return format(DATE_TIME, date);
+    }
+
+    public static String formatTime(Date date) {
+        return format(TIME, date);
+    }
+
+    /**
+     * Giờ nếu là hôm nay, ngày/tháng nếu là ngày khác
+     */
+    public static String formatTimeOrDay(Date date) {
+        return format(isToday(date.getTime()) ? TIME : DAY_MONTH, date);
+    }
+
+    /**
+     * "Vừa xong", "5 phút trước"... tính tại thời điểm now; quá 7 ngày thì hiển thị ngày
+     */
+    public static String formatTimeAgo(Date date, long now) {
+        long diff = now - date.getTime();
+
+        if (diff < TimeUnit.MINUTES.toMillis(1)) {
+            return "Vừa xong";
+        } else if (diff < TimeUnit.HOURS.toMillis(1)) {
+            return TimeUnit.MILLISECONDS.toMinutes(diff) + " phút trước";
+        } else if (diff < TimeUnit.DAYS.toMillis(1)) {
+            return TimeUnit.MILLISECONDS.toHours(diff) + " giờ trước";
+        } else if (diff < TimeUnit.DAYS.toMillis(7)) {
+            return TimeUnit.MILLISECONDS.toDays(diff) + " ngày trước";
+        } else {
+            return formatDate(date);
+        }
+    }
+
+    private static synchronized boolean isToday(long time) {
+        long now = System.currentTimeMillis();
+        if (now < todayStart || now >= tomorrowStart) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            todayStart = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            tomorrowStart = calendar.getTimeInMillis();
+        }
+        return time >= todayStart && time < tomorrowStart;
+    }
+}
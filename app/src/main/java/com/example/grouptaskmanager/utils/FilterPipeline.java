@@ -0,0 +1,98 @@
+package com.example.grouptaskmanager.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Chạy bộ lọc danh sách trên luồng nền và trả kết quả về luồng chính.
+ * - submitDebounced: dùng khi gõ từ khóa, chỉ lọc khi người dùng ngừng gõ DEBOUNCE_MS
+ * - submit: lọc ngay (ví dụ khi chọn chip hoặc dữ liệu thay đổi), thay thế lần gõ đang chờ
+ * - Lần lọc mới thay thế lần cũ: lần cũ chưa chạy bị hủy, đã chạy thì kết quả bị bỏ qua
+ * Bộ lọc chỉ được đọc dữ liệu đã chụp lại khi submit (không đọc field của màn hình),
+ * kết quả là một danh sách mới được giao một lần trên luồng chính.
+ */
+public class FilterPipeline<T> {
+
+    private static final String TAG = "FilterPipeline";
+    private static final long DEBOUNCE_MS = 250;
+
+    // Dùng chung cho mọi màn hình: mỗi lần lọc ngắn và chạy tuần tự
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor();
+
+    /**
+     * Interface nhận kết quả lọc trên luồng chính
+     */
+    public interface OnFilteredListener<T> {
+        void onFiltered(List<T> result);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final OnFilteredListener<T> listener;
+
+    private Runnable pendingSubmit;
+    private Future<?> runningFilter;
+    // Tăng mỗi lần submit hoặc cancel; chỉ kết quả của lần mới nhất được giao
+    private int generation = 0;
+
+    public FilterPipeline(OnFilteredListener<T> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Lọc ngay trên luồng nền; gọi trên luồng chính
+     */
+    public void submit(Callable<List<T>> filter) {
+        cancel();
+        int submitted = generation;
+        runningFilter = EXECUTOR.submit(() -> {
+            List<T> result;
+            try {
+                result = filter.call();
+            } catch (Exception e) {
+                Log.e(TAG, "Error filtering list", e);
+                return;
+            }
+            mainHandler.post(() -> {
+                if (submitted != generation) {
+                    return;
+                }
+                runningFilter = null;
+                listener.onFiltered(result);
+            });
+        });
+    }
+
+    /**
+     * Lọc sau DEBOUNCE_MS nếu không có lần submit nào khác trong khoảng đó; gọi trên luồng chính
+     */
+    public void submitDebounced(Callable<List<T>> filter) {
+        cancel();
+        pendingSubmit = () -> {
+            pendingSubmit = null;
+            submit(filter);
+        };
+        mainHandler.postDelayed(pendingSubmit, DEBOUNCE_MS);
+    }
+
+    /**
+     * Hủy lần lọc đang chờ hoặc đang chạy (ví dụ trong onDestroyView)
+     */
+    public void cancel() {
+        generation++;
+        if (pendingSubmit != null) {
+            mainHandler.removeCallbacks(pendingSubmit);
+            pendingSubmit = null;
+        }
+        if (runningFilter != null) {
+            runningFilter.cancel(false);
+            runningFilter = null;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.grouptaskmanager.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Một nhịp dùng chung, chạy trên luồng chính ở đầu mỗi phút, để cập nhật các nhãn thời gian
+ * tương đối ("5 phút trước") thay vì mỗi dòng tự hẹn giờ. Chỉ chạy khi có listener.
+ */
+public class MinuteTicker {
+
+    private static final long MINUTE_MS = 60 * 1000;
+
+    private static MinuteTicker instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<Runnable> listeners = new ArrayList<>();
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            for (Runnable listener : new ArrayList<>(listeners)) {
+                listener.run();
+            }
+            scheduleNextTick();
+        }
+    };
+
+    private MinuteTicker() {
+    }
+
+    public static synchronized MinuteTicker getInstance() {
+        if (instance == null) {
+            instance = new MinuteTicker();
+        }
+        return instance;
+    }
+
+    /**
+     * Đăng ký listener; gọi trên luồng chính
+     */
+    public void addListener(Runnable listener) {
+        if (listeners.contains(listener)) {
+            return;
+        }
+        listeners.add(listener);
+        if (listeners.size() == 1) {
+            scheduleNextTick();
+        }
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            handler.removeCallbacks(tick);
+        }
+    }
+
+    private void scheduleNextTick() {
+        handler.removeCallbacks(tick);
+        long now = System.currentTimeMillis();
+        handler.postDelayed(tick, MINUTE_MS - now % MINUTE_MS);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.grouptaskmanager.utils;
+
+import android.os.SystemClock;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModel;
+
+/**
+ * ViewModel giữ dữ liệu đã tải của một tab qua các lần đổi tab và xoay màn hình.
+ * - refreshIfStale: chỉ tải lại khi lần tải trước đã cũ hơn STALE_AFTER_MS (gọi trong onResume)
+ * - refresh: tải lại ngay (ví dụ sau khi tạo hoặc tham gia nhóm)
+ * - invalidate: đánh dấu dữ liệu đã cũ để lần refreshIfStale tiếp theo tải lại
+ * Lần tải mới thay thế lần cũ: kết quả của lần cũ về sau bị bỏ qua. Chỉ dùng trên luồng chính.
+ */
+public abstract class RefreshingViewModel<T> extends ViewModel {
+
+    public static final long STALE_AFTER_MS = 60 * 1000;
+
+    /**
+     * Interface nhận kết quả của một lần tải; onLoaded có thể được gọi nhiều lần
+     * (ví dụ từ cache rồi từ server)
+     */
+    protected interface OnLoadedListener<T> {
+        void onLoaded(T result);
+        void onError(Exception e);
+    }
+
+    private final MutableLiveData<T> data = new MutableLiveData<>();
+    private final MutableLiveData<Exception> error = new MutableLiveData<>();
+    // Thời điểm bắt đầu lần tải gần nhất (elapsedRealtime), 0 nếu cần tải lại
+    private long requestedAt = 0;
+    private int generation = 0;
+
+    public LiveData<T> getData() {
+        return data;
+    }
+
+    public LiveData<Exception> getError() {
+        return error;
+    }
+
+    public boolean hasData() {
+        return data.getValue() != null;
+    }
+
+    public void refreshIfStale() {
+        if (requestedAt == 0 || SystemClock.elapsedRealtime() - requestedAt >= STALE_AFTER_MS) {
+            refresh();
+        }
+    }
+
+    public void refresh() {
+        requestedAt = SystemClock.elapsedRealtime();
+        int requested = ++generation;
+        load(new OnLoadedListener<T>() {
+            @Override
+            public void onLoaded(T result) {
+                if (requested != generation) return;
+                error.setValue(null);
+                data.setValue(result);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (requested != generation) return;
+                // Thử lại ở lần refreshIfStale tiếp theo
+                requestedAt = 0;
+                error.setValue(e);
+            }
+        });
+    }
+
+    public void invalidate() {
+        requestedAt = 0;
+    }
+
+    /**
+     * Thay dữ liệu đang giữ mà không tải lại (cập nhật realtime một phần)
+     */
+    protected void setData(T value) {
+        data.setValue(value);
+    }
+
+    protected abstract void load(OnLoadedListener<T> listener);
+}
@@ -0,0 +1,24 @@
+package com.example.grouptaskmanager.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cấp id kiểu long ổn định cho khóa chuỗi của model (id Firestore) để adapter dùng với
+ * setHasStableIds. Cùng một khóa luôn nhận cùng một id, hai khóa khác nhau không bao giờ trùng
+ * (khác với hashCode). Chỉ dùng trên luồng chính.
+ */
+public class StableIds {
+
+    private final Map<String, Long> ids = new HashMap<>();
+    private long nextId = 1;
+
+    public long idOf(String key) {
+        Long id = ids.get(key);
+        if (id == null) {
+            id = nextId++;
+            ids.put(key, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.grouptaskmanager.chat;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.example.grouptaskmanager.model.ChatMessage;
+import com.google.firebase.Timestamp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MessageBufferTest {
+
+    private RecordingCallback callback;
+    private MessageBuffer buffer;
+
+    @Before
+    public void setUp() {
+        callback = new RecordingCallback();
+        buffer = new MessageBuffer(callback);
+        callback.buffer = buffer;
+    }
+
+    @Test
+    public void put_keepsTimestampThenIdOrder() {
+        buffer.put(message("c", 30L));
+        buffer.put(message("a", 10L));
+        buffer.put(message("b2", 20L));
+        buffer.put(message("b1", 20L));
+
+        assertEquals(Arrays.asList("a", "b1", "b2", "c"), ids());
+        assertEquals(Arrays.asList("ins 0 1", "ins 0 1", "ins 1 1", "ins 1 1"), callback.events);
+        assertMirrorMatches();
+    }
+
+    @Test
+    public void put_pendingMessageGoesLast() {
+        buffer.put(message("a", 10L));
+        buffer.put(message("pending", null));
+        buffer.put(message("b", 20L));
+
+        assertEquals(Arrays.asList("a", "b", "pending"), ids());
+        assertMirrorMatches();
+    }
+
+    @Test
+    public void put_sameSortKeyReportsChangeOnly() {
+        buffer.put(message("a", 10L));
+        buffer.put(message("b", 20L));
+        callback.events.clear();
+
+        ChatMessage edited = message("a", 10L);
+        edited.setMessage("edited");
+        assertEquals(0, buffer.put(edited));
+
+        assertEquals(Arrays.asList("chg 0"), callback.events);
+        assertSame(edited, buffer.get(0));
+    }
+
+    @Test
+    public void put_serverTimestampMovesMessage() {
+        buffer.put(message("a", 10L));
+        buffer.put(message("mine", null));
+        buffer.put(message("c", 30L));
+        callback.events.clear();
+
+        // Server gán timestamp cho tin đang chờ: chuyển từ cuối vào giữa
+        assertEquals(1, buffer.put(message("mine", 20L)));
+
+        assertEquals(Arrays.asList("a", "mine", "c"), ids());
+        assertEquals(Arrays.asList("mov 2 1", "chg 1"), callback.events);
+        assertMirrorMatches();
+    }
+
+    @Test
+    public void putAll_olderPageIsPrependedInOneInsert() {
+        buffer.reset(Arrays.asList(message("c", 30L), message("d", 40L)));
+        callback.events.clear();
+
+        buffer.putAll(Arrays.asList(message("b", 20L), message("a", 10L)));
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), ids());
+        assertEquals(Arrays.asList("ins 0 2"), callback.events);
+        assertMirrorMatches();
+    }
+
+    @Test
+    public void putAll_overlappingBatchFallsBackToSinglePuts() {
+        buffer.reset(Arrays.asList(message("b", 20L), message("d", 40L)));
+        callback.events.clear();
+
+        buffer.putAll(Arrays.asList(message("a", 10L), message("c", 30L)));
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), ids());
+        assertEquals(Arrays.asList("ins 0 1", "ins 2 1"), callback.events);
+        assertMirrorMatches();
+    }
+
+    @Test
+    public void putAll_batchWithKnownIdFallsBackToSinglePuts() {
+        buffer.reset(Arrays.asList(message("b", 20L)));
+        callback.events.clear();
+
+        buffer.putAll(Arrays.asList(message("a", 10L), message("b", 20L)));
+
+        assertEquals(Arrays.asList("a", "b"), ids());
+        assertEquals(Arrays.asList("ins 0 1", "chg 1"), callback.events);
+        assertMirrorMatches();
+    }
+
+    @Test
+    public void reset_replacesContent() {
+        buffer.reset(Arrays.asList(message("a", 10L), message("b", 20L)));
+        callback.events.clear();
+
+        buffer.reset(Arrays.asList(message("c", 30L)));
+
+        assertEquals(Arrays.asList("c"), ids());
+        assertEquals(Arrays.asList("rem 0 2", "ins 0 1"), callback.events);
+        assertFalse(buffer.containsId("a"));
+        assertMirrorMatches();
+    }
+
+    @Test
+    public void removeById_reportsPositionAndLookupsFollow() {
+        buffer.reset(Arrays.asList(message("a", 10L), message("b", 20L), message("c", 30L)));
+        callback.events.clear();
+
+        assertEquals(1, buffer.removeById("b"));
+        assertEquals(-1, buffer.removeById("missing"));
+
+        assertEquals(Arrays.asList("rem 1 1"), callback.events);
+        assertFalse(buffer.containsId("b"));
+        assertEquals(-1, buffer.positionOf("b"));
+        assertEquals(1, buffer.positionOf("c"));
+        assertMirrorMatches();
+    }
+
+    private List<String> ids() {
+        List<String> ids = new ArrayList<>();
+        for (ChatMessage message : buffer) {
+            ids.add(message.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Các callback áp lên một bản sao phải cho ra đúng danh sách hiện tại của buffer
+     */
+    private void assertMirrorMatches() {
+        assertEquals(ids(), callback.mirror);
+    }
+
+    private static ChatMessage message(String id, Long seconds) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setTimestamp(seconds != null ? new Timestamp(seconds, 0) : null);
+        return message;
+    }
+
+    private static class RecordingCallback implements ListUpdateCallback {
+        final List<String> events = new ArrayList<>();
+        final List<String> mirror = new ArrayList<>();
+        MessageBuffer buffer;
+
+        @Override
+        public void onInserted(int position, int count) {
+            events.add("ins " + position + " " + count);
+            for (int i = 0; i < count; i++) {
+                mirror.add(position + i, buffer.get(position + i).getId());
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            events.add("rem " + position + " " + count);
+            for (int i = 0; i < count; i++) {
+                mirror.remove(position);
+            }
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            events.add("mov " + fromPosition + " " + toPosition);
+            mirror.add(toPosition, mirror.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            events.add("chg " + position);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.grouptaskmanager.repository;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class ReadCoalescerTest {
+
+    private final ReadCoalescer coalescer = ReadCoalescer.getInstance();
+    // ReadCoalescer là singleton: mỗi test dùng khóa riêng
+    private final String key = "test/" + System.nanoTime();
+
+    @Test
+    public void get_sharesReadInFlight() {
+        Loader loader = new Loader();
+        Task<String> first = coalescer.get(key, loader);
+        Task<String> second = coalescer.get(key, loader);
+
+        assertSame(first, second);
+        assertEquals(1, loader.sources.size());
+    }
+
+    @Test
+    public void get_reusesRecentResult() {
+        Loader loader = new Loader();
+        coalescer.get(key, loader);
+        loader.sources.get(0).setResult("value");
+
+        Task<String> reused = coalescer.get(key, loader);
+        assertTrue(reused.isSuccessful());
+        assertEquals("value", reused.getResult());
+        assertEquals(1, loader.sources.size());
+    }
+
+    @Test
+    public void get_doesNotReuseFailedRead() {
+        Loader loader = new Loader();
+        coalescer.get(key, loader);
+        loader.sources.get(0).setException(new Exception("offline"));
+
+        coalescer.get(key, loader);
+        assertEquals(2, loader.sources.size());
+    }
+
+    @Test
+    public void get_keysAreIndependent() {
+        Loader loader = new Loader();
+        coalescer.get(key + "/a", loader);
+        coalescer.get(key + "/b", loader);
+
+        assertEquals(2, loader.sources.size());
+    }
+
+    @Test
+    public void invalidate_dropsRecentResult() {
+        Loader loader = new Loader();
+        coalescer.get(key, loader);
+        loader.sources.get(0).setResult("old");
+
+        coalescer.invalidate(key);
+        Task<String> reread = coalescer.get(key, loader);
+        assertEquals(2, loader.sources.size());
+        assertFalse(reread.isComplete());
+    }
+
+    @Test
+    public void invalidate_ignoresResultOfReadStartedBefore() {
+        Loader loader = new Loader();
+        Task<String> stale = coalescer.get(key, loader);
+        coalescer.invalidate(key);
+        Task<String> fresh = coalescer.get(key, loader);
+        assertNotSame(stale, fresh);
+
+        // Lần đọc cũ xong sau khi ghi: không được lưu làm kết quả gần đây
+        loader.sources.get(0).setResult("stale");
+        assertSame(fresh, coalescer.get(key, loader));
+
+        loader.sources.get(1).setResult("fresh");
+        assertEquals("fresh", coalescer.get(key, loader).getResult());
+        assertEquals(2, loader.sources.size());
+    }
+
+    @Test
+    public void counters_trackIssuedCoalescedAndReused() {
+        int issued = coalescer.getIssuedReadCount();
+        int coalesced = coalescer.getCoalescedReadCount();
+        int reused = coalescer.getReusedReadCount();
+
+        Loader loader = new Loader();
+        coalescer.get(key, loader);
+        coalescer.get(key, loader);
+        loader.sources.get(0).setResult("value");
+        coalescer.get(key, loader);
+
+        assertEquals(issued + 1, coalescer.getIssuedReadCount());
+        assertEquals(coalesced + 1, coalescer.getCoalescedReadCount());
+        assertEquals(reused + 1, coalescer.getReusedReadCount());
+    }
+
+    /**
+     * Loader giả: mỗi lần gọi tạo một lần đọc mà test tự hoàn thành
+     */
+    private static class Loader implements Supplier<Task<String>> {
+        final List<TaskCompletionSource<String>> sources = new ArrayList<>();
+
+        @Override
+        public Task<String> get() {
+            TaskCompletionSource<String> source = new TaskCompletionSource<>();
+            sources.add(source);
+            return source.getTask();
+        }
+    }
+}
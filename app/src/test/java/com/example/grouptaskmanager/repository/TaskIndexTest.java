@@ -0,0 +1,174 @@
+package com.example.grouptaskmanager.repository;
+
+import com.example.grouptaskmanager.model.Task;
+import com.example.grouptaskmanager.model.User;
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TaskIndexTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void put_indexesEveryDimension() {
+        TaskIndex index = new TaskIndex();
+        index.put(task("g1", "t1", Task.STATUS_TODO, Task.PRIORITY_HIGH, "alice", "bob", null));
+
+        assertEquals(1, index.size());
+        assertEquals(keys("g1/t1"), index.getKeysByStatus(Task.STATUS_TODO));
+        assertEquals(keys("g1/t1"), index.getKeysByPriority(Task.PRIORITY_HIGH));
+        assertEquals(keys("g1/t1"), index.getKeysByAssignee("alice"));
+        assertEquals(keys("g1/t1"), index.getKeysByCreator("bob"));
+        assertEquals(keys("g1/t1"), index.getKeysByGroup("g1"));
+        assertEquals(1, index.countByStatus(Task.STATUS_TODO));
+    }
+
+    @Test
+    public void put_sameKeyMovesTaskBetweenSets() {
+        TaskIndex index = new TaskIndex();
+        index.put(task("g1", "t1", Task.STATUS_TODO, Task.PRIORITY_LOW, "alice", "bob", null));
+        index.put(task("g1", "t1", Task.STATUS_DONE, Task.PRIORITY_LOW, "carol", "bob", null));
+
+        assertEquals(1, index.size());
+        assertTrue(index.getKeysByStatus(Task.STATUS_TODO).isEmpty());
+        assertEquals(keys("g1/t1"), index.getKeysByStatus(Task.STATUS_DONE));
+        assertTrue(index.getKeysByAssignee("alice").isEmpty());
+        assertEquals(keys("g1/t1"), index.getKeysByAssignee("carol"));
+    }
+
+    @Test
+    public void put_sameKeyUpdatesSearchText() {
+        TaskIndex index = new TaskIndex();
+        index.put(task("g1", "t1", Task.STATUS_TODO, Task.PRIORITY_LOW, "alice", "bob", null));
+        Task renamed = task("g1", "t1", Task.STATUS_DONE, Task.PRIORITY_LOW, "alice", "bob", null);
+        renamed.setTitle("alpha beta");
+        index.put(renamed);
+
+        assertEquals(keys("g1/t1"), index.intersect(index.matchQuery("alpha")));
+        assertEquals(keys("g1/t1"), index.intersect(index.matchQuery("beta")));
+        assertTrue(index.intersect(index.matchQuery("t1")).isEmpty());
+    }
+
+    @Test
+    public void remove_clearsEveryDimension() {
+        TaskIndex index = new TaskIndex();
+        index.put(task("g1", "t1", Task.STATUS_TODO, Task.PRIORITY_HIGH, "alice", "bob", NOW - 1000));
+        index.remove("g1/t1");
+
+        assertEquals(0, index.size());
+        assertNull(index.get("g1/t1"));
+        assertTrue(index.getKeysByStatus(Task.STATUS_TODO).isEmpty());
+        assertTrue(index.getKeysByGroup("g1").isEmpty());
+        assertTrue(index.getOverdueKeys(NOW).isEmpty());
+        assertTrue(index.matchQuery("alpha").get(0).isEmpty());
+    }
+
+    @Test
+    public void getOverdueKeys_onlyOpenTasksBeforeNow() {
+        TaskIndex index = new TaskIndex();
+        index.put(task("g1", "late", Task.STATUS_TODO, null, null, "bob", NOW - 1000));
+        index.put(task("g1", "lateDone", Task.STATUS_DONE, null, null, "bob", NOW - 1000));
+        index.put(task("g1", "future", Task.STATUS_IN_PROGRESS, null, null, "bob", NOW + 1000));
+        index.put(task("g1", "noDeadline", Task.STATUS_TODO, null, null, "bob", null));
+
+        assertEquals(keys("g1/late"), index.getOverdueKeys(NOW));
+
+        // Hoàn thành nhiệm vụ thì không còn quá hạn
+        index.put(task("g1", "late", Task.STATUS_DONE, null, null, "bob", NOW - 1000));
+        assertTrue(index.getOverdueKeys(NOW).isEmpty());
+    }
+
+    @Test
+    public void getKeysByOwner_unionOfAssigneeAndCreator() {
+        TaskIndex index = new TaskIndex();
+        index.put(task("g1", "assigned", Task.STATUS_TODO, null, "alice", "bob", null));
+        index.put(task("g1", "created", Task.STATUS_TODO, null, "bob", "alice", null));
+        index.put(task("g1", "both", Task.STATUS_TODO, null, "alice", "alice", null));
+        index.put(task("g1", "other", Task.STATUS_TODO, null, "bob", "bob", null));
+
+        assertEquals(keys("g1/assigned", "g1/created", "g1/both"), index.getKeysByOwner("alice"));
+    }
+
+    @Test
+    public void intersect_combinesFilters() {
+        TaskIndex index = new TaskIndex();
+        index.put(task("g1", "t1", Task.STATUS_TODO, Task.PRIORITY_HIGH, "alice", "bob", null));
+        index.put(task("g1", "t2", Task.STATUS_TODO, Task.PRIORITY_LOW, "alice", "bob", null));
+        index.put(task("g2", "t3", Task.STATUS_DONE, Task.PRIORITY_HIGH, "alice", "bob", null));
+
+        assertEquals(keys("g1/t1"), index.intersect(Arrays.asList(
+                index.getKeysByStatus(Task.STATUS_TODO), index.getKeysByPriority(Task.PRIORITY_HIGH))));
+        assertTrue(index.intersect(Arrays.asList(
+                index.getKeysByStatus(Task.STATUS_DONE), index.getKeysByGroup("g1"))).isEmpty());
+        // Không có bộ lọc nào thì trả về tất cả
+        assertEquals(keys("g1/t1", "g1/t2", "g2/t3"), index.intersect(Collections.emptyList()));
+    }
+
+    @Test
+    public void getTasks_newestFirstWithPendingOnTop() {
+        TaskIndex index = new TaskIndex();
+        Task older = task("g1", "older", Task.STATUS_TODO, null, null, "bob", null);
+        older.setCreatedAt(new Timestamp(new Date(NOW - 2000)));
+        Task newer = task("g1", "newer", Task.STATUS_TODO, null, null, "bob", null);
+        newer.setCreatedAt(new Timestamp(new Date(NOW)));
+        Task pending = task("g1", "pending", Task.STATUS_TODO, null, null, "bob", null);
+        index.put(older);
+        index.put(newer);
+        index.put(pending);
+
+        List<Task> tasks = index.getTasks(index.getAllKeys());
+        assertEquals(Arrays.asList("pending", "newer", "older"),
+                Arrays.asList(tasks.get(0).getId(), tasks.get(1).getId(), tasks.get(2).getId()));
+    }
+
+    @Test
+    public void matchQuery_findsAssigneeNameAndPriorityLabel() {
+        TaskIndex index = new TaskIndex();
+        index.put(task("g1", "t1", Task.STATUS_TODO, Task.PRIORITY_HIGH, "alice", "bob", null));
+        index.put(task("g1", "t2", Task.STATUS_TODO, Task.PRIORITY_LOW, "carol", "bob", null));
+
+        User alice = new User();
+        alice.setName("Nguyễn An");
+        index.setAssigneeNames(Collections.singletonMap("alice", alice));
+        index.setPriorityLabels(Collections.singletonMap(Task.PRIORITY_HIGH, "Cao"));
+
+        assertEquals(keys("g1/t1"), index.intersect(index.matchQuery("nguyen")));
+        assertEquals(keys("g1/t1"), index.intersect(index.matchQuery("cao")));
+    }
+
+    @Test
+    public void clear_keepsAssigneeNames() {
+        TaskIndex index = new TaskIndex();
+        User alice = new User();
+        alice.setName("An");
+        index.setAssigneeNames(Collections.singletonMap("alice", alice));
+        index.put(task("g1", "t1", Task.STATUS_TODO, null, "alice", "bob", null));
+        index.clear();
+
+        assertEquals(0, index.size());
+        index.put(task("g1", "t1", Task.STATUS_TODO, null, "alice", "bob", null));
+        assertEquals(keys("g1/t1"), index.intersect(index.matchQuery("an")));
+    }
+
+    private static Task task(String groupId, String id, String status, String priority,
+                             String assignedTo, String createdBy, Long deadline) {
+        Task task = new Task(id, "alpha " + id, null, createdBy, assignedTo, status, priority,
+                deadline != null ? new Timestamp(new Date(deadline)) : null, null, null);
+        task.setGroupId(groupId);
+        return task;
+    }
+
+    private static Set<String> keys(String... keys) {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.grouptaskmanager.repository;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TaskSearchIndexTest {
+
+    @Test
+    public void fold_removesCaseAndVietnameseMarks() {
+        assertEquals("hoan thanh", TaskSearchIndex.fold("Hoàn Thành"));
+        assertEquals("dang lam", TaskSearchIndex.fold("Đang làm"));
+        assertEquals("", TaskSearchIndex.fold(null));
+        assertEquals("", TaskSearchIndex.fold(""));
+    }
+
+    @Test
+    public void tokenize_splitsOnNonLetterOrDigit() {
+        assertEquals(Arrays.asList("bao", "cao", "q3", "2024"),
+                TaskSearchIndex.tokenize("Báo cáo Q3-2024!"));
+        assertTrue(TaskSearchIndex.tokenize("  ...  ").isEmpty());
+    }
+
+    @Test
+    public void match_shortTokenMatchesPrefix() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.put("t1", "Thiết kế giao diện");
+        index.put("t2", "Kiểm thử");
+
+        assertEquals(keys("t1"), single(index.match("gi")));
+        // Từ ngắn không khớp ở giữa từ
+        assertTrue(single(index.match("ao")).isEmpty());
+    }
+
+    @Test
+    public void match_longTokenMatchesSubstringThroughTrigrams() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.put("t1", "Thiết kế giao diện");
+        index.put("t2", "Giao hàng");
+        index.put("t3", "Kiểm thử");
+
+        assertEquals(keys("t1", "t2"), single(index.match("iao")));
+        assertEquals(keys("t1"), single(index.match("dien")));
+        assertTrue(single(index.match("xyz")).isEmpty());
+    }
+
+    @Test
+    public void match_everyQueryTokenMustMatch() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.put("t1", "Thiết kế giao diện", "An");
+        index.put("t2", "Thiết kế logo", "Bình");
+
+        TaskIndex taskIndex = new TaskIndex();
+        List<Set<String>> keySets = index.match("thiet giao");
+        assertEquals(2, keySets.size());
+        assertEquals(keys("t1"), taskIndex.intersect(keySets));
+        assertTrue(taskIndex.intersect(index.match("logo an")).isEmpty());
+    }
+
+    @Test
+    public void match_emptyQueryReturnsNoKeySets() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.put("t1", "Thiết kế");
+
+        assertTrue(index.match("").isEmpty());
+        assertTrue(index.match(" - ").isEmpty());
+    }
+
+    @Test
+    public void put_reindexDropsOldTokens() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.put("t1", "Thiết kế giao diện");
+        index.put("t1", "Kiểm thử");
+
+        assertTrue(single(index.match("giao")).isEmpty());
+        assertEquals(keys("t1"), single(index.match("kiem")));
+    }
+
+    @Test
+    public void remove_dropsKeyFromPostingsAndTrigrams() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.put("t1", "Giao diện");
+        index.put("t2", "Giao hàng");
+        index.remove("t1");
+
+        assertEquals(keys("t2"), single(index.match("giao")));
+        assertTrue(single(index.match("dien")).isEmpty());
+        assertTrue(single(index.match("di")).isEmpty());
+    }
+
+    private static Set<String> single(List<Set<String>> keySets) {
+        assertEquals(1, keySets.size());
+        return keySets.get(0);
+    }
+
+    private static Set<String> keys(String... keys) {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+}
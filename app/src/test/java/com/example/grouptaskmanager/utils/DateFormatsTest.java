@@ -0,0 +1,64 @@
+package com.example.grouptaskmanager.utils;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DateFormatsTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void formatTimeAgo_underAMinuteIsJustNow() {
+        assertEquals("Vừa xong", ago(0));
+        assertEquals("Vừa xong", ago(TimeUnit.SECONDS.toMillis(59)));
+    }
+
+    @Test
+    public void formatTimeAgo_minutes() {
+        assertEquals("1 phút trước", ago(TimeUnit.MINUTES.toMillis(1)));
+        assertEquals("59 phút trước", ago(TimeUnit.MINUTES.toMillis(60) - 1));
+    }
+
+    @Test
+    public void formatTimeAgo_hours() {
+        assertEquals("1 giờ trước", ago(TimeUnit.HOURS.toMillis(1)));
+        assertEquals("23 giờ trước", ago(TimeUnit.DAYS.toMillis(1) - 1));
+    }
+
+    @Test
+    public void formatTimeAgo_days() {
+        assertEquals("1 ngày trước", ago(TimeUnit.DAYS.toMillis(1)));
+        assertEquals("6 ngày trước", ago(TimeUnit.DAYS.toMillis(7) - 1));
+    }
+
+    @Test
+    public void formatTimeAgo_weekOrOlderShowsDate() {
+        Date date = new Date(NOW - TimeUnit.DAYS.toMillis(7));
+        String expected = new SimpleDateFormat(DateFormats.DATE, Locale.getDefault()).format(date);
+        assertEquals(expected, DateFormats.formatTimeAgo(date, NOW));
+    }
+
+    @Test
+    public void formatTimeAgo_futureDateIsJustNow() {
+        // Đồng hồ máy chậm hơn server: timestamp có thể nằm sau now một chút
+        assertEquals("Vừa xong", ago(-TimeUnit.SECONDS.toMillis(5)));
+    }
+
+    @Test
+    public void format_reusesFormatterPerPattern() {
+        Date date = new Date(NOW);
+        SimpleDateFormat expected = new SimpleDateFormat(DateFormats.DATE_TIME, Locale.getDefault());
+        assertEquals(expected.format(date), DateFormats.formatDateTime(date));
+        assertEquals(expected.format(date), DateFormats.format(DateFormats.DATE_TIME, date));
+    }
+
+    private static String ago(long millisAgo) {
+        return DateFormats.formatTimeAgo(new Date(NOW - millisAgo), NOW);
+    }
+}
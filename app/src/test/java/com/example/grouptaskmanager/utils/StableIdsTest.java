@@ -0,0 +1,47 @@
+package com.example.grouptaskmanager.utils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class StableIdsTest {
+
+    @Test
+    public void idOf_sameKeyKeepsId() {
+        StableIds stableIds = new StableIds();
+        long first = stableIds.idOf("group-a");
+        stableIds.idOf("group-b");
+
+        assertEquals(first, stableIds.idOf("group-a"));
+    }
+
+    @Test
+    public void idOf_collidingHashCodesGetDistinctIds() {
+        // "Aa" và "BB" có cùng hashCode
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        StableIds stableIds = new StableIds();
+
+        assertNotEquals(stableIds.idOf("Aa"), stableIds.idOf("BB"));
+    }
+
+    @Test
+    public void idOf_manyKeysAreUnique() {
+        StableIds stableIds = new StableIds();
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            ids.add(stableIds.idOf("key-" + i));
+        }
+
+        assertEquals(1000, ids.size());
+    }
+
+    @Test
+    public void idOf_neverReturnsNoId() {
+        // RecyclerView.NO_ID là -1
+        StableIds stableIds = new StableIds();
+        assertTrue(stableIds.idOf("first") >= 0);
+    }
+}